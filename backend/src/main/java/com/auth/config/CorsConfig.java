@@ -15,6 +15,7 @@ public class CorsConfig {
         config.addAllowedOrigin("http://localhost:8080"); // 前端地址
         config.addAllowedMethod("*"); // 允许所有方法
         config.addAllowedHeader("*"); // 允许所有头部
+        config.addExposedHeader("ETag"); // 前端可读取 ETag 做条件请求
         config.setAllowCredentials(true); // 允许携带凭证
         config.setMaxAge(3600L); // 预检请求有效期1小时
 
@@ -106,13 +106,20 @@ public class AdminController {
     }
 
     /**
-     * 获取所有用户信息
+     * 获取所有用户信息；传 cursor 或 size 时按用户ID键集分页
      */
     @GetMapping("/users")
-    public ResponseEntity<List<UserInfoDTO>> getAllUsers() {
+    public ResponseEntity<?> getAllUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         try {
+            if (cursor != null || size != null) {
+                return ResponseEntity.ok(adminService.getUsersPage(cursor, size));
+            }
             List<UserInfoDTO> users = adminService.getAllUsers();
             return ResponseEntity.ok(users);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("获取用户信息失败", e);
             return ResponseEntity.internalServerError().build();
@@ -120,13 +127,20 @@ public class AdminController {
     }
 
     /**
-     * 获取所有订单
+     * 获取所有订单；传 cursor 或 size 时按 (orderDate, id) 键集分页
      */
     @GetMapping("/orders")
-    public ResponseEntity<List<OrderDetailDTO>> getAllOrders() {
+    public ResponseEntity<?> getAllOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         try {
+            if (cursor != null || size != null) {
+                return ResponseEntity.ok(adminService.getOrdersPage(cursor, size));
+            }
             List<OrderDetailDTO> orders = adminService.getAllOrders();
             return ResponseEntity.ok(orders);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("获取所有订单失败", e);
             return ResponseEntity.internalServerError().build();
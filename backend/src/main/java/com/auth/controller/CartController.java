@@ -1,25 +1,29 @@
 package com.auth.controller;
 
 import com.auth.dto.CartDTO;
+import com.auth.dto.CartOperationDTO;
 import com.auth.service.CartService;
+import com.auth.service.CartStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/cart")
 @CrossOrigin(origins = "http://localhost:8080")
 public class CartController {
 
     @Autowired
-    private CartService cartService;
+    private CartStore cartStore;
 
     @GetMapping("/{userId}")
     public ResponseEntity<?> getCart(@PathVariable Long userId) {
         try {
             System.out.println("🛒 获取购物车请求，用户ID: " + userId);
-            CartDTO cart = cartService.getCartByUserId(userId);
+            CartDTO cart = cartStore.getCart(userId);
             System.out.println("✅ 购物车数据: " + cart);
             return ResponseEntity.ok(cart);
         } catch (Exception e) {
@@ -37,7 +41,7 @@ public class CartController {
             @RequestParam(defaultValue = "1") Integer quantity) {
         try {
             System.out.println("➕ 添加商品到购物车 - 用户ID: " + userId + ", 商品ID: " + productId + ", 数量: " + quantity);
-            CartDTO cart = cartService.addToCart(userId, productId, quantity);
+            CartDTO cart = cartStore.addToCart(userId, productId, quantity);
             System.out.println("✅ 添加成功，购物车数据: " + cart);
             return ResponseEntity.ok(cart);
         } catch (RuntimeException e) {
@@ -57,7 +61,7 @@ public class CartController {
             @RequestParam Long productId,
             @RequestParam Integer quantity) {
         try {
-            CartDTO cart = cartService.updateCartItemQuantity(userId, productId, quantity);
+            CartDTO cart = cartStore.updateCartItemQuantity(userId, productId, quantity);
             return ResponseEntity.ok(cart);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -71,7 +75,27 @@ public class CartController {
             @PathVariable Long userId,
             @RequestParam Long productId) {
         try {
-            CartDTO cart = cartService.removeFromCart(userId, productId);
+            CartDTO cart = cartStore.removeFromCart(userId, productId);
+            return ResponseEntity.ok(cart);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/{userId}/batch")
+    public ResponseEntity<?> applyOperations(
+            @PathVariable Long userId,
+            @RequestBody List<CartOperationDTO> operations) {
+        if (operations == null || operations.isEmpty()) {
+            return ResponseEntity.badRequest().body("操作列表不能为空");
+        }
+        if (operations.size() > CartService.BATCH_MAX_OPERATIONS) {
+            return ResponseEntity.badRequest().body("单次最多执行 " + CartService.BATCH_MAX_OPERATIONS + " 个操作");
+        }
+        try {
+            CartDTO cart = cartStore.applyOperations(userId, operations);
             return ResponseEntity.ok(cart);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -83,7 +107,7 @@ public class CartController {
     @DeleteMapping("/{userId}/clear")
     public ResponseEntity<?> clearCart(@PathVariable Long userId) {
         try {
-            cartService.clearCart(userId);
+            cartStore.clearCart(userId);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
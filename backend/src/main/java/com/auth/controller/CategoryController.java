@@ -2,9 +2,12 @@ package com.auth.controller;
 
 import com.auth.entity.Category;
 import com.auth.service.CategoryService;
+import com.auth.service.ResourceVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -16,12 +19,19 @@ public class CategoryController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private ResourceVersionService resourceVersionService;
+
     // 获取所有分类
     @GetMapping
-    public ResponseEntity<List<Category>> getAllCategories() {
+    public ResponseEntity<List<Category>> getAllCategories(WebRequest webRequest) {
+        String etag = resourceVersionService.categoryETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             List<Category> categories = categoryService.getAllCategories();
-            return ResponseEntity.ok(categories);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(categories);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -29,11 +39,15 @@ public class CategoryController {
 
     // 根据ID获取分类
     @GetMapping("/{id}")
-    public ResponseEntity<Category> getCategoryById(@PathVariable Long id) {
+    public ResponseEntity<Category> getCategoryById(@PathVariable Long id, WebRequest webRequest) {
+        String etag = resourceVersionService.categoryETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             Category category = categoryService.getCategoryById(id);
             if (category != null) {
-                return ResponseEntity.ok(category);
+                return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(category);
             } else {
                 return ResponseEntity.notFound().build();
             }
@@ -93,10 +107,14 @@ public class CategoryController {
 
     // 获取所有分类（包含不活跃的）
     @GetMapping("/all")
-    public ResponseEntity<List<Category>> getAllCategoriesIncludeInactive() {
+    public ResponseEntity<List<Category>> getAllCategoriesIncludeInactive(WebRequest webRequest) {
+        String etag = resourceVersionService.categoryETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             List<Category> categories = categoryService.getAllCategoriesIncludeInactive();
-            return ResponseEntity.ok(categories);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(categories);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -104,10 +122,14 @@ public class CategoryController {
 
     // 搜索分类
     @GetMapping("/search")
-    public ResponseEntity<List<Category>> searchCategories(@RequestParam String keyword) {
+    public ResponseEntity<List<Category>> searchCategories(@RequestParam String keyword, WebRequest webRequest) {
+        String etag = resourceVersionService.categoryETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             List<Category> categories = categoryService.searchCategories(keyword);
-            return ResponseEntity.ok(categories);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(categories);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -0,0 +1,137 @@
+package com.auth.controller;
+
+import com.auth.service.ImageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/images")
+@CrossOrigin(origins = "http://localhost:8080")
+public class ImageController {
+
+    // Tomcat sendfile 相关的请求属性
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // 图片地址不带内容指纹，缓存7天并用 ETag 重新验证
+    private static final String CACHE_CONTROL = "public, max-age=604800";
+
+    @Autowired
+    private ImageService imageService;
+
+    /**
+     * 获取图片，w 为目标宽度，format 可选 webp/jpeg/png；未指定格式时按 Accept 协商 WebP
+     */
+    @GetMapping("/{name:.+}")
+    public void getImage(@PathVariable String name,
+                         @RequestParam(required = false) Integer w,
+                         @RequestParam(required = false) String format,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        if (w != null && w <= 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "宽度必须大于0");
+            return;
+        }
+
+        Path file;
+        try {
+            file = imageService.resolve(name, w, negotiateFormat(format, request.getHeader(HttpHeaders.ACCEPT)));
+        } catch (IOException e) {
+            System.err.println("生成图片变体失败: " + e.getMessage());
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long size = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = "\"" + Integer.toHexString(file.getFileName().toString().hashCode()) + "-" +
+                Long.toHexString(lastModified) + "-" + Long.toHexString(size) + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        response.setContentType(ImageService.contentTypeOf(file));
+        response.setContentLengthLong(size);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        // 优先交给 Tomcat sendfile，由内核直接从文件拷贝到套接字
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    /**
+     * 上传商品原图（管理员），返回图片地址
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> uploadImage(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String name) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            String url = imageService.store(file, name);
+            response.put("success", true);
+            response.put("url", url);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "上传失败: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    private String negotiateFormat(String format, String accept) {
+        if (format != null) {
+            String lower = format.toLowerCase();
+            if ("jpg".equals(lower) || "jpeg".equals(lower)) return "jpeg";
+            if ("png".equals(lower) || "webp".equals(lower)) return lower;
+            return null;
+        }
+        if (accept != null && accept.contains("image/webp") && imageService.isWebpSupported()) {
+            return "webp";
+        }
+        return null;
+    }
+}
@@ -30,12 +30,20 @@ public class OrderController {
         }
     }
 
-    // 获取用户的所有订单
+    // 获取用户的所有订单；传 cursor 或 size 时按 (orderDate, id) 键集分页
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<OrderDTO>> getUserOrders(@PathVariable Long userId) {
+    public ResponseEntity<?> getUserOrders(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         try {
+            if (cursor != null || size != null) {
+                return ResponseEntity.ok(orderService.getUserOrdersPage(userId, cursor, size));
+            }
             List<OrderDTO> orders = orderService.getUserOrders(userId);
             return ResponseEntity.ok(orders);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -93,12 +101,19 @@ public class OrderController {
         }
     }
 
-    // 获取所有订单
+    // 获取所有订单；传 cursor 或 size 时按 (orderDate, id) 键集分页
     @GetMapping("/all")
-    public ResponseEntity<List<OrderDTO>> getAllOrders() {
+    public ResponseEntity<?> getAllOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         try {
+            if (cursor != null || size != null) {
+                return ResponseEntity.ok(orderService.getAllOrdersPage(cursor, size));
+            }
             List<OrderDTO> orders = orderService.getAllOrders();
             return ResponseEntity.ok(orders);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
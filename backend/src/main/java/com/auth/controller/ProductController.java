@@ -1,10 +1,18 @@
 package com.auth.controller;
 
+import com.auth.dto.BulkProductResultDTO;
 import com.auth.dto.ProductDTO;
+import com.auth.dto.ProductFacetResultDTO;
+import com.auth.service.CatalogResponseCache;
 import com.auth.service.ProductService;
+import com.auth.service.ResourceVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -16,12 +24,33 @@ public class ProductController {
     @Autowired
     private ProductService productService;
 
-    // 获取所有商品
+    @Autowired
+    private ResourceVersionService resourceVersionService;
+
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
+    // 获取所有商品；传 cursor 或 size 时按ID键集分页
     @GetMapping
-    public ResponseEntity<List<ProductDTO>> getAllProducts() {
+    public ResponseEntity<?> getAllProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest) {
+        boolean paged = cursor != null || size != null;
+        boolean gzip = !paged && acceptsGzip(acceptEncoding);
+        String etag = encodingETag(resourceVersionService.catalogETag(), gzip);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
-            List<ProductDTO> products = productService.getAllProducts();
-            return ResponseEntity.ok(products);
+            if (paged) {
+                return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                        .body(productService.getProductsPage(cursor, size));
+            }
+            return cachedJson(catalogResponseCache.getAllProducts(), gzip, etag);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -29,9 +58,27 @@ public class ProductController {
 
     // 根据分类获取商品
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<ProductDTO>> getProductsByCategory(@PathVariable String category) {
+    public ResponseEntity<byte[]> getProductsByCategory(
+            @PathVariable String category,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = encodingETag(resourceVersionService.catalogETag(), gzip);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        try {
+            return cachedJson(catalogResponseCache.getProductsByCategory(category), gzip, etag);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    // 获取热门商品（按24小时衰减销量排序）
+    @GetMapping("/hot")
+    public ResponseEntity<List<ProductDTO>> getHotProducts(@RequestParam(defaultValue = "10") int limit) {
         try {
-            List<ProductDTO> products = productService.getProductsByCategory(category);
+            List<ProductDTO> products = productService.getHotProducts(Math.max(1, Math.min(limit, 50)));
             return ResponseEntity.ok(products);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
@@ -40,11 +87,15 @@ public class ProductController {
 
     // 根据ID获取商品
     @GetMapping("/{id}")
-    public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id) {
+    public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id, WebRequest webRequest) {
+        String etag = resourceVersionService.catalogETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             ProductDTO product = productService.getProductById(id);
             if (product != null) {
-                return ResponseEntity.ok(product);
+                return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(product);
             } else {
                 return ResponseEntity.notFound().build();
             }
@@ -55,10 +106,38 @@ public class ProductController {
 
     // 搜索商品
     @GetMapping("/search")
-    public ResponseEntity<List<ProductDTO>> searchProducts(@RequestParam String keyword) {
+    public ResponseEntity<List<ProductDTO>> searchProducts(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "50") int limit,
+            WebRequest webRequest) {
+        String etag = resourceVersionService.catalogETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
-            List<ProductDTO> products = productService.searchProducts(keyword);
-            return ResponseEntity.ok(products);
+            List<ProductDTO> products = productService.searchProducts(keyword, Math.max(1, Math.min(limit, 200)));
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(products);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    // 分面筛选商品：同一分面多选取并集，分面之间取交集
+    @GetMapping("/filter")
+    public ResponseEntity<ProductFacetResultDTO> filterProducts(
+            @RequestParam(required = false) List<String> category,
+            @RequestParam(required = false) List<String> priceBand,
+            @RequestParam(required = false) List<String> tag,
+            @RequestParam(defaultValue = "50") int limit,
+            WebRequest webRequest) {
+        String etag = resourceVersionService.catalogETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        try {
+            ProductFacetResultDTO result = productService.filterProducts(category, priceBand, tag,
+                    Math.max(1, Math.min(limit, 200)));
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(result);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -66,13 +145,17 @@ public class ProductController {
 
     // 获取所有分类
     @GetMapping("/categories")
-    public ResponseEntity<List<String>> getAllCategories() {
+    public ResponseEntity<List<String>> getAllCategories(WebRequest webRequest) {
+        String etag = resourceVersionService.catalogETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             // 这里可以从数据库获取，暂时返回固定分类
             List<String> categories = java.util.Arrays.asList(
                     "recommend", "weather", "festival", "classic", "fruit", "milktea", "special"
             );
-            return ResponseEntity.ok(categories);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(categories);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -89,6 +172,23 @@ public class ProductController {
         }
     }
 
+    // 批量导入/更新商品 - 按名称匹配，逐行返回结果
+    @PostMapping("/bulk")
+    public ResponseEntity<?> bulkUpsertProducts(@RequestBody List<ProductDTO> products) {
+        if (products == null || products.isEmpty()) {
+            return ResponseEntity.badRequest().body("商品列表不能为空");
+        }
+        if (products.size() > ProductService.BULK_MAX_ROWS) {
+            return ResponseEntity.badRequest().body("单次最多导入 " + ProductService.BULK_MAX_ROWS + " 个商品");
+        }
+        try {
+            BulkProductResultDTO result = productService.bulkUpsertProducts(products);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(e.getMessage());
+        }
+    }
+
     // 更新商品 - 现在公开，无需权限
     @PutMapping("/{id}")
     public ResponseEntity<ProductDTO> updateProduct(
@@ -129,4 +229,48 @@ public class ProductController {
             return ResponseEntity.badRequest().build();
         }
     }
-}
\ No newline at end of file
+
+    // 直接写出预序列化的 JSON，客户端支持时返回预压缩版本
+    private ResponseEntity<byte[]> cachedJson(CatalogResponseCache.CachedBody body, boolean gzip, String etag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.getGzipped());
+        }
+        return builder.body(body.getJson());
+    }
+
+    // 压缩和未压缩的响应字节不同，强 ETag 也要区分
+    private static String encodingETag(String etag, boolean gzip) {
+        return gzip ? etag.substring(0, etag.length() - 1) + "-gz\"" : etag;
+    }
+
+    // Accept-Encoding 中列出 gzip 且 q 不为 0
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!"gzip".equalsIgnoreCase(name) && !"x-gzip".equalsIgnoreCase(name)) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2).trim()) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -3,15 +3,22 @@ package com.auth.controller;
 
 import com.auth.dto.RecommendationRequest;
 import com.auth.dto.RecommendationResponse;
-import com.auth.entity.Product;
-import com.auth.service.DeepSeekService;
+import com.auth.service.DeepSeekClient;
+import com.auth.service.RecommendationCache;
+import com.auth.service.RecommendationListStore;
 import com.auth.service.RecommendationService;
+import com.auth.service.RecommendationStreamListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/api/recommendations")
@@ -19,93 +26,214 @@ import java.util.Map;
 public class RecommendationController {
 
     @Autowired
-    private DeepSeekService deepSeekService;
+    private RecommendationService recommendationService;
 
     @Autowired
-    private RecommendationService recommendationService;
+    private RecommendationCache recommendationCache;
+
+    @Autowired
+    private DeepSeekClient deepSeekClient;
+
+    @Autowired
+    private RecommendationListStore recommendationListStore;
+
+    @Value("${ai.recommendation.timeout:10000}")
+    private long timeoutMillis;
 
     @PostMapping("/ai-recommendation")
     public ResponseEntity<?> getAIRecommendation(@RequestBody RecommendationRequest request) {
         try {
             System.out.println("收到AI推荐请求: " + request);
 
-            // 调用DeepSeek服务获取AI推荐
-            String aiResponse = deepSeekService.getRecommendation(
-                    request.getUserPreference(),
-                    request.getWeather(),
-                    request.getMood()
-            );
-
-            System.out.println("AI响应: " + aiResponse);
-
-            // 解析AI响应并转换为RecommendationResponse
-            RecommendationResponse response = parseAIResponse(aiResponse);
+            // 只在现有商品中推荐，命中缓存时不再调用AI
+            RecommendationResponse response = recommendationService.getAIRecommendation(request);
 
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", true);
-            result.put("recommendedProduct", response.getRecommendedProduct());
-            result.put("reasoning", response.getReasoning());
-            result.put("description", response.getDescription());
-            result.put("productId", response.getProductId());
-            result.put("productPrice", response.getProductPrice()); // 新增价格字段
-
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(toResult(response));
 
         } catch (Exception e) {
             System.err.println("AI推荐服务异常: " + e.getMessage());
             e.printStackTrace();
 
-            Map<String, Object> errorResult = new HashMap<>();
-            errorResult.put("success", false);
-            errorResult.put("message", "推荐服务暂时不可用");
-            errorResult.put("recommendation", getFallbackResponse());
-            return ResponseEntity.ok(errorResult);
+            return ResponseEntity.ok(errorResult());
         }
     }
 
     /**
-     * 解析AI返回的文本格式
+     * AI推荐（异步）- 等待AI期间不占用请求线程
+     */
+    @PostMapping("/ai-recommendation/async")
+    public DeferredResult<ResponseEntity<?>> getAIRecommendationAsync(@RequestBody RecommendationRequest request) {
+        // 上游调用已有总时限，这里多留一点余量兜底
+        DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>(timeoutMillis + 2000L);
+        deferred.onTimeout(() -> deferred.setResult(ResponseEntity.ok(errorResult())));
+
+        recommendationService.getAIRecommendationAsync(request).whenComplete((response, error) -> {
+            if (error != null) {
+                System.err.println("AI推荐服务异常: " + error.getMessage());
+                deferred.setResult(ResponseEntity.ok(errorResult()));
+            } else {
+                deferred.setResult(ResponseEntity.ok(toResult(response)));
+            }
+        });
+        return deferred;
+    }
+
+    /**
+     * AI推荐（流式）- 以 text/event-stream 推送 delta、product、reasoning、description、done 事件
      */
-    private RecommendationResponse parseAIResponse(String aiResponse) {
-        String recommendedProduct = "经典珍珠奶茶";
-        String reasoning = "系统推荐";
-        String description = "经典口味，适合大多数场合";
-        Double productPrice = 18.00;
-
-        if (aiResponse != null && !aiResponse.isEmpty()) {
-            String[] lines = aiResponse.split("\n");
-            for (String line : lines) {
-                if (line.startsWith("推荐产品：")) {
-                    recommendedProduct = line.substring(5).trim();
-                } else if (line.startsWith("推荐理由：")) {
-                    reasoning = line.substring(5).trim();
-                } else if (line.startsWith("产品描述：")) {
-                    description = line.substring(5).trim();
+    @PostMapping(value = "/ai-recommendation/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAIRecommendation(@RequestBody RecommendationRequest request) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis + 2000L);
+        AtomicBoolean closed = new AtomicBoolean();
+        emitter.onCompletion(() -> closed.set(true));
+        emitter.onTimeout(() -> closed.set(true));
+        emitter.onError(e -> closed.set(true));
+
+        recommendationService.streamAIRecommendation(request, new RecommendationStreamListener() {
+            @Override
+            public void onDelta(String text) {
+                send("delta", text);
+            }
+
+            @Override
+            public void onProduct(RecommendationResponse product) {
+                Map<String, Object> data = new HashMap<>();
+                data.put("recommendedProduct", product.getRecommendedProduct());
+                data.put("productId", product.getProductId());
+                data.put("productPrice", product.getProductPrice());
+                send("product", data);
+            }
+
+            @Override
+            public void onField(String field, String value) {
+                send(field, value);
+            }
+
+            @Override
+            public void onComplete(RecommendationResponse response) {
+                send("done", toResult(response));
+                if (!closed.get()) {
+                    emitter.complete();
                 }
             }
+
+            // 客户端断开后继续接收上游输出以便写入缓存，只是不再推送
+            private void send(String name, Object data) {
+                if (closed.get()) {
+                    return;
+                }
+                try {
+                    emitter.send(SseEmitter.event().name(name).data(data));
+                } catch (Exception e) {
+                    closed.set(true);
+                    System.err.println("推送AI推荐事件失败: " + e.getMessage());
+                }
+            }
+        });
+        return emitter;
+    }
+
+    private Map<String, Object> toResult(RecommendationResponse response) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("recommendedProduct", response.getRecommendedProduct());
+        result.put("reasoning", response.getReasoning());
+        result.put("description", response.getDescription());
+        result.put("productId", response.getProductId());
+        result.put("productPrice", response.getProductPrice()); // 新增价格字段
+        result.put("source", response.getSource());
+        return result;
+    }
+
+    private Map<String, Object> errorResult() {
+        Map<String, Object> errorResult = new HashMap<>();
+        errorResult.put("success", false);
+        errorResult.put("message", "推荐服务暂时不可用");
+        errorResult.put("recommendation", getFallbackResponse());
+        return errorResult;
+    }
+
+    /**
+     * AI推荐缓存命中、并发合并、熔断与上游连接统计
+     */
+    @GetMapping("/ai-recommendation/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> stats = recommendationCache.getStats();
+        stats.put("pipeline", recommendationService.getAIRecommendationStats());
+        stats.put("upstream", deepSeekClient.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * 天气推荐
+     */
+    @GetMapping("/weather/{weather}")
+    public ResponseEntity<?> getWeatherRecommendations(@PathVariable String weather) {
+        try {
+            return ResponseEntity.ok(recommendationService.getWeatherBasedRecommendations(weather));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("获取天气推荐失败: " + e.getMessage());
         }
+    }
 
-        // 增强的商品匹配逻辑
-        Long productId = recommendationService.findProductIdByName(recommendedProduct);
+    /**
+     * 节日推荐
+     */
+    @GetMapping("/festival/{festival}")
+    public ResponseEntity<?> getFestivalRecommendations(@PathVariable String festival) {
+        try {
+            return ResponseEntity.ok(recommendationService.getFestivalRecommendations(festival));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("获取节日推荐失败: " + e.getMessage());
+        }
+    }
 
-        // 如果找不到商品，使用默认商品
-        if (productId == null) {
-            System.out.println("未找到匹配商品: " + recommendedProduct + "，使用默认商品");
-            RecommendationResponse defaultResponse = recommendationService.getDefaultRecommendationPublic();
-            productId = defaultResponse.getProductId();
-            recommendedProduct = defaultResponse.getRecommendedProduct();
-            description = defaultResponse.getDescription();
+    /**
+     * 当季推荐
+     */
+    @GetMapping("/seasonal")
+    public ResponseEntity<?> getSeasonalRecommendations() {
+        try {
+            return ResponseEntity.ok(recommendationService.getSeasonalRecommendations());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("获取当季推荐失败: " + e.getMessage());
         }
+    }
 
-        // 获取商品价格
-        Product product = recommendationService.findProductById(productId);
-        if (product != null) {
-            productPrice = product.getPrice();
+    /**
+     * 预计算推荐列表的状态
+     */
+    @GetMapping("/precomputed/stats")
+    public ResponseEntity<Map<String, Object>> getPrecomputedStats() {
+        return ResponseEntity.ok(recommendationListStore.getStats());
+    }
+
+    /**
+     * 个性化推荐（按用户历史订单的口味偏好）
+     */
+    @GetMapping("/personalized/{userId}")
+    public ResponseEntity<?> getPersonalizedRecommendations(@PathVariable Long userId) {
+        try {
+            return ResponseEntity.ok(recommendationService.getPersonalizedRecommendations(userId));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("获取个性化推荐失败: " + e.getMessage());
         }
+    }
 
-        RecommendationResponse response = new RecommendationResponse(recommendedProduct, reasoning, description, productId);
-        response.setProductPrice(productPrice);
-        return response;
+    /**
+     * 相关推荐（常被一起购买的商品）
+     */
+    @GetMapping("/related/{productId}")
+    public ResponseEntity<?> getRelatedProducts(@PathVariable Long productId,
+                                                @RequestParam(defaultValue = "4") int limit) {
+        if (limit <= 0 || limit > 50) {
+            return ResponseEntity.badRequest().body("limit 必须在 1-50 之间");
+        }
+        try {
+            return ResponseEntity.ok(recommendationService.getRelatedProducts(productId, limit));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("获取相关推荐失败: " + e.getMessage());
+        }
     }
 
     /**
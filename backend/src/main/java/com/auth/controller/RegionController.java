@@ -2,9 +2,12 @@ package com.auth.controller;
 
 import com.auth.dto.*;
 import com.auth.service.RegionService;
+import com.auth.service.ResourceVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.HashMap;
 import java.util.List;
@@ -18,14 +21,21 @@ public class RegionController {
     @Autowired
     private RegionService regionService;
 
+    @Autowired
+    private ResourceVersionService resourceVersionService;
+
     /**
      * 获取所有地域
      */
     @GetMapping
-    public ResponseEntity<List<RegionDTO>> getAllRegions() {
+    public ResponseEntity<List<RegionDTO>> getAllRegions(WebRequest webRequest) {
+        String etag = resourceVersionService.regionETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             List<RegionDTO> regions = regionService.getAllActiveRegions();
-            return ResponseEntity.ok(regions);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(regions);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -35,11 +45,15 @@ public class RegionController {
      * 根据代码获取地域
      */
     @GetMapping("/{code}")
-    public ResponseEntity<RegionDTO> getRegionByCode(@PathVariable String code) {
+    public ResponseEntity<RegionDTO> getRegionByCode(@PathVariable String code, WebRequest webRequest) {
+        String etag = resourceVersionService.regionETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             RegionDTO region = regionService.getRegionByCode(code);
             if (region != null) {
-                return ResponseEntity.ok(region);
+                return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(region);
             } else {
                 return ResponseEntity.notFound().build();
             }
@@ -72,10 +86,15 @@ public class RegionController {
      */
     @GetMapping("/{regionCode}/products")
     public ResponseEntity<List<RegionProductDTO>> getRegionProducts(
-            @PathVariable String regionCode) {
+            @PathVariable String regionCode,
+            WebRequest webRequest) {
+        String etag = resourceVersionService.regionETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             List<RegionProductDTO> products = regionService.getRegionProducts(regionCode);
-            return ResponseEntity.ok(products);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(products);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -86,10 +105,15 @@ public class RegionController {
      */
     @GetMapping("/{regionCode}/featured-products")
     public ResponseEntity<List<RegionProductDTO>> getFeaturedProducts(
-            @PathVariable String regionCode) {
+            @PathVariable String regionCode,
+            WebRequest webRequest) {
+        String etag = resourceVersionService.regionETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             List<RegionProductDTO> products = regionService.getFeaturedProducts(regionCode);
-            return ResponseEntity.ok(products);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(products);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -141,10 +165,14 @@ public class RegionController {
      * 获取地域统计信息
      */
     @GetMapping("/stats")
-    public ResponseEntity<List<Map<String, Object>>> getRegionStats() {
+    public ResponseEntity<List<Map<String, Object>>> getRegionStats(WebRequest webRequest) {
+        String etag = resourceVersionService.regionETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             List<Map<String, Object>> stats = regionService.getAllRegionsWithStats();
-            return ResponseEntity.ok(stats);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(stats);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -156,10 +184,15 @@ public class RegionController {
     @GetMapping("/search")
     public ResponseEntity<List<RegionProductDTO>> searchRegionProducts(
             @RequestParam String keyword,
-            @RequestParam(required = false) String regionCode) {
+            @RequestParam(required = false) String regionCode,
+            WebRequest webRequest) {
+        String etag = resourceVersionService.regionETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             List<RegionProductDTO> results = regionService.searchRegionProducts(keyword, regionCode);
-            return ResponseEntity.ok(results);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(results);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
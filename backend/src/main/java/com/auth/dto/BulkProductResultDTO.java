@@ -0,0 +1,29 @@
+package com.auth.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkProductResultDTO {
+    private int total; // 提交行数
+    private int created; // 新增数
+    private int updated; // 更新数
+    private int failed; // 失败数
+    private List<RowResult> rows = new ArrayList<>(); // 逐行结果，顺序与请求一致
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowResult {
+        private int index; // 请求中的行号，从0开始
+        private String name;
+        private Long productId;
+        private String status; // created/updated/failed
+        private String message;
+    }
+}
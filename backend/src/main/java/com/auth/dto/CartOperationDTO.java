@@ -0,0 +1,14 @@
+package com.auth.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationDTO {
+    private String action; // add/update/remove
+    private Long productId;
+    private Integer quantity; // add 为增加的数量，update 为目标数量，remove 忽略
+}
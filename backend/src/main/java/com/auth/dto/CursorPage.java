@@ -0,0 +1,66 @@
+package com.auth.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 键集分页结果
+ */
+public class CursorPage<T> {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 100;
+
+    private List<T> items = new ArrayList<>();
+    private String nextCursor;
+    private boolean hasMore;
+    private int size;
+
+    public CursorPage() {}
+
+    public CursorPage(List<T> items, String nextCursor, boolean hasMore, int size) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+        this.size = size;
+    }
+
+    /**
+     * 规范化页大小：为空取默认值，超出上限截断
+     */
+    public static int normalizeSize(Integer size) {
+        if (size == null || size <= 0) {
+            return DEFAULT_SIZE;
+        }
+        return Math.min(size, MAX_SIZE);
+    }
+
+    /**
+     * 由多查一条（size + 1）的结果构建分页，最后一条用于判断是否还有下一页
+     */
+    public static <E, T> CursorPage<T> fromSlice(List<E> fetched, int size,
+                                                 Function<E, T> mapper,
+                                                 Function<E, PageCursor> cursorOf) {
+        boolean hasMore = fetched.size() > size;
+        List<E> pageRows = hasMore ? fetched.subList(0, size) : fetched;
+
+        List<T> items = new ArrayList<>(pageRows.size());
+        for (E row : pageRows) {
+            items.add(mapper.apply(row));
+        }
+        String nextCursor = hasMore && !pageRows.isEmpty()
+                ? cursorOf.apply(pageRows.get(pageRows.size() - 1)).encode()
+                : null;
+        return new CursorPage<>(items, nextCursor, hasMore, size);
+    }
+
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+    public int getSize() { return size; }
+    public void setSize(int size) { this.size = size; }
+}
@@ -0,0 +1,56 @@
+package com.auth.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 键集分页游标 - 记录上一页最后一条记录的排序键，编码为URL安全的不透明字符串
+ */
+public class PageCursor {
+    private final LocalDateTime orderDate;
+    private final Long id;
+
+    private PageCursor(LocalDateTime orderDate, Long id) {
+        this.orderDate = orderDate;
+        this.id = id;
+    }
+
+    // 按 (id) 排序的游标
+    public static PageCursor ofId(Long id) {
+        return new PageCursor(null, id);
+    }
+
+    // 按 (orderDate, id) 排序的游标
+    public static PageCursor ofOrderDate(LocalDateTime orderDate, Long id) {
+        return new PageCursor(orderDate, id);
+    }
+
+    public String encode() {
+        String raw = orderDate != null ? orderDate + "|" + id : String.valueOf(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，为空返回null；格式错误抛出 IllegalArgumentException
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                return ofId(Long.valueOf(raw));
+            }
+            return ofOrderDate(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+        }
+    }
+
+    public LocalDateTime getOrderDate() { return orderDate; }
+    public Long getId() { return id; }
+}
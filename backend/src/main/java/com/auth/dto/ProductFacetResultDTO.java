@@ -0,0 +1,20 @@
+package com.auth.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacetResultDTO {
+    private List<ProductDTO> products; // 当前页匹配商品
+    private int total; // 匹配商品总数
+
+    // 各分面取值的商品数（按其他分面的已选条件计算）
+    private Map<String, Integer> categoryCounts;
+    private Map<String, Integer> priceBandCounts;
+    private Map<String, Integer> tagCounts;
+}
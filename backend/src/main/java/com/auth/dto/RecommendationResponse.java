@@ -5,6 +5,7 @@ public class RecommendationResponse {
     private String reasoning;
     private String description;
     private Long productId; // 新增字段
+    private String source; // 推荐来源：ai/cache/fallback/default
 
     // 默认构造函数
     public RecommendationResponse() {}
@@ -70,6 +71,22 @@ public class RecommendationResponse {
         this.productId = productId;
     }
 
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    // 复制一份，缓存中的对象不直接交给调用方修改
+    public RecommendationResponse copy() {
+        RecommendationResponse copy = new RecommendationResponse(recommendedProduct, reasoning, description, productId);
+        copy.setProductPrice(productPrice);
+        copy.setSource(source);
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "RecommendationResponse{" +
@@ -77,6 +94,7 @@ public class RecommendationResponse {
                 ", reasoning='" + reasoning + '\'' +
                 ", description='" + description + '\'' +
                 ", productId=" + productId +
+                ", source='" + source + '\'' +
                 '}';
     }
 }
\ No newline at end of file
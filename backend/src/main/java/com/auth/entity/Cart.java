@@ -22,6 +22,10 @@ public class Cart {
     @Column(name = "total_price", precision = 10, scale = 2)
     private Double totalPrice = 0.0;
 
+    // 与 totalPrice 一起由购物车写操作增量维护
+    @Column(name = "total_quantity", nullable = false)
+    private Integer totalQuantity = 0;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
@@ -57,10 +61,7 @@ public class Cart {
                     return item.getProduct().getPrice() * item.getQuantity();
                 })
                 .sum();
-    }
-
-    public Integer getTotalQuantity() {
-        return cartItems.stream()
+        this.totalQuantity = cartItems.stream()
                 .mapToInt(item -> {
                     // 安全获取数量
                     return item != null && item.getQuantity() != null ? item.getQuantity() : 0;
@@ -68,6 +69,9 @@ public class Cart {
                 .sum();
     }
 
+    public Integer getTotalQuantity() { return totalQuantity != null ? totalQuantity : 0; }
+    public void setTotalQuantity(Integer totalQuantity) { this.totalQuantity = totalQuantity; }
+
     public void addItem(Product product, int quantity) {
         // 参数检查
         if (product == null || product.getId() == null || quantity <= 0) {
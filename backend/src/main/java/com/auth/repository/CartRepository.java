@@ -3,10 +3,12 @@ package com.auth.repository;
 import com.auth.entity.Cart;
 import com.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -21,4 +23,26 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
 
     // 检查用户是否有购物车
     boolean existsByUser(User user);
+
+    // 用户的购物车ID和用户名，不加载实体
+    @Query("SELECT c.id, u.username FROM Cart c JOIN c.user u WHERE u.id = :userId")
+    List<Object[]> findRefByUserId(@Param("userId") Long userId);
+
+    // 购物车合计和所有购物车项 (合计金额, 合计数量, 项ID, 商品ID, 数量)，一次查询；空购物车返回一行，后三列为 null
+    @Query("SELECT c.totalPrice, c.totalQuantity, ci.id, ci.product.id, ci.quantity " +
+            "FROM Cart c LEFT JOIN c.cartItems ci WHERE c.id = :cartId ORDER BY ci.id")
+    List<Object[]> findLinesById(@Param("cartId") Long cartId);
+
+    // 同上，并锁住购物车行和购物车项，写操作先调用以串行同一购物车的修改
+    @Query(value = "SELECT c.total_price, c.total_quantity, ci.id, ci.product_id, ci.quantity " +
+            "FROM carts c LEFT JOIN cart_items ci ON ci.cart_id = c.id WHERE c.id = :cartId ORDER BY ci.id FOR UPDATE",
+            nativeQuery = true)
+    List<Object[]> lockLinesById(@Param("cartId") Long cartId);
+
+    // 直接设置合计（清空购物车）
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Cart c SET c.totalPrice = :totalPrice, c.totalQuantity = :totalQuantity, " +
+            "c.updatedAt = CURRENT_TIMESTAMP WHERE c.id = :cartId")
+    int setTotals(@Param("cartId") Long cartId, @Param("totalPrice") double totalPrice,
+                  @Param("totalQuantity") int totalQuantity);
 }
\ No newline at end of file
@@ -3,8 +3,10 @@ package com.auth.repository;
 import com.auth.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +16,10 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     // 根据名称查找分类
     Optional<Category> findByName(String name);
 
+    // 批量校验分类名称，返回其中已存在的
+    @Query("SELECT c.name FROM Category c WHERE c.name IN :names")
+    List<String> findExistingNames(@Param("names") Collection<String> names);
+
     // 查找活跃分类
     List<Category> findByActiveTrue();
 
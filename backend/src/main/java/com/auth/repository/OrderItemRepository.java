@@ -24,6 +24,29 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     @Query("SELECT oi FROM OrderItem oi WHERE oi.product.id = :productId")
     List<OrderItem> findByProductId(@Param("productId") Long productId);
 
+    // 一组订单的商品名称：(订单ID, 商品名称)，按订单项ID排序
+    @Query("SELECT oi.order.id, oi.product.name FROM OrderItem oi WHERE oi.order.id IN :orderIds ORDER BY oi.order.id, oi.id")
+    List<Object[]> findProductNamesByOrderIds(@Param("orderIds") List<Long> orderIds);
+
+    // 某时间之后的销售明细（商品ID、数量、下单时间），用于预热销量热度，不做聚合
+    @Query("SELECT oi.product.id, oi.quantity, o.orderDate FROM OrderItem oi JOIN oi.order o " +
+            "WHERE o.orderDate >= :since AND o.status <> 'cancelled'")
+    List<Object[]> findSalesSince(@Param("since") LocalDateTime since);
+
+    // 当前最大的订单ID，作为共同购买矩阵重建的截止点
+    @Query("SELECT MAX(o.id) FROM Order o")
+    Long findMaxOrderId();
+
+    // 截止订单ID之前所有有效订单的 (订单ID, 商品ID)，按订单ID排序
+    @Query("SELECT o.id, oi.product.id FROM OrderItem oi JOIN oi.order o " +
+            "WHERE o.id <= :maxOrderId AND o.status <> 'cancelled' ORDER BY o.id")
+    List<Object[]> findOrderProductPairs(@Param("maxOrderId") Long maxOrderId);
+
+    // 用户所有有效订单的 (订单ID, 商品ID, 数量)，用于构建用户口味画像，不加载实体
+    @Query("SELECT o.id, oi.product.id, oi.quantity FROM OrderItem oi JOIN oi.order o " +
+            "WHERE o.user.id = :userId AND o.status <> 'cancelled'")
+    List<Object[]> findPurchasesByUserId(@Param("userId") Long userId);
+
     // 商品销售排行
     @Query("SELECT p.name, p.category, p.emoji, SUM(oi.quantity) as sales, SUM(oi.quantity * oi.unitPrice) as revenue " +
             "FROM OrderItem oi JOIN oi.product p " +
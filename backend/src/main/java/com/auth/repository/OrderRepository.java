@@ -2,6 +2,8 @@ package com.auth.repository;
 
 import com.auth.entity.Order;
 import com.auth.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -52,6 +54,24 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     @Query("SELECT o.status, COUNT(o) FROM Order o GROUP BY o.status")
     List<Object[]> getOrderStatusDistribution();
 
+    // 某时间之后下过单的用户ID，用于预计算活跃用户的推荐列表
+    @Query("SELECT DISTINCT o.user.id FROM Order o WHERE o.orderDate >= :since")
+    List<Long> findActiveUserIds(@Param("since") LocalDateTime since, Pageable pageable);
+
+    // 一组用户的订单数和消费总额：(用户ID, 订单数, 总额)
+    @Query("SELECT o.user.id, COUNT(o), COALESCE(SUM(o.totalPrice), 0) FROM Order o " +
+            "WHERE o.user.id IN :userIds GROUP BY o.user.id")
+    List<Object[]> summarizeByUserIds(@Param("userIds") List<Long> userIds);
+
+    // 一组用户各自最近的两个订单：(用户ID, 订单ID, 金额)，按用户、时间倒序；
+    // 窗口函数沿 idx_orders_user_date_id 每个用户只扫描一遍自己的订单
+    @Query(value = "SELECT user_id, id, total_price FROM (" +
+            "SELECT o.user_id, o.id, o.total_price, o.order_date, " +
+            "ROW_NUMBER() OVER (PARTITION BY o.user_id ORDER BY o.order_date DESC, o.id DESC) AS rn " +
+            "FROM orders o WHERE o.user_id IN (:userIds)) latest " +
+            "WHERE rn <= 2 ORDER BY user_id, order_date DESC, id DESC", nativeQuery = true)
+    List<Object[]> findLatestTwoByUserIds(@Param("userIds") List<Long> userIds);
+
     // 获取最近订单
     @Query("SELECT o FROM Order o ORDER BY o.orderDate DESC")
     List<Order> findAllByOrderByOrderDateDesc();
@@ -74,4 +94,36 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // 获取最近N个订单
     @Query("SELECT o FROM Order o ORDER BY o.orderDate DESC")
     List<Order> findTop10ByOrderByOrderDateDesc();
-}
\ No newline at end of file
+
+    // ============ 键集分页：按 (orderDate, id) 倒序，用索引定位起点，不使用 OFFSET ============
+
+    // 第一页
+    @EntityGraph(attributePaths = {"user"})
+    @Query("SELECT o FROM Order o ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findFirstPage(Pageable pageable);
+
+    // 游标之后的一页
+    @EntityGraph(attributePaths = {"user"})
+    @Query("SELECT o FROM Order o " +
+            "WHERE o.orderDate < :orderDate OR (o.orderDate = :orderDate AND o.id < :id) " +
+            "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findPageBefore(@Param("orderDate") LocalDateTime orderDate,
+                               @Param("id") Long id,
+                               Pageable pageable);
+
+    // 用户订单第一页
+    @EntityGraph(attributePaths = {"user"})
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findFirstPageByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    // 用户订单游标之后的一页
+    @EntityGraph(attributePaths = {"user"})
+    @Query("SELECT o FROM Order o " +
+            "WHERE o.user.id = :userId " +
+            "AND (o.orderDate < :orderDate OR (o.orderDate = :orderDate AND o.id < :id)) " +
+            "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findPageBeforeByUserId(@Param("userId") Long userId,
+                                       @Param("orderDate") LocalDateTime orderDate,
+                                       @Param("id") Long id,
+                                       Pageable pageable);
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -88,4 +89,8 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     // 检查商品名称是否存在
     boolean existsByName(String name);
+
+    // 批量按名称查找商品ID（批量导入时一次查询校验整批名称，只取 id 和 name）
+    @Query("SELECT p.id, p.name FROM Product p WHERE p.name IN :names ORDER BY p.id")
+    List<Object[]> findIdsByNames(@Param("names") Collection<String> names);
 }
\ No newline at end of file
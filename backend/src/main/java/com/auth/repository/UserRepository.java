@@ -1,9 +1,13 @@
 package com.auth.repository;
 
 import com.auth.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -17,4 +21,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     // 检查邮箱是否存在
     boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    // 键集分页：按ID升序取游标之后的一页（第一页 afterId 传 0）
+    @Query("SELECT u FROM User u WHERE u.id > :afterId ORDER BY u.id ASC")
+    List<User> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+}
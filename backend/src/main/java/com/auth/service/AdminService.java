@@ -1,6 +1,8 @@
 package com.auth.service;
 
 import com.auth.dto.AdminStatsDTO;
+import com.auth.dto.CursorPage;
+import com.auth.dto.PageCursor;
 import com.auth.dto.UserInfoDTO;
 import com.auth.dto.OrderDetailDTO;
 import com.auth.entity.User;
@@ -14,12 +16,17 @@ import com.auth.repository.ProductRepository;
 import com.auth.repository.OrderItemRepository;
 import com.auth.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,6 +47,9 @@ public class AdminService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private OrderService orderService;
+
     /**
      * 获取管理面板统计数据
      */
@@ -70,13 +80,65 @@ public class AdminService {
         return stats;
     }
 
+    // 每次批量统计的用户数
+    private static final int USER_SUMMARY_BATCH = 500;
+
     /**
      * 获取所有用户信息
      */
     public List<UserInfoDTO> getAllUsers() {
         List<User> users = userRepository.findAll();
 
-        return users.stream().map(user -> {
+        List<UserInfoDTO> result = new ArrayList<>(users.size());
+        for (int from = 0; from < users.size(); from += USER_SUMMARY_BATCH) {
+            result.addAll(convertToUserInfoDTOs(users.subList(from, Math.min(users.size(), from + USER_SUMMARY_BATCH))));
+        }
+        return result;
+    }
+
+    /**
+     * 键集分页获取用户信息，按用户ID升序
+     */
+    public CursorPage<UserInfoDTO> getUsersPage(String cursor, Integer size) {
+        int pageSize = CursorPage.normalizeSize(size);
+        PageCursor after = PageCursor.decode(cursor);
+        long afterId = after != null ? after.getId() : 0L;
+
+        List<User> users = userRepository.findPageAfter(afterId, PageRequest.of(0, pageSize + 1));
+        CursorPage<User> page = CursorPage.fromSlice(users, pageSize, user -> user, user -> PageCursor.ofId(user.getId()));
+        return new CursorPage<>(convertToUserInfoDTOs(page.getItems()), page.getNextCursor(), page.isHasMore(), pageSize);
+    }
+
+    // 一组用户的订单数、消费总额和最近两个订单，固定三次查询，与用户数和订单数无关
+    private List<UserInfoDTO> convertToUserInfoDTOs(List<User> users) {
+        if (users.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> userIds = users.stream().map(User::getId).collect(Collectors.toList());
+
+        Map<Long, Object[]> summaries = new HashMap<>();
+        for (Object[] row : orderRepository.summarizeByUserIds(userIds)) {
+            summaries.put((Long) row[0], row);
+        }
+
+        Map<Long, List<Object[]>> latestOrders = new HashMap<>();
+        List<Long> orderIds = new ArrayList<>();
+        for (Object[] row : orderRepository.findLatestTwoByUserIds(userIds)) {
+            // 原生查询的数值列类型随驱动而定，统一转换
+            latestOrders.computeIfAbsent(((Number) row[0]).longValue(), id -> new ArrayList<>()).add(row);
+            orderIds.add(((Number) row[1]).longValue());
+        }
+
+        // 每个订单取第一个商品作为代表
+        Map<Long, String> productNames = new HashMap<>();
+        if (!orderIds.isEmpty()) {
+            for (Object[] row : orderItemRepository.findProductNamesByOrderIds(orderIds)) {
+                productNames.putIfAbsent((Long) row[0], (String) row[1]);
+            }
+        }
+
+        List<UserInfoDTO> result = new ArrayList<>(users.size());
+        for (User user : users) {
             UserInfoDTO dto = new UserInfoDTO();
             dto.setId(user.getId());
             dto.setUsername(user.getUsername());
@@ -84,36 +146,24 @@ public class AdminService {
             dto.setRegisterTime(user.getCreatedAt());
             dto.setStatus("active"); // 根据实际情况设置
 
-            // 计算用户订单数量和总消费
-            List<Order> userOrders = orderRepository.findByUserId(user.getId());
-            dto.setOrderCount(userOrders.size());
-
-            BigDecimal totalSpent = BigDecimal.valueOf(userOrders.stream()
-                    .mapToDouble(Order::getTotalPrice)
-                    .sum());
-            dto.setTotalSpent(totalSpent);
-
-            // 获取最近订单
-            List<UserInfoDTO.RecentOrderDTO> recentOrders = userOrders.stream()
-                    .sorted((o1, o2) -> o2.getOrderDate().compareTo(o1.getOrderDate()))
-                    .limit(2)
-                    .map(order -> {
-                        // 获取订单中的第一个商品作为代表
-                        String productName = "暂无商品";
-                        if (!order.getOrderItems().isEmpty()) {
-                            productName = order.getOrderItems().get(0).getProduct().getName();
-                        }
-                        return new UserInfoDTO.RecentOrderDTO(
-                                order.getId(),
-                                productName,
-                                BigDecimal.valueOf(order.getTotalPrice())
-                        );
-                    })
-                    .collect(Collectors.toList());
+            Object[] summary = summaries.get(user.getId());
+            dto.setOrderCount(summary != null ? ((Long) summary[1]).intValue() : 0);
+            dto.setTotalSpent(BigDecimal.valueOf(summary != null ? ((Number) summary[2]).doubleValue() : 0.0));
+
+            List<UserInfoDTO.RecentOrderDTO> recentOrders = new ArrayList<>();
+            for (Object[] row : latestOrders.getOrDefault(user.getId(), new ArrayList<>())) {
+                Long orderId = ((Number) row[1]).longValue();
+                Double amount = row[2] != null ? ((Number) row[2]).doubleValue() : null;
+                recentOrders.add(new UserInfoDTO.RecentOrderDTO(
+                        orderId,
+                        productNames.getOrDefault(orderId, "暂无商品"),
+                        BigDecimal.valueOf(amount != null ? amount : 0.0)
+                ));
+            }
             dto.setRecentOrders(recentOrders);
-
-            return dto;
-        }).collect(Collectors.toList());
+            result.add(dto);
+        }
+        return result;
     }
 
     /**
@@ -151,6 +201,20 @@ public class AdminService {
         }).collect(Collectors.toList());
     }
 
+    /**
+     * 键集分页获取订单详情，按下单时间倒序
+     */
+    public CursorPage<OrderDetailDTO> getOrdersPage(String cursor, Integer size) {
+        int pageSize = CursorPage.normalizeSize(size);
+        PageCursor after = OrderService.decodeOrderCursor(cursor);
+
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<Order> orders = after == null
+                ? orderRepository.findFirstPage(limit)
+                : orderRepository.findPageBefore(after.getOrderDate(), after.getId(), limit);
+        return CursorPage.fromSlice(orders, pageSize, this::convertToOrderDetailDTO, OrderService::cursorOf);
+    }
+
     /**
      * 获取最近订单
      */
@@ -200,6 +264,7 @@ public class AdminService {
         try {
             Order order = orderRepository.findById(orderId)
                     .orElseThrow(() -> new RuntimeException("订单不存在"));
+            String previousStatus = order.getStatus();
             order.setStatus(newStatus);
 
             // 如果是完成状态，设置完成时间
@@ -208,6 +273,7 @@ public class AdminService {
             }
 
             orderRepository.save(order);
+            orderService.onStatusChanged(order, previousStatus);
             return true;
         } catch (Exception e) {
             return false;
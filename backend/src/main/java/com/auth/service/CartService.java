@@ -2,21 +2,30 @@ package com.auth.service;
 
 import com.auth.dto.CartDTO;
 import com.auth.dto.CartItemDTO;
+import com.auth.dto.CartOperationDTO;
 import com.auth.entity.Cart;
-import com.auth.entity.CartItem;
 import com.auth.entity.Product;
 import com.auth.entity.User;
 import com.auth.repository.CartRepository;
 import com.auth.repository.CartItemRepository;
-import com.auth.repository.ProductRepository;
 import com.auth.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.util.Optional;
-
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 购物车服务
+ *
+ * 写操作不加载购物车实体：购物车ID按用户缓存，商品单价取自目录快照。
+ * 先用一次查询锁住购物车行并取回所有购物车项，在内存中修改后，合计和变化的购物车项
+ * 作为一个多语句请求一次写回，响应直接由修改后的内容生成，每次修改共两次数据库往返
+ * （购物车ID未缓存时再加一次）。合计在写回时按当前价格重算，价格变动带来的偏差随之修正。
+ */
 @Service
 @Transactional
 public class CartService {
@@ -28,10 +37,24 @@ public class CartService {
     private CartItemRepository cartItemRepository;
 
     @Autowired
-    private ProductRepository productRepository;
+    private UserRepository userRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 批量操作类型
+    static final String ACTION_ADD = "add";
+    static final String ACTION_UPDATE = "update";
+    static final String ACTION_REMOVE = "remove";
+
+    // 批量操作单次请求的最大操作数
+    public static final int BATCH_MAX_OPERATIONS = 100;
+
+    // 用户ID -> 购物车ID和用户名，购物车创建后不再变化
+    private final ConcurrentHashMap<Long, CartRef> cartRefs = new ConcurrentHashMap<>();
 
     // 获取用户的购物车 - 增强版：自动创建购物车
     public CartDTO getCartByUserId(Long userId) {
@@ -40,15 +63,8 @@ public class CartService {
                 throw new RuntimeException("用户ID不能为空");
             }
 
-            // 首先检查用户是否存在
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("用户不存在，ID: " + userId));
-
             // 查找用户的购物车，如果不存在就创建一个
-            Cart cart = cartRepository.findByUserId(userId)
-                    .orElseGet(() -> createCartForUser(user));
-
-            return convertToDTO(cart);
+            return loadCart(userId);
         } catch (Exception e) {
             throw new RuntimeException("获取购物车失败: " + e.getMessage(), e);
         }
@@ -78,29 +94,8 @@ public class CartService {
                 throw new RuntimeException("商品数量必须大于0");
             }
 
-            // 确保购物车存在
-            Cart cart = getOrCreateCart(userId);
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new RuntimeException("商品不存在，ID: " + productId));
-
-            // 查找是否已存在该商品
-            Optional<CartItem> existingItem = cartItemRepository.findByCartAndProduct(cart, product);
-
-            if (existingItem.isPresent()) {
-                // 更新数量
-                CartItem item = existingItem.get();
-                item.setQuantity(item.getQuantity() + quantity);
-                cartItemRepository.save(item);
-            } else {
-                // 新增商品
-                CartItem newItem = new CartItem(cart, product, quantity);
-                cartItemRepository.save(newItem);
-            }
-
-            // 保存购物车以触发@PreUpdate重新计算总价
-            cartRepository.save(cart);
-
-            return convertToDTO(cart);
+            Product product = getProduct(productId);
+            return modify(userId, lines -> lines.add(product, quantity));
         } catch (Exception e) {
             throw new RuntimeException("添加商品到购物车失败: " + e.getMessage(), e);
         }
@@ -117,25 +112,8 @@ public class CartService {
                 throw new RuntimeException("数量不能为空");
             }
 
-            Cart cart = getOrCreateCart(userId);
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new RuntimeException("商品不存在，ID: " + productId));
-
-            CartItem cartItem = cartItemRepository.findByCartAndProduct(cart, product)
-                    .orElseThrow(() -> new RuntimeException("购物车中未找到该商品，商品ID: " + productId));
-
-            if (quantity <= 0) {
-                // 使用新的方法名
-                cartItemRepository.deleteByCartIdAndProductId(cart.getId(), productId);
-            } else {
-                cartItem.setQuantity(quantity);
-                cartItemRepository.save(cartItem);
-            }
-
-            // 保存购物车以触发@PreUpdate重新计算总价
-            cartRepository.save(cart);
-
-            return convertToDTO(cart);
+            Product product = getProduct(productId);
+            return modify(userId, lines -> lines.update(product, quantity));
         } catch (Exception e) {
             throw new RuntimeException("更新购物车商品数量失败: " + e.getMessage(), e);
         }
@@ -149,25 +127,79 @@ public class CartService {
                 throw new RuntimeException("用户ID和商品ID不能为空");
             }
 
-            Cart cart = getOrCreateCart(userId);
-
             // 检查商品是否存在
-            productRepository.findById(productId)
-                    .orElseThrow(() -> new RuntimeException("商品不存在，ID: " + productId));
-
-            // 使用新的方法名删除
-            cartItemRepository.deleteByCartIdAndProductId(cart.getId(), productId);
-
-            // 保存购物车以触发@PreUpdate重新计算总价
-            cartRepository.save(cart);
-
-            // 重新获取最新的购物车数据
-            return getCartByUserId(userId);
+            Product product = getProduct(productId);
+            return modify(userId, lines -> lines.remove(product));
         } catch (Exception e) {
             throw new RuntimeException("从购物车移除商品失败: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 在一个事务中依次执行多个增加/更新/移除操作，任一操作失败时全部回滚，最后只写回一次
+     */
+    public CartDTO applyOperations(Long userId, List<CartOperationDTO> operations) {
+        try {
+            if (userId == null) {
+                throw new RuntimeException("用户ID不能为空");
+            }
+            Map<Long, Product> products = resolveOperations(operations, catalogSnapshotService.getSnapshot());
+
+            return modify(userId, lines -> {
+                for (CartOperationDTO operation : operations) {
+                    Product product = products.get(operation.getProductId());
+                    switch (operation.getAction()) {
+                        case ACTION_ADD:
+                            lines.add(product, operation.getQuantity());
+                            break;
+                        case ACTION_UPDATE:
+                            lines.update(product, operation.getQuantity());
+                            break;
+                        default:
+                            lines.remove(product);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            throw new RuntimeException("批量修改购物车失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 校验批量操作并一次取出涉及的所有商品
+     */
+    static Map<Long, Product> resolveOperations(List<CartOperationDTO> operations, CatalogSnapshot snapshot) {
+        if (operations == null || operations.isEmpty()) {
+            throw new RuntimeException("操作列表不能为空");
+        }
+        Map<Long, Product> products = new HashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            CartOperationDTO operation = operations.get(i);
+            String action = operation != null ? operation.getAction() : null;
+            if (!ACTION_ADD.equals(action) && !ACTION_UPDATE.equals(action) && !ACTION_REMOVE.equals(action)) {
+                throw new RuntimeException("第 " + (i + 1) + " 个操作类型无效，应为 add/update/remove");
+            }
+            if (operation.getProductId() == null) {
+                throw new RuntimeException("第 " + (i + 1) + " 个操作缺少商品ID");
+            }
+            if (ACTION_ADD.equals(action) && (operation.getQuantity() == null || operation.getQuantity() <= 0)) {
+                throw new RuntimeException("第 " + (i + 1) + " 个操作的商品数量必须大于0");
+            }
+            if (ACTION_UPDATE.equals(action) && operation.getQuantity() == null) {
+                throw new RuntimeException("第 " + (i + 1) + " 个操作的数量不能为空");
+            }
+            Long productId = operation.getProductId();
+            if (!products.containsKey(productId)) {
+                Product product = snapshot.getProduct(productId);
+                if (product == null) {
+                    throw new RuntimeException("商品不存在，ID: " + productId);
+                }
+                products.put(productId, product);
+            }
+        }
+        return products;
+    }
+
     // 清空购物车
     public void clearCart(Long userId) {
         try {
@@ -175,98 +207,251 @@ public class CartService {
                 throw new RuntimeException("用户ID不能为空");
             }
 
-            Cart cart = getOrCreateCart(userId);
-            cartItemRepository.deleteByCart(cart);
-
-            // 保存购物车以触发@PreUpdate重新计算总价
-            cartRepository.save(cart);
+            CartRef cart = getOrCreateCart(userId);
+            if (cartRepository.setTotals(cart.id, 0.0, 0) == 0) {
+                cart = reloadCart(userId);
+                cartRepository.setTotals(cart.id, 0.0, 0);
+            }
+            cartItemRepository.deleteByCartId(cart.id);
         } catch (Exception e) {
             throw new RuntimeException("清空购物车失败: " + e.getMessage(), e);
         }
     }
 
+    // 锁住购物车后在内存中修改，合计和变化的购物车项一次写回，响应不再查询
+    private CartDTO modify(Long userId, Consumer<CartLines> change) {
+        CartLines lines = lockCart(userId);
+        change.accept(lines);
+        CartDTO dto = toDTO(lines.cart, lines.items, lines.itemIds);
+        write(lines, dto.getTotalPrice(), dto.getTotalQuantity());
+        return dto;
+    }
+
+    // 锁住购物车行并取回所有购物车项；缓存的购物车已不存在时重新获取一次
+    private CartLines lockCart(Long userId) {
+        CartRef cart = getOrCreateCart(userId);
+        List<Object[]> rows = cartRepository.lockLinesById(cart.id);
+        if (rows.isEmpty()) {
+            cart = reloadCart(userId);
+            rows = cartRepository.lockLinesById(cart.id);
+        }
+        return new CartLines(cart, rows);
+    }
+
+    // 合计、删除的购物车项和新增/修改的购物车项拼成一个多语句请求（连接参数需 allowMultiQueries=true）
+    private void write(CartLines lines, double totalPrice, int totalQuantity) {
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+
+        List<Long> deleted = new ArrayList<>();
+        for (Long productId : lines.loaded.keySet()) {
+            if (!lines.items.containsKey(productId)) {
+                deleted.add(productId);
+            }
+        }
+        List<Map.Entry<Long, Integer>> changed = new ArrayList<>();
+        for (Map.Entry<Long, Integer> item : lines.items.entrySet()) {
+            if (!item.getValue().equals(lines.loaded.get(item.getKey()))) {
+                changed.add(item);
+            }
+        }
+        boolean totalsChanged = lines.storedPrice == null || Math.abs(lines.storedPrice - totalPrice) > 0.005
+                || lines.storedQuantity == null || lines.storedQuantity != totalQuantity;
+        if (deleted.isEmpty() && changed.isEmpty() && !totalsChanged) {
+            return;
+        }
+
+        sql.append("UPDATE carts SET total_price = ?, total_quantity = ?, updated_at = NOW() WHERE id = ?");
+        args.add(totalPrice);
+        args.add(totalQuantity);
+        args.add(lines.cart.id);
+        if (!deleted.isEmpty()) {
+            sql.append("; DELETE FROM cart_items WHERE cart_id = ? AND product_id IN (");
+            args.add(lines.cart.id);
+            for (int i = 0; i < deleted.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args.add(deleted.get(i));
+            }
+            sql.append(")");
+        }
+        if (!changed.isEmpty()) {
+            sql.append("; INSERT INTO cart_items (cart_id, product_id, quantity, created_at, updated_at) VALUES ");
+            for (int i = 0; i < changed.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?, NOW(), NOW())" : ", (?, ?, ?, NOW(), NOW())");
+                args.add(lines.cart.id);
+                args.add(changed.get(i).getKey());
+                args.add(changed.get(i).getValue());
+            }
+            sql.append(" ON DUPLICATE KEY UPDATE quantity = VALUES(quantity), updated_at = NOW()");
+        }
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
     // 获取或创建购物车
-    private Cart getOrCreateCart(Long userId) {
+    private CartRef getOrCreateCart(Long userId) {
         try {
             if (userId == null) {
                 throw new RuntimeException("用户ID不能为空");
             }
 
-            return cartRepository.findByUserId(userId)
-                    .orElseGet(() -> {
-                        User user = userRepository.findById(userId)
-                                .orElseThrow(() -> new RuntimeException("用户不存在，ID: " + userId));
-                        return createCartForUser(user);
-                    });
+            CartRef cached = cartRefs.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+
+            List<Object[]> rows = cartRepository.findRefByUserId(userId);
+            if (!rows.isEmpty()) {
+                CartRef found = new CartRef(userId, (Long) rows.get(0)[0], (String) rows.get(0)[1]);
+                cartRefs.put(userId, found);
+                return found;
+            }
+
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("用户不存在，ID: " + userId));
+            Cart cart = createCartForUser(user);
+            CartRef created = new CartRef(userId, cart.getId(), user.getUsername());
+            // 事务提交后才缓存，回滚时不会留下不存在的购物车ID
+            TransactionCallbacks.afterCommit(() -> cartRefs.put(userId, created));
+            return created;
         } catch (Exception e) {
             throw new RuntimeException("获取或创建购物车失败: " + e.getMessage(), e);
         }
     }
 
-    // 转换实体为DTO - 修复版：移除不存在的setCreatedAt/setUpdatedAt方法调用
-    private CartDTO convertToDTO(Cart cart) {
+    // 购物车行已被删除时丢弃缓存的购物车ID
+    void forgetCart(Long userId) {
+        cartRefs.remove(userId);
+    }
+
+    private CartRef reloadCart(Long userId) {
+        cartRefs.remove(userId);
+        return getOrCreateCart(userId);
+    }
+
+    private Product getProduct(Long productId) {
+        Product product = catalogSnapshotService.getSnapshot().getProduct(productId);
+        if (product == null) {
+            throw new RuntimeException("商品不存在，ID: " + productId);
+        }
+        return product;
+    }
+
+    static double unitPrice(Product product) {
+        return product.getPrice() != null ? product.getPrice() : 0.0;
+    }
+
+    // 一次查询取回所有购物车项，商品信息和合计按目录快照的当前价格计算，不回写
+    private CartDTO loadCart(Long userId) {
         try {
-            CartDTO dto = new CartDTO();
-            dto.setId(cart.getId());
+            CartRef cart = getOrCreateCart(userId);
+            List<Object[]> rows = cartRepository.findLinesById(cart.id);
+            if (rows.isEmpty()) {
+                cart = reloadCart(userId);
+                rows = cartRepository.findLinesById(cart.id);
+            }
+            CartLines lines = new CartLines(cart, rows);
+            return toDTO(cart, lines.items, lines.itemIds);
+        } catch (Exception e) {
+            throw new RuntimeException("转换购物车DTO失败: " + e.getMessage(), e);
+        }
+    }
 
-            // 安全获取用户信息
-            if (cart.getUser() != null) {
-                dto.setUserId(cart.getUser().getId());
-                dto.setUsername(cart.getUser().getUsername() != null ? cart.getUser().getUsername() : "未知用户");
-            } else {
-                dto.setUserId(0L);
-                dto.setUsername("未知用户");
+    private CartDTO toDTO(CartRef cart, Map<Long, Integer> items, Map<Long, Long> itemIds) {
+        CartDTO dto = new CartDTO();
+        dto.setId(cart.id);
+        dto.setUserId(cart.userId);
+        dto.setUsername(cart.username != null ? cart.username : "未知用户");
+        dto.setTotalPrice(0.0);
+        dto.setTotalQuantity(0);
+
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        for (Map.Entry<Long, Integer> item : items.entrySet()) {
+            dto.addCartItem(toItemDTO(itemIds.get(item.getKey()), item.getKey(), item.getValue(), snapshot));
+        }
+        return dto;
+    }
+
+    // 购物车项DTO，商品信息取自目录快照
+    static CartItemDTO toItemDTO(Long itemId, Long productId, int quantity, CatalogSnapshot snapshot) {
+        CartItemDTO itemDTO = new CartItemDTO();
+        itemDTO.setId(itemId);
+        itemDTO.setProductId(productId);
+
+        // 安全获取商品信息
+        Product product = snapshot.getProduct(productId);
+        if (product != null) {
+            itemDTO.setProductName(product.getName() != null ? product.getName() : "未知商品");
+            itemDTO.setProductEmoji(product.getEmoji() != null ? product.getEmoji() : "");
+            itemDTO.setProductPrice(unitPrice(product));
+        } else {
+            itemDTO.setProductName("未知商品");
+            itemDTO.setProductEmoji("");
+            itemDTO.setProductPrice(0.0);
+        }
+
+        itemDTO.setQuantity(quantity);
+        return itemDTO;
+    }
+
+    /**
+     * 一个购物车的合计和购物车项，写操作在内存中修改 items，写回时与 loaded 比较
+     */
+    private static final class CartLines {
+        private final CartRef cart;
+        private final Double storedPrice;
+        private final Integer storedQuantity;
+        private final LinkedHashMap<Long, Integer> items = new LinkedHashMap<>();
+        // 新加入的商品写回前没有购物车项ID
+        private final Map<Long, Long> itemIds = new HashMap<>();
+        private final Map<Long, Integer> loaded;
+
+        // rows 为 (合计金额, 合计数量, 项ID, 商品ID, 数量)，空购物车只有一行且后三列为 null
+        private CartLines(CartRef cart, List<Object[]> rows) {
+            this.cart = cart;
+            this.storedPrice = rows.get(0)[0] != null ? ((Number) rows.get(0)[0]).doubleValue() : null;
+            this.storedQuantity = rows.get(0)[1] != null ? ((Number) rows.get(0)[1]).intValue() : null;
+            for (Object[] row : rows) {
+                if (row[2] == null) {
+                    continue;
+                }
+                Long productId = ((Number) row[3]).longValue();
+                items.put(productId, row[4] != null ? ((Number) row[4]).intValue() : 0);
+                itemIds.put(productId, ((Number) row[2]).longValue());
             }
+            this.loaded = new HashMap<>(items);
+        }
 
-            // 获取总价
-            Double totalPrice = cart.getTotalPrice();
-            dto.setTotalPrice(totalPrice != null ? totalPrice : 0.0);
-
-            // 使用Cart类的getTotalQuantity()方法计算总数量
-            Integer totalQuantity = cart.getTotalQuantity();
-            dto.setTotalQuantity(totalQuantity != null ? totalQuantity : 0);
-
-            // 如果CartDTO有这些字段才设置，否则注释掉
-            // dto.setCreatedAt(cart.getCreatedAt());
-            // dto.setUpdatedAt(cart.getUpdatedAt());
-
-            // 安全转换购物车项
-            if (cart.getCartItems() != null) {
-                cart.getCartItems().forEach(cartItem -> {
-                    try {
-                        CartItemDTO itemDTO = new CartItemDTO();
-                        itemDTO.setId(cartItem.getId());
-
-                        // 安全获取商品信息
-                        if (cartItem.getProduct() != null) {
-                            itemDTO.setProductId(cartItem.getProduct().getId());
-                            itemDTO.setProductName(cartItem.getProduct().getName() != null ?
-                                    cartItem.getProduct().getName() : "未知商品");
-                            itemDTO.setProductEmoji(cartItem.getProduct().getEmoji() != null ?
-                                    cartItem.getProduct().getEmoji() : "");
-
-                            // 安全获取价格
-                            Double productPrice = cartItem.getProduct().getPrice();
-                            itemDTO.setProductPrice(productPrice != null ? productPrice : 0.0);
-                        } else {
-                            itemDTO.setProductId(0L);
-                            itemDTO.setProductName("未知商品");
-                            itemDTO.setProductEmoji("");
-                            itemDTO.setProductPrice(0.0);
-                        }
-
-                        itemDTO.setQuantity(cartItem.getQuantity() != null ? cartItem.getQuantity() : 0);
-                        dto.addCartItem(itemDTO);
-                    } catch (Exception e) {
-                        // 跳过有问题的购物车项，继续处理其他项
-                        System.err.println("转换购物车项时出错: " + e.getMessage());
-                    }
-                });
+        private void add(Product product, int quantity) {
+            items.merge(product.getId(), quantity, Integer::sum);
+        }
+
+        // 数量不大于0时移除；购物车中没有该商品时抛出异常，事务回滚
+        private void update(Product product, int quantity) {
+            Long productId = product.getId();
+            if (!items.containsKey(productId)) {
+                throw new RuntimeException("购物车中未找到该商品，商品ID: " + productId);
             }
+            if (quantity <= 0) {
+                items.remove(productId);
+            } else {
+                items.put(productId, quantity);
+            }
+        }
 
-            return dto;
-        } catch (Exception e) {
-            throw new RuntimeException("转换购物车DTO失败: " + e.getMessage(), e);
+        private void remove(Product product) {
+            items.remove(product.getId());
+        }
+    }
+
+    private static final class CartRef {
+        private final Long userId;
+        private final Long id;
+        private final String username;
+
+        private CartRef(Long userId, Long id, String username) {
+            this.userId = userId;
+            this.id = id;
+            this.username = username;
         }
     }
-}
\ No newline at end of file
+}
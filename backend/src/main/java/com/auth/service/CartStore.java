@@ -0,0 +1,605 @@
+package com.auth.service;
+
+import com.auth.dto.CartDTO;
+import com.auth.dto.CartItemDTO;
+import com.auth.dto.CartOperationDTO;
+import com.auth.entity.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 内存购物车（写后持久化）
+ *
+ * 购物车首次访问时经 CartService 从数据库加载到内存，之后的增删改只修改内存并标记为脏，
+ * 由独立的写回线程定时把所有脏购物车合并成几条批量语句写回数据库，两次写回之间的多次修改只写最终状态。
+ * 下单时在订单事务内同步写回。同一用户的修改按分段锁串行；长时间未访问且已写回的购物车移出内存。
+ * 进程异常退出时最多丢失一个写回间隔内的修改。cart.write-behind.enabled=false 时直接读写数据库。
+ */
+@Component
+public class CartStore {
+
+    private static final int STRIPES = 64;
+
+    // 每个事务最多写回的购物车数
+    private static final int FLUSH_BATCH_SIZE = 200;
+
+    private static final String UPDATE_TOTALS_SQL =
+            "UPDATE carts SET total_price = ?, total_quantity = ?, updated_at = NOW() WHERE id = ?";
+
+    private static final String DELETE_ITEM_SQL =
+            "DELETE FROM cart_items WHERE cart_id = ? AND product_id = ?";
+
+    private static final String UPSERT_ITEM_SQL =
+            "INSERT INTO cart_items (cart_id, product_id, quantity, created_at, updated_at) VALUES (?, ?, ?, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity), updated_at = NOW()";
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${cart.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cart.write-behind.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${cart.write-behind.idle-evict-seconds:1800}")
+    private long idleEvictSeconds;
+
+    private final ConcurrentHashMap<Long, CartState> carts = new ConcurrentHashMap<>();
+
+    // 有未写回修改的用户ID
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private final Object[] stripes = new Object[STRIPES];
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private ScheduledExecutorService flusher;
+
+    public CartStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    // 获取用户的购物车，不存在时自动创建
+    public CartDTO getCart(Long userId) {
+        if (!enabled) {
+            return cartService.getCartByUserId(userId);
+        }
+        try {
+            if (userId == null) {
+                throw new RuntimeException("用户ID不能为空");
+            }
+            return apply(userId, this::toDTO);
+        } catch (Exception e) {
+            throw new RuntimeException("获取购物车失败: " + e.getMessage(), e);
+        }
+    }
+
+    // 添加商品到购物车
+    public CartDTO addToCart(Long userId, Long productId, Integer quantity) {
+        if (!enabled) {
+            return cartService.addToCart(userId, productId, quantity);
+        }
+        try {
+            if (userId == null) {
+                throw new RuntimeException("用户ID不能为空");
+            }
+            if (productId == null) {
+                throw new RuntimeException("商品ID不能为空");
+            }
+            if (quantity == null || quantity <= 0) {
+                throw new RuntimeException("商品数量必须大于0");
+            }
+            getProduct(productId);
+
+            return apply(userId, state -> {
+                state.items.merge(productId, quantity, Integer::sum);
+                markDirty(state);
+                return toDTO(state);
+            });
+        } catch (Exception e) {
+            throw new RuntimeException("添加商品到购物车失败: " + e.getMessage(), e);
+        }
+    }
+
+    // 更新购物车商品数量，数量不大于0时移除
+    public CartDTO updateCartItemQuantity(Long userId, Long productId, Integer quantity) {
+        if (!enabled) {
+            return cartService.updateCartItemQuantity(userId, productId, quantity);
+        }
+        try {
+            if (userId == null || productId == null) {
+                throw new RuntimeException("用户ID和商品ID不能为空");
+            }
+            if (quantity == null) {
+                throw new RuntimeException("数量不能为空");
+            }
+            getProduct(productId);
+
+            return apply(userId, state -> {
+                if (!state.items.containsKey(productId)) {
+                    throw new RuntimeException("购物车中未找到该商品，商品ID: " + productId);
+                }
+                if (quantity <= 0) {
+                    state.items.remove(productId);
+                } else {
+                    state.items.put(productId, quantity);
+                }
+                markDirty(state);
+                return toDTO(state);
+            });
+        } catch (Exception e) {
+            throw new RuntimeException("更新购物车商品数量失败: " + e.getMessage(), e);
+        }
+    }
+
+    // 从购物车移除商品
+    public CartDTO removeFromCart(Long userId, Long productId) {
+        if (!enabled) {
+            return cartService.removeFromCart(userId, productId);
+        }
+        try {
+            if (userId == null || productId == null) {
+                throw new RuntimeException("用户ID和商品ID不能为空");
+            }
+            getProduct(productId);
+
+            return apply(userId, state -> {
+                if (state.items.remove(productId) != null) {
+                    markDirty(state);
+                }
+                return toDTO(state);
+            });
+        } catch (Exception e) {
+            throw new RuntimeException("从购物车移除商品失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 依次执行多个增加/更新/移除操作，任一操作失败时购物车保持原样
+     */
+    public CartDTO applyOperations(Long userId, List<CartOperationDTO> operations) {
+        if (!enabled) {
+            return cartService.applyOperations(userId, operations);
+        }
+        try {
+            if (userId == null) {
+                throw new RuntimeException("用户ID不能为空");
+            }
+            CartService.resolveOperations(operations, catalogSnapshotService.getSnapshot());
+
+            return apply(userId, state -> {
+                // 在副本上执行，全部成功后再替换
+                LinkedHashMap<Long, Integer> items = new LinkedHashMap<>(state.items);
+                for (CartOperationDTO operation : operations) {
+                    Long productId = operation.getProductId();
+                    if (CartService.ACTION_ADD.equals(operation.getAction())) {
+                        items.merge(productId, operation.getQuantity(), Integer::sum);
+                    } else if (CartService.ACTION_UPDATE.equals(operation.getAction())) {
+                        if (!items.containsKey(productId)) {
+                            throw new RuntimeException("购物车中未找到该商品，商品ID: " + productId);
+                        }
+                        if (operation.getQuantity() <= 0) {
+                            items.remove(productId);
+                        } else {
+                            items.put(productId, operation.getQuantity());
+                        }
+                    } else {
+                        items.remove(productId);
+                    }
+                }
+                if (!items.equals(state.items)) {
+                    state.items.clear();
+                    state.items.putAll(items);
+                    markDirty(state);
+                }
+                return toDTO(state);
+            });
+        } catch (Exception e) {
+            throw new RuntimeException("批量修改购物车失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 清空购物车；在事务中调用且事务回滚时，清空前的商品放回购物车
+     */
+    public void clearCart(Long userId) {
+        if (!enabled) {
+            cartService.clearCart(userId);
+            return;
+        }
+        try {
+            if (userId == null) {
+                throw new RuntimeException("用户ID不能为空");
+            }
+
+            Map<Long, Integer> previous = apply(userId, state -> {
+                Map<Long, Integer> items = new LinkedHashMap<>(state.items);
+                state.items.clear();
+                markDirty(state);
+                return items;
+            });
+            TransactionCallbacks.afterRollback(() -> restore(userId, previous));
+        } catch (Exception e) {
+            throw new RuntimeException("清空购物车失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 同步写回该用户的购物车；在事务中调用时随该事务提交
+     */
+    public void flush(Long userId) {
+        if (!enabled || userId == null || !dirty.contains(userId)) {
+            return;
+        }
+        CartState state = carts.get(userId);
+        if (state != null) {
+            write(Collections.singletonList(state), true);
+        }
+    }
+
+    /**
+     * 写回所有脏购物车，并移出长时间未访问的购物车
+     */
+    public void flushAll() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<CartState> batch = new ArrayList<>();
+            for (Long userId : dirty) {
+                CartState state = carts.get(userId);
+                if (state != null) {
+                    batch.add(state);
+                }
+                if (batch.size() >= FLUSH_BATCH_SIZE) {
+                    writeQuietly(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeQuietly(batch);
+            }
+            evictIdle();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        // 独立的写回线程，不和其他 @Scheduled 任务（推荐预计算、共购重建）共用 Spring 的单线程调度器
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::scheduledFlush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushAll();
+        if (!dirty.isEmpty()) {
+            System.err.println("购物车写回未完成，" + dirty.size() + " 个购物车的修改未保存");
+        }
+    }
+
+    private void scheduledFlush() {
+        try {
+            flushAll();
+        } catch (Exception e) {
+            // 异常会终止周期任务，这里只记录
+            System.err.println("购物车定时写回失败: " + e.getMessage());
+        }
+    }
+
+    // 在用户的分段锁内操作内存购物车；购物车恰好被移出内存时重新加载
+    private <T> T apply(Long userId, Function<CartState, T> action) {
+        while (true) {
+            CartState state = load(userId);
+            synchronized (stripe(userId)) {
+                if (!state.evicted) {
+                    state.lastAccess = System.currentTimeMillis();
+                    return action.apply(state);
+                }
+            }
+        }
+    }
+
+    private CartState load(Long userId) {
+        CartState cached = carts.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        CartState loaded = new CartState(cartService.getCartByUserId(userId));
+        CartState existing = carts.putIfAbsent(userId, loaded);
+        if (existing != null) {
+            return existing;
+        }
+        // 购物车可能是当前事务中新建的，事务回滚时丢弃
+        TransactionCallbacks.afterRollback(() -> {
+            synchronized (stripe(userId)) {
+                if (!dirty.contains(userId) && carts.remove(userId, loaded)) {
+                    loaded.evicted = true;
+                }
+            }
+        });
+        return loaded;
+    }
+
+    // 放回清空前的商品，清空后重新加入的商品保留当前数量
+    private void restore(Long userId, Map<Long, Integer> previous) {
+        CartState state = carts.get(userId);
+        if (state == null || previous.isEmpty()) {
+            return;
+        }
+        synchronized (stripe(userId)) {
+            if (state.evicted) {
+                return;
+            }
+            previous.forEach(state.items::putIfAbsent);
+            markDirty(state);
+        }
+    }
+
+    private void markDirty(CartState state) {
+        state.version++;
+        dirty.add(state.userId);
+    }
+
+    private void writeQuietly(List<CartState> states) {
+        try {
+            write(states, false);
+        } catch (Exception e) {
+            System.err.println("购物车写回失败: " + e.getMessage());
+            if (states.size() == 1) {
+                return;
+            }
+            // 逐个重试，一个购物车写回失败不拖累同批的其他购物车；失败的保持脏标记，下次写回时重试
+            for (CartState state : states) {
+                try {
+                    write(Collections.singletonList(state), false);
+                } catch (Exception single) {
+                    System.err.println("购物车写回失败，用户ID: " + state.userId + ", " + single.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 与上次写回的内容比较，合计、删除和新增/修改各一条批量语句
+     *
+     * 每个购物车的写回锁从取内容一直持有到事务结束，同一购物车的写回按取内容的顺序提交，
+     * 较早的内容不会覆盖较新的。blocking=false 时跳过正在写回的购物车，留给下一次。
+     */
+    private void write(List<CartState> states, boolean blocking) {
+        List<CartState> ordered = new ArrayList<>(states);
+        // 按购物车ID顺序加锁，避免并发写回互相死锁
+        ordered.sort(Comparator.comparing(state -> state.cartId));
+
+        transactionTemplate.execute(status -> {
+            List<CartState> locked = new ArrayList<>(ordered.size());
+            TransactionCallbacks.afterCompletion(() -> locked.forEach(state -> state.writeLock.unlock()));
+
+            List<PendingWrite> pending = new ArrayList<>(ordered.size());
+            for (CartState state : ordered) {
+                if (blocking) {
+                    state.writeLock.lock();
+                } else if (!state.writeLock.tryLock()) {
+                    continue;
+                }
+                locked.add(state);
+                synchronized (stripe(state.userId)) {
+                    if (!state.evicted) {
+                        pending.add(new PendingWrite(state, new LinkedHashMap<>(state.items), state.persisted, state.version));
+                    }
+                }
+            }
+            if (pending.isEmpty()) {
+                return null;
+            }
+
+            CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+            List<Object[]> totals = new ArrayList<>(pending.size());
+            for (PendingWrite write : pending) {
+                double totalPrice = 0.0;
+                int totalQuantity = 0;
+                for (Map.Entry<Long, Integer> item : write.items.entrySet()) {
+                    Product product = snapshot.getProduct(item.getKey());
+                    totalPrice += (product != null ? CartService.unitPrice(product) : 0.0) * item.getValue();
+                    totalQuantity += item.getValue();
+                }
+                totals.add(new Object[]{totalPrice, totalQuantity, write.state.cartId});
+            }
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_TOTALS_SQL, totals);
+
+            // 合计没有更新到行的购物车已被删除（如删除用户），不再写它的商品
+            List<PendingWrite> written = new ArrayList<>(pending.size());
+            List<PendingWrite> gone = new ArrayList<>();
+            List<Object[]> deletes = new ArrayList<>();
+            List<Object[]> upserts = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                PendingWrite write = pending.get(i);
+                if (updated[i] == 0) {
+                    gone.add(write);
+                    continue;
+                }
+                written.add(write);
+                Long cartId = write.state.cartId;
+                for (Map.Entry<Long, Integer> item : write.items.entrySet()) {
+                    if (!item.getValue().equals(write.persisted.get(item.getKey()))) {
+                        upserts.add(new Object[]{cartId, item.getKey(), item.getValue()});
+                    }
+                }
+                for (Long productId : write.persisted.keySet()) {
+                    if (!write.items.containsKey(productId)) {
+                        deletes.add(new Object[]{cartId, productId});
+                    }
+                }
+            }
+            if (!deletes.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_ITEM_SQL, deletes);
+            }
+            if (!upserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_ITEM_SQL, upserts);
+            }
+            TransactionCallbacks.afterCommit(() -> {
+                written.forEach(this::markFlushed);
+                gone.forEach(this::discard);
+            });
+            return null;
+        });
+    }
+
+    // 写回提交后记录数据库中的内容；期间没有新的修改才清除脏标记
+    private void markFlushed(PendingWrite write) {
+        synchronized (stripe(write.state.userId)) {
+            // 两次写回的提交回调可能乱序执行，只保留较新的一次
+            if (write.version > write.state.persistedVersion) {
+                write.state.persisted = Collections.unmodifiableMap(write.items);
+                write.state.persistedVersion = write.version;
+            }
+            if (write.state.version == write.version) {
+                dirty.remove(write.state.userId);
+            }
+        }
+    }
+
+    // 购物车在数据库中已不存在，丢弃内存中的修改，下次访问时重新加载
+    private void discard(PendingWrite write) {
+        cartService.forgetCart(write.state.userId);
+        synchronized (stripe(write.state.userId)) {
+            write.state.evicted = true;
+            carts.remove(write.state.userId, write.state);
+            dirty.remove(write.state.userId);
+        }
+        System.err.println("购物车已被删除，丢弃未写回的修改，用户ID: " + write.state.userId);
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleEvictSeconds * 1000;
+        for (CartState state : carts.values()) {
+            if (state.lastAccess >= cutoff || dirty.contains(state.userId)) {
+                continue;
+            }
+            synchronized (stripe(state.userId)) {
+                if (state.lastAccess < cutoff && !dirty.contains(state.userId)) {
+                    state.evicted = true;
+                    carts.remove(state.userId, state);
+                }
+            }
+        }
+    }
+
+    private CartDTO toDTO(CartState state) {
+        CartDTO dto = new CartDTO();
+        dto.setId(state.cartId);
+        dto.setUserId(state.userId);
+        dto.setUsername(state.username);
+        dto.setTotalPrice(0.0);
+        dto.setTotalQuantity(0);
+
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        for (Map.Entry<Long, Integer> item : state.items.entrySet()) {
+            CartItemDTO itemDTO = CartService.toItemDTO(state.itemIds.get(item.getKey()), item.getKey(),
+                    item.getValue(), snapshot);
+            dto.addCartItem(itemDTO);
+        }
+        return dto;
+    }
+
+    private Product getProduct(Long productId) {
+        Product product = catalogSnapshotService.getSnapshot().getProduct(productId);
+        if (product == null) {
+            throw new RuntimeException("商品不存在，ID: " + productId);
+        }
+        return product;
+    }
+
+    private Object stripe(Long userId) {
+        return stripes[(userId.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    /**
+     * 单个用户的内存购物车，除 lastAccess 外都在该用户的分段锁内读写
+     */
+    private static final class CartState {
+        private final Long userId;
+        private final Long cartId;
+        private final String username;
+        private final LinkedHashMap<Long, Integer> items = new LinkedHashMap<>();
+        // 加载时已有的购物车项ID，之后新加入的商品写回前没有ID
+        private final Map<Long, Long> itemIds = new HashMap<>();
+        // 从取内容到写回事务结束期间持有，不在分段锁内获取
+        private final ReentrantLock writeLock = new ReentrantLock();
+        // 上次写回后数据库中的商品和数量
+        private Map<Long, Integer> persisted;
+        private long persistedVersion;
+        private long version;
+        private boolean evicted;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private CartState(CartDTO cart) {
+            this.userId = cart.getUserId();
+            this.cartId = cart.getId();
+            this.username = cart.getUsername();
+            for (CartItemDTO item : cart.getCartItems()) {
+                items.put(item.getProductId(), item.getQuantity());
+                itemIds.put(item.getProductId(), item.getId());
+            }
+            this.persisted = Collections.unmodifiableMap(new LinkedHashMap<>(items));
+        }
+    }
+
+    private static final class PendingWrite {
+        private final CartState state;
+        private final Map<Long, Integer> items;
+        private final Map<Long, Integer> persisted;
+        private final long version;
+
+        private PendingWrite(CartState state, Map<Long, Integer> items, Map<Long, Integer> persisted, long version) {
+            this.state = state;
+            this.items = items;
+            this.persisted = persisted;
+            this.version = version;
+        }
+    }
+}
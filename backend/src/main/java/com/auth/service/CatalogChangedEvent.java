@@ -0,0 +1,37 @@
+package com.auth.service;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 目录快照替换事件 - 依赖商品数据的内存索引监听此事件做全量或增量更新
+ */
+public class CatalogChangedEvent {
+
+    private final CatalogSnapshot snapshot;
+
+    // 本次变更涉及的商品ID；全量重建时为空
+    private final Set<Long> changedProductIds;
+
+    private final boolean fullReload;
+
+    private CatalogChangedEvent(CatalogSnapshot snapshot, Set<Long> changedProductIds, boolean fullReload) {
+        this.snapshot = snapshot;
+        this.changedProductIds = Collections.unmodifiableSet(changedProductIds);
+        this.fullReload = fullReload;
+    }
+
+    static CatalogChangedEvent fullReload(CatalogSnapshot snapshot) {
+        return new CatalogChangedEvent(snapshot, Collections.<Long>emptySet(), true);
+    }
+
+    static CatalogChangedEvent incremental(CatalogSnapshot snapshot, Set<Long> changedProductIds) {
+        return new CatalogChangedEvent(snapshot, changedProductIds, false);
+    }
+
+    public CatalogSnapshot getSnapshot() { return snapshot; }
+
+    public Set<Long> getChangedProductIds() { return changedProductIds; }
+
+    public boolean isFullReload() { return fullReload; }
+}
@@ -0,0 +1,126 @@
+package com.auth.service;
+
+import com.auth.dto.ProductDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 热点商品列表的预序列化响应缓存
+ *
+ * 按目录版本和分类缓存 UTF-8 JSON 字节（以及按需生成的 gzip 版本），
+ * 命中时控制器直接写出字节，不再构建 DTO 和调用 Jackson。商品写入后随目录变更事件清空。
+ * 只缓存当前目录中存在的分类，其他分类名共用一个空列表响应，客户端传入的任意字符串不会占用缓存。
+ */
+@Component
+public class CatalogResponseCache {
+
+    // 全部商品列表使用的键
+    private static final String ALL_PRODUCTS = "";
+
+    // 不存在或没有可用商品的分类共用的空列表
+    private static final CachedBody EMPTY_LIST = new CachedBody(0, "[]".getBytes(StandardCharsets.UTF_8));
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, CachedBody> bodies = new ConcurrentHashMap<>();
+
+    /**
+     * 目录变更后丢弃所有旧版本响应
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        bodies.clear();
+    }
+
+    /**
+     * 全部可用商品的 JSON 响应体
+     */
+    public CachedBody getAllProducts() {
+        return get(ALL_PRODUCTS);
+    }
+
+    /**
+     * 指定分类可用商品的 JSON 响应体
+     */
+    public CachedBody getProductsByCategory(String category) {
+        if (category == null || ALL_PRODUCTS.equals(category)
+                || catalogSnapshotService.getSnapshot().getAvailableProductsByCategory(category).isEmpty()) {
+            return EMPTY_LIST;
+        }
+        return get(category);
+    }
+
+    private CachedBody get(String key) {
+        long version = catalogSnapshotService.getVersion();
+        CachedBody cached = bodies.get(key);
+        if (cached != null && cached.version == version) {
+            return cached;
+        }
+
+        // 先取版本再取数据：数据若比版本新，下次请求会因版本不一致重新生成
+        List<ProductDTO> products = ALL_PRODUCTS.equals(key)
+                ? productService.getAllProducts()
+                : productService.getProductsByCategory(key);
+        try {
+            CachedBody body = new CachedBody(version, objectMapper.writeValueAsBytes(products));
+            bodies.put(key, body);
+            return body;
+        } catch (IOException e) {
+            throw new RuntimeException("序列化商品列表失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 某个版本的响应体，gzip 字节在第一次需要时生成
+     */
+    public static final class CachedBody {
+        private final long version;
+        private final byte[] json;
+        private volatile byte[] gzipped;
+
+        private CachedBody(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzipped() {
+            byte[] result = gzipped;
+            if (result == null) {
+                result = gzip(json);
+                gzipped = result;
+            }
+            return result;
+        }
+
+        private static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(data);
+            } catch (IOException e) {
+                throw new RuntimeException("压缩响应失败: " + e.getMessage(), e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 商品目录快照 - 不可变对象，商品变更时整体替换
+ *
+ * 快照中的商品均为脱离持久化上下文的副本，调用方只读使用，不要修改其字段；
+ * 需要排序或打乱时请先复制列表。
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final LocalDateTime builtAt;
+
+    // 所有商品（含下架），按ID升序
+    private final Map<Long, Product> productsById;
+
+    // 可用商品，按ID升序
+    private final List<Product> availableProducts;
+
+    private final Map<String, List<Product>> availableByCategory;
+
+    private final Map<String, Product> availableByName;
+
+    private CatalogSnapshot(long version, Collection<Product> products) {
+        this.version = version;
+        this.builtAt = LocalDateTime.now();
+
+        List<Product> sorted = new ArrayList<>(products);
+        sorted.sort(Comparator.comparing(Product::getId));
+
+        Map<Long, Product> byId = new LinkedHashMap<>();
+        List<Product> available = new ArrayList<>();
+        Map<String, List<Product>> byCategory = new HashMap<>();
+        Map<String, Product> byName = new HashMap<>();
+
+        for (Product product : sorted) {
+            byId.put(product.getId(), product);
+            if (!Boolean.TRUE.equals(product.getAvailable())) {
+                continue;
+            }
+            available.add(product);
+            if (product.getCategory() != null) {
+                byCategory.computeIfAbsent(product.getCategory(), k -> new ArrayList<>()).add(product);
+            }
+            if (product.getName() != null) {
+                byName.putIfAbsent(product.getName(), product);
+            }
+        }
+
+        Map<String, List<Product>> frozenCategories = new HashMap<>();
+        byCategory.forEach((category, list) -> frozenCategories.put(category, Collections.unmodifiableList(list)));
+
+        this.productsById = Collections.unmodifiableMap(byId);
+        this.availableProducts = Collections.unmodifiableList(available);
+        this.availableByCategory = Collections.unmodifiableMap(frozenCategories);
+        this.availableByName = Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * 从数据库全量结果构建快照
+     */
+    static CatalogSnapshot of(long version, Collection<Product> products) {
+        List<Product> copies = new ArrayList<>(products.size());
+        for (Product product : products) {
+            copies.add(copyOf(product));
+        }
+        return new CatalogSnapshot(version, copies);
+    }
+
+    /**
+     * 在当前快照基础上替换/删除部分商品，生成新版本
+     */
+    CatalogSnapshot withChanges(long newVersion, Collection<Product> upserts, Collection<Long> removedIds) {
+        Map<Long, Product> merged = new HashMap<>(productsById);
+        for (Long id : removedIds) {
+            merged.remove(id);
+        }
+        for (Product product : upserts) {
+            merged.put(product.getId(), copyOf(product));
+        }
+        return new CatalogSnapshot(newVersion, merged.values());
+    }
+
+    private static Product copyOf(Product source) {
+        Product copy = new Product();
+        copy.setId(source.getId());
+        copy.setName(source.getName());
+        copy.setDescription(source.getDescription());
+        copy.setPrice(source.getPrice());
+        copy.setCategory(source.getCategory());
+        copy.setEmoji(source.getEmoji());
+        copy.setTags(source.getTags());
+        copy.setAvailable(source.getAvailable());
+        copy.setImageUrl(source.getImageUrl());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        return copy;
+    }
+
+    public long getVersion() { return version; }
+
+    public LocalDateTime getBuiltAt() { return builtAt; }
+
+    /**
+     * 可用商品（按ID升序，只读）
+     */
+    public List<Product> getAvailableProducts() { return availableProducts; }
+
+    /**
+     * 所有商品（含下架，只读）
+     */
+    public Collection<Product> getAllProducts() { return productsById.values(); }
+
+    /**
+     * 根据ID获取商品（含下架）
+     */
+    public Product getProduct(Long id) {
+        return id == null ? null : productsById.get(id);
+    }
+
+    /**
+     * 根据分类获取可用商品
+     */
+    public List<Product> getAvailableProductsByCategory(String category) {
+        List<Product> products = category == null ? null : availableByCategory.get(category);
+        return products != null ? products : Collections.<Product>emptyList();
+    }
+
+    /**
+     * 根据名称精确获取可用商品
+     */
+    public Product getAvailableProductByName(String name) {
+        return name == null ? null : availableByName.get(name);
+    }
+
+    public int getTotalCount() { return productsById.size(); }
+
+    public int getAvailableCount() { return availableProducts.size(); }
+}
@@ -0,0 +1,117 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+import com.auth.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商品目录快照服务
+ *
+ * 所有商品读路径都从这里取数据；商品写操作提交后原子替换为新版本快照，
+ * 读请求不再访问数据库。每次替换后发布 {@link CatalogChangedEvent}。
+ */
+@Service
+public class CatalogSnapshotService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    private volatile CatalogSnapshot snapshot;
+
+    /**
+     * 获取当前快照（首次访问时从数据库加载）
+     */
+    public CatalogSnapshot getSnapshot() {
+        CatalogSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                reload();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 当前目录版本号
+     */
+    public long getVersion() {
+        return getSnapshot().getVersion();
+    }
+
+    /**
+     * 从数据库全量重建快照
+     */
+    public synchronized CatalogSnapshot reload() {
+        snapshot = loadFromDatabase();
+        eventPublisher.publishEvent(CatalogChangedEvent.fullReload(snapshot));
+        return snapshot;
+    }
+
+    /**
+     * 商品新增/更新后调用，事务提交后生效
+     */
+    public void productsSaved(Product... products) {
+        final List<Product> saved = Arrays.asList(products);
+        TransactionCallbacks.afterCommit(() -> applyChanges(saved, Collections.<Long>emptyList()));
+    }
+
+    /**
+     * 商品物理删除后调用，事务提交后生效
+     */
+    public void productDeleted(Long productId) {
+        final List<Long> removed = Collections.singletonList(productId);
+        TransactionCallbacks.afterCommit(() -> applyChanges(Collections.<Product>emptyList(), removed));
+    }
+
+    /**
+     * 批量写入后调用，事务提交后全量重建快照
+     */
+    public void productsBulkChanged() {
+        TransactionCallbacks.afterCommit(this::reload);
+    }
+
+    /**
+     * 启动数据初始化完成后重建一次，覆盖初始化器写入的商品
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        CatalogSnapshot loaded = reload();
+        System.out.println("商品目录快照已加载，版本 " + loaded.getVersion() +
+                "，可用商品 " + loaded.getAvailableCount() + " 个");
+    }
+
+    private synchronized void applyChanges(Collection<Product> upserts, Collection<Long> removedIds) {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            reload();
+            return;
+        }
+        snapshot = current.withChanges(versionSequence.incrementAndGet(), upserts, removedIds);
+
+        Set<Long> changedIds = new HashSet<>(removedIds);
+        for (Product product : upserts) {
+            changedIds.add(product.getId());
+        }
+        eventPublisher.publishEvent(CatalogChangedEvent.incremental(snapshot, changedIds));
+    }
+
+    private CatalogSnapshot loadFromDatabase() {
+        List<Product> products = productRepository.findAll();
+        return CatalogSnapshot.of(versionSequence.incrementAndGet(), products);
+    }
+}
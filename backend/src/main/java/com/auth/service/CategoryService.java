@@ -17,6 +17,9 @@ public class CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private ResourceVersionService resourceVersionService;
+
     /**
      * 系统启动时初始化默认分类
      */
@@ -133,7 +136,9 @@ public class CategoryService {
             }
 
             // 时间戳会自动由 @PrePersist 设置
-            return categoryRepository.save(category);
+            Category saved = categoryRepository.save(category);
+            resourceVersionService.categoriesChanged();
+            return saved;
         } catch (RuntimeException e) {
             throw e; // 直接抛出业务异常
         } catch (Exception e) {
@@ -176,7 +181,9 @@ public class CategoryService {
             }
 
             // updatedAt 会自动由 @PreUpdate 更新
-            return categoryRepository.save(existingCategory);
+            Category saved = categoryRepository.save(existingCategory);
+            resourceVersionService.categoriesChanged();
+            return saved;
         } catch (RuntimeException e) {
             throw e; // 直接抛出业务异常
         } catch (Exception e) {
@@ -201,6 +208,7 @@ public class CategoryService {
 
             category.setActive(false);
             categoryRepository.save(category);
+            resourceVersionService.categoriesChanged();
 
         } catch (RuntimeException e) {
             throw e; // 直接抛出业务异常
@@ -223,6 +231,7 @@ public class CategoryService {
             // 如果有，不允许删除
 
             categoryRepository.deleteById(id);
+            resourceVersionService.categoriesChanged();
         } catch (RuntimeException e) {
             throw e; // 直接抛出业务异常
         } catch (Exception e) {
@@ -239,7 +248,9 @@ public class CategoryService {
                     .orElseThrow(() -> new RuntimeException("分类不存在: " + id));
 
             category.setActive(active);
-            return categoryRepository.save(category);
+            Category saved = categoryRepository.save(category);
+            resourceVersionService.categoriesChanged();
+            return saved;
         } catch (Exception e) {
             throw new RuntimeException("更新分类状态失败: " + e.getMessage(), e);
         }
@@ -260,6 +271,7 @@ public class CategoryService {
                 category.setSortOrder(sortOrder);
                 categoryRepository.save(category);
             }
+            resourceVersionService.categoriesChanged();
         } catch (Exception e) {
             throw new RuntimeException("更新分类排序失败: " + e.getMessage(), e);
         }
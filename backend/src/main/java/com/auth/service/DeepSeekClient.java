@@ -0,0 +1,349 @@
+package com.auth.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.AsyncByteConsumer;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * DeepSeek 异步 HTTP 客户端
+ *
+ * 连接池复用长连接，信号量限制同时进行的上游请求数；ai.recommendation.timeout 是一次调用
+ * （含重试）的总时限，失败后按指数退避加随机抖动重试，最多 ai.recommendation.max-retries 次。
+ */
+@Component
+public class DeepSeekClient {
+
+    private static final long BACKOFF_BASE_MILLIS = 200;
+    private static final long BACKOFF_MAX_MILLIS = 2000;
+
+    @Value("${deepseek.api.key:}")
+    private String apiKey;
+
+    @Value("${deepseek.api.url:https://api.deepseek.com/chat/completions}")
+    private String apiUrl;
+
+    @Value("${ai.recommendation.timeout:10000}")
+    private long timeoutMillis;
+
+    @Value("${ai.recommendation.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${ai.recommendation.max-concurrency:20}")
+    private int maxConcurrency;
+
+    @Value("${ai.recommendation.pool.max-connections:50}")
+    private int maxConnections;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PoolingNHttpClientConnectionManager connectionManager;
+    private CloseableHttpAsyncClient httpClient;
+    private ScheduledExecutorService scheduler;
+    private Semaphore bulkhead;
+
+    @PostConstruct
+    public void init() throws IOException {
+        IOReactorConfig ioConfig = IOReactorConfig.custom()
+                .setIoThreadCount(Math.min(4, Runtime.getRuntime().availableProcessors()))
+                .setSoKeepAlive(true)
+                .build();
+        connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioConfig));
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .build();
+        httpClient.start();
+
+        bulkhead = new Semaphore(maxConcurrency);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "deepseek-client-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 定期清理过期和空闲太久的连接
+        scheduler.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(60, TimeUnit.SECONDS);
+        }, 30, 30, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            System.err.println("关闭DeepSeek客户端失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 调用 chat/completions 接口，返回原始响应体
+     *
+     * 返回的 future 在总时限内一定会完成；超时、并发已满、重试耗尽时以异常完成。
+     */
+    public CompletableFuture<String> chatCompletion(Map<String, Object> requestBody) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        String json = toJson(requestBody, result);
+        if (json == null) {
+            return result;
+        }
+        long deadline = startDeadline(result);
+        attempt(json, 0, deadline, result);
+        return result;
+    }
+
+    /**
+     * 以流式方式调用 chat/completions 接口，每收到一行 SSE 数据就回调 onLine
+     *
+     * 已经开始输出的流无法安全重放，所以流式调用不重试；总时限与并发限制同普通调用。
+     */
+    public CompletableFuture<Void> streamChatCompletion(Map<String, Object> requestBody, Consumer<String> onLine) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        String json = toJson(requestBody, result);
+        if (json == null) {
+            return result;
+        }
+        long deadline = startDeadline(result);
+        if (!bulkhead.tryAcquire()) {
+            result.completeExceptionally(new RejectedExecutionException("DeepSeek API并发请求已达上限 " + maxConcurrency));
+            return result;
+        }
+
+        LineConsumer consumer = new LineConsumer(onLine);
+        Future<Void> inFlight = httpClient.execute(
+                HttpAsyncMethods.create(newPost(json, "text/event-stream", deadline - System.currentTimeMillis())),
+                consumer, new FutureCallback<Void>() {
+                    @Override
+                    public void completed(Void ignored) {
+                        bulkhead.release();
+                        if (consumer.status == 200) {
+                            result.complete(null);
+                        } else {
+                            result.completeExceptionally(new RuntimeException("DeepSeek API请求失败: " + consumer.status));
+                        }
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        bulkhead.release();
+                        result.completeExceptionally(e);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        bulkhead.release();
+                    }
+                });
+        result.whenComplete((ignored, error) -> {
+            if (error != null) {
+                inFlight.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 当前并发与连接池状态
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("availablePermits", bulkhead.availablePermits());
+        stats.put("leasedConnections", connectionManager.getTotalStats().getLeased());
+        stats.put("availableConnections", connectionManager.getTotalStats().getAvailable());
+        stats.put("pendingConnections", connectionManager.getTotalStats().getPending());
+        return stats;
+    }
+
+    private String toJson(Map<String, Object> requestBody, CompletableFuture<?> result) {
+        try {
+            return objectMapper.writeValueAsString(requestBody);
+        } catch (IOException e) {
+            result.completeExceptionally(new RuntimeException("序列化DeepSeek请求失败: " + e.getMessage(), e));
+            return null;
+        }
+    }
+
+    // 到达总时限时以超时异常结束，正常结束后取消计时
+    private long startDeadline(CompletableFuture<?> result) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        ScheduledFuture<?> timer = scheduler.schedule(() -> result.completeExceptionally(
+                new TimeoutException("DeepSeek API调用超过 " + timeoutMillis + "ms")), timeoutMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, error) -> timer.cancel(false));
+        return deadline;
+    }
+
+    private HttpPost newPost(String json, String accept, long timeout) {
+        HttpPost post = new HttpPost(apiUrl);
+        post.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        post.setHeader("Accept", accept);
+        if (apiKey != null && !apiKey.isEmpty()) {
+            post.setHeader("Authorization", "Bearer " + apiKey);
+        }
+        int requestTimeout = (int) Math.max(1, timeout);
+        post.setConfig(RequestConfig.custom()
+                .setConnectTimeout(requestTimeout)
+                .setConnectionRequestTimeout(requestTimeout)
+                .setSocketTimeout(requestTimeout)
+                .build());
+        return post;
+    }
+
+    private void attempt(String json, int attempt, long deadline, CompletableFuture<String> result) {
+        if (result.isDone()) {
+            return;
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            result.completeExceptionally(new TimeoutException("DeepSeek API调用超过 " + timeoutMillis + "ms"));
+            return;
+        }
+        // 并发已满时直接失败，不排队占用调用方线程
+        if (!bulkhead.tryAcquire()) {
+            result.completeExceptionally(new RejectedExecutionException("DeepSeek API并发请求已达上限 " + maxConcurrency));
+            return;
+        }
+
+        HttpPost post = newPost(json, "application/json", remaining);
+
+        Future<HttpResponse> inFlight = httpClient.execute(post, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                bulkhead.release();
+                int status = response.getStatusLine().getStatusCode();
+                String body;
+                try {
+                    body = response.getEntity() != null
+                            ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+                } catch (IOException e) {
+                    retryOrFail(json, attempt, deadline, result, e);
+                    return;
+                }
+                if (status == 200) {
+                    result.complete(body);
+                } else if (status == 429 || status >= 500) {
+                    retryOrFail(json, attempt, deadline, result,
+                            new RuntimeException("DeepSeek API请求失败: " + status));
+                } else {
+                    result.completeExceptionally(new RuntimeException("DeepSeek API请求失败: " + status));
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                bulkhead.release();
+                retryOrFail(json, attempt, deadline, result, e);
+            }
+
+            @Override
+            public void cancelled() {
+                bulkhead.release();
+            }
+        });
+        // 总时限到了就取消还在进行的请求，把连接还给连接池
+        result.whenComplete((body, error) -> {
+            if (error != null) {
+                inFlight.cancel(true);
+            }
+        });
+    }
+
+    private void retryOrFail(String json, int attempt, long deadline, CompletableFuture<String> result, Exception error) {
+        if (attempt >= maxRetries || result.isDone()) {
+            result.completeExceptionally(error);
+            return;
+        }
+        // 指数退避 + 全抖动，避免大量请求同时重试
+        long ceiling = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << attempt);
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (System.currentTimeMillis() + delay >= deadline) {
+            result.completeExceptionally(error);
+            return;
+        }
+        System.err.println("DeepSeek API第 " + (attempt + 1) + " 次调用失败，" + delay + "ms 后重试: " + error.getMessage());
+        scheduler.schedule(() -> attempt(json, attempt + 1, deadline, result), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 按行切分响应体；换行符不会出现在 UTF-8 多字节字符中间，按字节切分后再解码是安全的
+     */
+    private static final class LineConsumer extends AsyncByteConsumer<Void> {
+        private final Consumer<String> onLine;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        private volatile int status;
+
+        private LineConsumer(Consumer<String> onLine) {
+            this.onLine = onLine;
+        }
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) {
+            status = response.getStatusLine().getStatusCode();
+        }
+
+        @Override
+        protected void onByteReceived(ByteBuffer buffer, IOControl ioControl) {
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    flushLine();
+                } else if (b != '\r') {
+                    line.write(b);
+                }
+            }
+        }
+
+        @Override
+        protected Void buildResult(HttpContext context) {
+            if (line.size() > 0) {
+                flushLine();
+            }
+            return null;
+        }
+
+        @Override
+        protected void releaseResources() {
+        }
+
+        private void flushLine() {
+            String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+            line.reset();
+            // 错误响应不是 SSE，不交给调用方解析
+            if (status == 200) {
+                onLine.accept(text);
+            }
+        }
+    }
+}
@@ -1,33 +1,43 @@
 package com.auth.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import com.auth.dto.RecommendationRequest;
 import com.auth.entity.Product;
-import com.auth.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 @Service
 public class DeepSeekService {
 
-    @Value("${deepseek.api.key:}")
-    private String apiKey;
+    // 限制性提示词的固定部分，与请求无关
+    private static final String RESTRICTED_PROMPT_PREFIX =
+            "你是一个奶茶推荐专家。\n" +
+            "请严格按照以下格式回复：\n" +
+            "推荐产品：[从下面列表中选择一个具体的商品名称]\n" +
+            "推荐理由：[简要说明为什么推荐这个商品]\n" +
+            "产品描述：[使用该商品的实际描述]\n" +
+            "注意：商品名称必须完全匹配下面列表中的名称！\n\n";
 
-    @Value("${deepseek.api.url:https://api.deepseek.com/chat/completions}")
-    private String apiUrl;
+    @Autowired
+    private DeepSeekClient deepSeekClient;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private ProductFeatureIndex productFeatureIndex;
 
     @Autowired
-    private ProductRepository productRepository;
+    private ProductSemanticIndex semanticIndex;
 
-    private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
 
     public DeepSeekService() {
-        this.restTemplate = new RestTemplate();
         this.objectMapper = new ObjectMapper();
     }
 
@@ -37,47 +47,10 @@ public class DeepSeekService {
     public String getRecommendation(String userPreference, String weather, String mood) {
         try {
             String prompt = buildRecommendationPrompt(userPreference, weather, mood);
-
-            // 构建请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "deepseek-chat");
-
-            List<Map<String, Object>> messages = new ArrayList<>();
-            Map<String, Object> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            messages.add(message);
-
-            requestBody.put("messages", messages);
-            requestBody.put("temperature", 0.7);
-            requestBody.put("max_tokens", 800);
-            requestBody.put("stream", false);
-
-            // 设置请求头
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            if (apiKey != null && !apiKey.isEmpty()) {
-                headers.set("Authorization", "Bearer " + apiKey);
-            }
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-            // 发送请求
-            ResponseEntity<String> response = restTemplate.exchange(
-                    apiUrl, HttpMethod.POST, entity, String.class);
-
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return parseResponse(response.getBody());
-            } else {
-                System.err.println("DeepSeek API请求失败: " + response.getStatusCode());
-                return getFallbackRecommendation(userPreference, weather, mood);
-            }
-
+            String responseBody = deepSeekClient.chatCompletion(buildRequestBody(prompt)).join();
+            return parseResponse(responseBody);
         } catch (Exception e) {
             System.err.println("调用DeepSeek API异常: " + e.getMessage());
-            e.printStackTrace();
             return getFallbackRecommendation(userPreference, weather, mood);
         }
     }
@@ -87,70 +60,99 @@ public class DeepSeekService {
      */
     public String getRecommendationFromExistingProducts(String userPreference, String weather, String mood, String productList) {
         try {
-            String prompt = buildRestrictedPrompt(userPreference, weather, mood, productList);
-
-            // 构建请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "deepseek-chat");
-
-            List<Map<String, Object>> messages = new ArrayList<>();
-            Map<String, Object> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            messages.add(message);
-
-            requestBody.put("messages", messages);
-            requestBody.put("temperature", 0.7);
-            requestBody.put("max_tokens", 800);
-            requestBody.put("stream", false);
-
-            // 设置请求头
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            if (apiKey != null && !apiKey.isEmpty()) {
-                headers.set("Authorization", "Bearer " + apiKey);
-            }
+            return requestRecommendationFromExistingProducts(userPreference, weather, mood, productList);
+        } catch (Exception e) {
+            System.err.println("调用DeepSeek API异常: " + e.getMessage());
+            return getDatabaseFallbackRecommendation(userPreference, weather, mood);
+        }
+    }
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+    /**
+     * 从现有商品中获取推荐，调用失败时直接抛出异常，由调用方决定回退方式
+     */
+    public String requestRecommendationFromExistingProducts(String userPreference, String weather, String mood, String productList) {
+        try {
+            return requestRecommendationFromExistingProductsAsync(userPreference, weather, mood, productList).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("调用DeepSeek API失败: " + cause.getMessage(), cause);
+        }
+    }
 
-            // 发送请求
-            ResponseEntity<String> response = restTemplate.exchange(
-                    apiUrl, HttpMethod.POST, entity, String.class);
+    /**
+     * 从现有商品中异步获取推荐，不占用调用线程等待上游
+     */
+    public CompletableFuture<String> requestRecommendationFromExistingProductsAsync(String userPreference, String weather,
+                                                                                  String mood, String productList) {
+        String prompt = buildRestrictedPrompt(userPreference, weather, mood, productList);
+        return deepSeekClient.chatCompletion(buildRequestBody(prompt)).thenApply(responseBody -> {
+            String content = extractContent(responseBody);
+            if (content == null) {
+                throw new RuntimeException("DeepSeek响应中没有推荐内容");
+            }
+            return content;
+        });
+    }
 
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return parseResponse(response.getBody());
-            } else {
-                System.err.println("DeepSeek API请求失败: " + response.getStatusCode());
-                return getDatabaseFallbackRecommendation(userPreference, weather, mood);
+    /**
+     * 从现有商品中流式获取推荐，每收到一段增量文本就回调 onDelta，结束时返回完整内容
+     */
+    public CompletableFuture<String> streamRecommendationFromExistingProducts(String userPreference, String weather,
+                                                                            String mood, String productList,
+                                                                            Consumer<String> onDelta) {
+        String prompt = buildRestrictedPrompt(userPreference, weather, mood, productList);
+        Map<String, Object> requestBody = buildRequestBody(prompt);
+        requestBody.put("stream", true);
+
+        StringBuilder content = new StringBuilder();
+        return deepSeekClient.streamChatCompletion(requestBody, line -> {
+            String delta = extractDelta(line);
+            if (delta != null && !delta.isEmpty()) {
+                content.append(delta);
+                onDelta.accept(delta);
+            }
+        }).thenApply(ignored -> {
+            if (content.length() == 0) {
+                throw new RuntimeException("DeepSeek响应中没有推荐内容");
             }
+            return content.toString();
+        });
+    }
 
-        } catch (Exception e) {
-            System.err.println("调用DeepSeek API异常: " + e.getMessage());
-            e.printStackTrace();
-            return getDatabaseFallbackRecommendation(userPreference, weather, mood);
-        }
+    private Map<String, Object> buildRequestBody(String prompt) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", "deepseek-chat");
+
+        List<Map<String, Object>> messages = new ArrayList<>();
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", prompt);
+        messages.add(message);
+
+        requestBody.put("messages", messages);
+        requestBody.put("temperature", 0.7);
+        requestBody.put("max_tokens", 800);
+        requestBody.put("stream", false);
+        return requestBody;
     }
 
     /**
      * 构建限制性提示词，强制AI只从现有商品中选择
+     *
+     * 固定说明放在最前面，其次是商品列表，用户信息放在最后，相同前缀可以命中上游的上下文缓存。
      */
     private String buildRestrictedPrompt(String userPreference, String weather, String mood, String productList) {
-        return "你是一个奶茶推荐专家。用户信息：\n" +
-                "口味偏好：" + (userPreference != null ? userPreference : "无") + "\n" +
-                "天气：" + (weather != null ? weather : "无") + "\n" +
-                "心情：" + (mood != null ? mood : "无") + "\n\n" +
-
+        return RESTRICTED_PROMPT_PREFIX +
                 "重要限制：你只能从以下现有商品中选择推荐，不能推荐不存在的商品：\n" +
-                productList + "\n\n" +
-
-                "请严格按照以下格式回复：\n" +
-                "推荐产品：[从上面列表中选择一个具体的商品名称]\n" +
-                "推荐理由：[简要说明为什么推荐这个商品]\n" +
-                "产品描述：[使用该商品的实际描述]\n\n" +
+                productList + "\n" +
 
-                "注意：商品名称必须完全匹配上面列表中的名称！";
+                "用户信息：\n" +
+                "口味偏好：" + (userPreference != null ? userPreference : "无") + "\n" +
+                "天气：" + (weather != null ? weather : "无") + "\n" +
+                "心情：" + (mood != null ? mood : "无");
     }
 
     /**
@@ -181,6 +183,14 @@ public class DeepSeekService {
      * 解析API响应
      */
     private String parseResponse(String responseBody) {
+        String content = extractContent(responseBody);
+        return content != null ? content : getDefaultRecommendation();
+    }
+
+    /**
+     * 取出响应中第一条回复内容，解析失败时返回 null
+     */
+    private String extractContent(String responseBody) {
         try {
             Map<String, Object> responseMap = objectMapper.readValue(responseBody, Map.class);
             List<Map<String, Object>> choices = (List<Map<String, Object>>) responseMap.get("choices");
@@ -195,7 +205,31 @@ public class DeepSeekService {
         } catch (Exception e) {
             System.err.println("解析DeepSeek响应失败: " + e.getMessage());
         }
-        return getDefaultRecommendation();
+        return null;
+    }
+
+    /**
+     * 取出一行 SSE 数据中的增量内容；非数据行、结束标记和解析失败时返回 null
+     */
+    private String extractDelta(String line) {
+        if (!line.startsWith("data:")) {
+            return null;
+        }
+        String data = line.substring(5).trim();
+        if (data.isEmpty() || "[DONE]".equals(data)) {
+            return null;
+        }
+        try {
+            Map<String, Object> chunk = objectMapper.readValue(data, Map.class);
+            List<Map<String, Object>> choices = (List<Map<String, Object>>) chunk.get("choices");
+            if (choices != null && !choices.isEmpty()) {
+                Map<String, Object> delta = (Map<String, Object>) choices.get(0).get("delta");
+                return delta != null ? (String) delta.get("content") : null;
+            }
+        } catch (Exception e) {
+            System.err.println("解析DeepSeek流式响应失败: " + e.getMessage());
+        }
+        return null;
     }
 
     /**
@@ -204,39 +238,23 @@ public class DeepSeekService {
     private String getDatabaseFallbackRecommendation(String userPreference, String weather, String mood) {
         System.out.println("使用数据库回退推荐逻辑");
 
-        // 从数据库获取所有可用商品
-        List<Product> availableProducts = productRepository.findByAvailableTrue();
+        // 从目录快照获取所有可用商品
+        List<Product> availableProducts = catalogSnapshotService.getSnapshot().getAvailableProducts();
         if (availableProducts.isEmpty()) {
             return getDefaultRecommendation();
         }
 
-        // 根据条件筛选商品
-        List<Product> filteredProducts = new ArrayList<>();
-
-        for (Product product : availableProducts) {
-            boolean matches = true;
-
-            // 根据天气筛选
-            if (weather != null && !weather.isEmpty()) {
-                if (weather.contains("热") || weather.contains("夏") || weather.contains("晴")) {
-                    matches = product.getTags() != null &&
-                            (product.getTags().contains("清爽") || product.getTags().contains("冰沙"));
-                } else if (weather.contains("冷") || weather.contains("冬") || weather.contains("寒")) {
-                    matches = product.getTags() != null &&
-                            (product.getTags().contains("暖饮") || product.getTags().contains("热饮"));
-                } else if (weather.contains("雨")) {
-                    matches = product.getTags() != null && product.getTags().contains("暖饮");
-                }
-            }
-
-            if (matches) {
-                filteredProducts.add(product);
-            }
+        // 按口味、天气、心情的语义相似度取最接近的几个商品，没有文本时按天气掩码筛选
+        List<Product> filteredProducts = semanticIndex.nearest(
+                new RecommendationRequest(userPreference, weather, mood), 3);
+        if (filteredProducts.isEmpty()) {
+            filteredProducts = productFeatureIndex.filter(
+                    ProductFeatureIndex.fallbackWeatherMask(weather), Integer.MAX_VALUE);
         }
 
         // 如果筛选后没有商品，使用所有可用商品
         if (filteredProducts.isEmpty()) {
-            filteredProducts = availableProducts;
+            filteredProducts = new ArrayList<>(availableProducts);
         }
 
         // 随机选择一个商品
@@ -0,0 +1,277 @@
+package com.auth.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 商品图片存储与缩放
+ *
+ * 原图保存在本地目录；缩放/转码后的变体在第一次请求时生成，写入有容量上限的磁盘缓存，
+ * 超出上限时按最近最少使用淘汰。宽度向上取整到固定档位，避免任意宽度撑爆缓存。
+ */
+@Service
+public class ImageService {
+
+    // 文件名只允许字母（含中文）、数字、下划线、点和横线
+    private static final Pattern SAFE_NAME = Pattern.compile("[\\p{L}\\p{N}_.\\-]+");
+
+    private static final int[] WIDTH_STEPS = {160, 320, 480, 640, 960, 1280};
+
+    @Value("${app.images.dir:./data/images}")
+    private String imageDir;
+
+    @Value("${app.images.cache-dir:./data/images-cache}")
+    private String cacheDir;
+
+    @Value("${app.images.cache.max-bytes:268435456}")
+    private long maxCacheBytes;
+
+    private Path originalsRoot;
+    private Path cacheRoot;
+
+    // 变体文件 -> 大小，按访问顺序排列，用于 LRU 淘汰
+    private final LinkedHashMap<Path, Long> cachedVariants = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    // 同一变体只允许一个线程生成
+    private final ConcurrentHashMap<String, Object> generationLocks = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        try {
+            originalsRoot = Paths.get(imageDir).toAbsolutePath().normalize();
+            cacheRoot = Paths.get(cacheDir).toAbsolutePath().normalize();
+            Files.createDirectories(originalsRoot);
+            Files.createDirectories(cacheRoot);
+            loadExistingVariants();
+            System.out.println("图片目录: " + originalsRoot + "，变体缓存 " + cachedVariants.size() +
+                    " 个 / " + cachedBytes + " 字节");
+        } catch (IOException e) {
+            System.err.println("初始化图片目录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 解析要返回的图片文件：不缩放也不转码时直接返回原图，否则返回（必要时生成）缓存变体
+     *
+     * @return 图片文件；原图不存在时返回 null
+     */
+    public Path resolve(String name, Integer width, String format) throws IOException {
+        Path original = resolveOriginal(name);
+        if (original == null) {
+            return null;
+        }
+
+        String originalFormat = formatOf(name);
+        String targetFormat = format != null ? format : originalFormat;
+        if ("webp".equals(targetFormat) && !isWebpSupported()) {
+            targetFormat = "jpeg";
+        }
+        if ("gif".equals(targetFormat) && width != null) {
+            // 缩放后的 GIF 统一输出 PNG
+            targetFormat = "png";
+        }
+        Integer targetWidth = width != null ? bucketWidth(width) : null;
+        if (targetWidth == null && targetFormat.equals(originalFormat)) {
+            return original;
+        }
+
+        // 保留原图扩展名，避免 a.png 和 a.jpg 的变体同名
+        String variantName = name + "_" + (targetWidth != null ? targetWidth : "orig") + "." + extensionOf(targetFormat);
+        Path variant = cacheRoot.resolve(variantName);
+
+        Object lock = generationLocks.computeIfAbsent(variantName, k -> new Object());
+        synchronized (lock) {
+            try {
+                // 原图更新后旧变体作废
+                if (Files.exists(variant) &&
+                        Files.getLastModifiedTime(variant).compareTo(Files.getLastModifiedTime(original)) >= 0) {
+                    touch(variant);
+                    return variant;
+                }
+                generateVariant(original, variant, targetWidth, targetFormat);
+                return variant;
+            } finally {
+                generationLocks.remove(variantName, lock);
+            }
+        }
+    }
+
+    /**
+     * 保存上传的原图，返回可访问的图片URL
+     */
+    public String store(MultipartFile file, String name) throws IOException {
+        String fileName = name != null && !name.trim().isEmpty() ? name.trim() : file.getOriginalFilename();
+        if (!isSafeName(fileName)) {
+            throw new IllegalArgumentException("非法的图片名称: " + fileName);
+        }
+        String format = formatOf(fileName);
+        if (format == null) {
+            throw new IllegalArgumentException("不支持的图片格式: " + fileName);
+        }
+
+        Path target = originalsRoot.resolve(fileName);
+        Path temp = Files.createTempFile(originalsRoot, "upload-", ".tmp");
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            if (ImageIO.read(temp.toFile()) == null) {
+                throw new IllegalArgumentException("无法识别的图片内容: " + fileName);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return "/images/" + fileName;
+    }
+
+    /**
+     * 当前运行环境是否能输出 WebP（JDK 自带 ImageIO 不支持，需要插件）
+     */
+    public boolean isWebpSupported() {
+        return ImageIO.getImageWritersByFormatName("webp").hasNext();
+    }
+
+    public static String contentTypeOf(Path file) {
+        String format = formatOf(file.getFileName().toString());
+        if ("png".equals(format)) return "image/png";
+        if ("webp".equals(format)) return "image/webp";
+        if ("gif".equals(format)) return "image/gif";
+        return "image/jpeg";
+    }
+
+    private Path resolveOriginal(String name) {
+        if (!isSafeName(name) || formatOf(name) == null) {
+            return null;
+        }
+        Path original = originalsRoot.resolve(name).normalize();
+        if (!original.startsWith(originalsRoot) || !Files.isRegularFile(original)) {
+            return null;
+        }
+        return original;
+    }
+
+    private void generateVariant(Path original, Path variant, Integer width, String format) throws IOException {
+        BufferedImage source = ImageIO.read(original.toFile());
+        if (source == null) {
+            throw new IOException("无法读取图片: " + original.getFileName());
+        }
+
+        // 只缩小不放大
+        int targetWidth = width != null ? Math.min(width, source.getWidth()) : source.getWidth();
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        boolean keepAlpha = "png".equals(format) || "webp".equals(format);
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight,
+                keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            if (!keepAlpha) {
+                // JPEG 没有透明通道，透明区域铺白底
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, targetWidth, targetHeight);
+            }
+            g.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+
+        // 先写临时文件再原子替换，避免读到写了一半的变体
+        Path temp = Files.createTempFile(cacheRoot, "variant-", ".tmp");
+        try {
+            if (!ImageIO.write(scaled, format, temp.toFile())) {
+                throw new IOException("没有可用的图片编码器: " + format);
+            }
+            Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        register(variant, Files.size(variant));
+    }
+
+    private synchronized void touch(Path variant) {
+        cachedVariants.get(variant);
+    }
+
+    private synchronized void register(Path variant, long size) {
+        Long previous = cachedVariants.put(variant, size);
+        cachedBytes += size - (previous != null ? previous : 0L);
+
+        Iterator<Map.Entry<Path, Long>> it = cachedVariants.entrySet().iterator();
+        while (cachedBytes > maxCacheBytes && it.hasNext()) {
+            Map.Entry<Path, Long> eldest = it.next();
+            if (eldest.getKey().equals(variant)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(eldest.getKey());
+            } catch (IOException e) {
+                System.err.println("删除图片缓存失败: " + e.getMessage());
+            }
+            cachedBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    private void loadExistingVariants() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(cacheRoot)) {
+            stream.filter(Files::isRegularFile).forEach(files::add);
+        }
+        // 按修改时间由旧到新登记，旧文件先被淘汰
+        files.sort(Comparator.comparingLong(p -> p.toFile().lastModified()));
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(".tmp")) {
+                Files.deleteIfExists(file);
+            } else {
+                register(file, Files.size(file));
+            }
+        }
+    }
+
+    private static int bucketWidth(int width) {
+        for (int step : WIDTH_STEPS) {
+            if (width <= step) {
+                return step;
+            }
+        }
+        return WIDTH_STEPS[WIDTH_STEPS.length - 1];
+    }
+
+    private static boolean isSafeName(String name) {
+        return name != null && SAFE_NAME.matcher(name).matches() && !name.contains("..")
+                && name.indexOf('.') > 0;
+    }
+
+    private static String formatOf(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        String ext = name.substring(dot + 1).toLowerCase();
+        if ("jpg".equals(ext) || "jpeg".equals(ext)) return "jpeg";
+        if ("png".equals(ext) || "webp".equals(ext) || "gif".equals(ext)) return ext;
+        return null;
+    }
+
+    private static String extensionOf(String format) {
+        return "jpeg".equals(format) ? "jpg" : format;
+    }
+}
@@ -4,16 +4,23 @@ import com.auth.dto.OrderDTO;
 import com.auth.dto.OrderItemDTO;
 import com.auth.dto.CartDTO;
 import com.auth.dto.CartItemDTO;
+import com.auth.dto.CursorPage;
+import com.auth.dto.PageCursor;
 import com.auth.entity.*;
 import com.auth.repository.OrderRepository;
 import com.auth.repository.OrderItemRepository;
 import com.auth.repository.UserRepository;
 import com.auth.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZoneId;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -21,6 +28,8 @@ import java.util.stream.Collectors;
 @Transactional
 public class OrderService {
 
+    private static final String STATUS_CANCELLED = "cancelled";
+
     @Autowired
     private OrderRepository orderRepository;
 
@@ -34,13 +43,25 @@ public class OrderService {
     private ProductRepository productRepository;
 
     @Autowired
-    private CartService cartService;
+    private CartStore cartStore;
+
+    @Autowired
+    private ProductSalesTracker productSalesTracker;
+
+    @Autowired
+    private ProductCoPurchaseIndex coPurchaseIndex;
+
+    @Autowired
+    private UserProfileService userProfileService;
+
+    @Autowired
+    private RecommendationListStore recommendationListStore;
 
     // 从购物车创建订单
     public OrderDTO createOrderFromCart(Long userId, String customerNotes) {
         try {
-            // 获取用户购物车 - 这里需要修改，因为CartService返回的是CartDTO
-            com.auth.dto.CartDTO cart = cartService.getCartByUserId(userId);
+            // 获取用户购物车（内存中的最新内容）
+            com.auth.dto.CartDTO cart = cartStore.getCart(userId);
 
             if (cart.getCartItems().isEmpty()) {
                 throw new RuntimeException("购物车为空，无法创建订单");
@@ -65,8 +86,23 @@ public class OrderService {
             order.calculateTotalPrice();
             Order savedOrder = orderRepository.save(order);
 
-            // 清空购物车
-            cartService.clearCart(userId);
+            // 订单提交后更新商品销量热度、共同购买矩阵和用户画像，丢弃该用户的预计算推荐
+            final Map<Long, Integer> soldQuantities = new HashMap<>();
+            for (com.auth.dto.CartItemDTO cartItem : cart.getCartItems()) {
+                soldQuantities.merge(cartItem.getProductId(), cartItem.getQuantity(), Integer::sum);
+            }
+            final Long orderId = savedOrder.getId();
+            final long orderedAt = orderedAtMillis(savedOrder);
+            TransactionCallbacks.afterCommit(() -> {
+                soldQuantities.forEach((productId, quantity) -> productSalesTracker.record(productId, quantity, orderedAt));
+                coPurchaseIndex.recordOrder(orderId, soldQuantities.keySet());
+                userProfileService.recordOrder(userId, orderId, soldQuantities);
+                recommendationListStore.evictUser(userId);
+            });
+
+            // 清空购物车，并在订单事务内同步写回数据库
+            cartStore.clearCart(userId);
+            cartStore.flush(userId);
 
             return convertToDTO(savedOrder);
         } catch (Exception e) {
@@ -86,6 +122,21 @@ public class OrderService {
         }
     }
 
+    // 键集分页获取用户订单，按下单时间倒序
+    public CursorPage<OrderDTO> getUserOrdersPage(Long userId, String cursor, Integer size) {
+        int pageSize = CursorPage.normalizeSize(size);
+        PageCursor after = decodeOrderCursor(cursor);
+        try {
+            Pageable limit = PageRequest.of(0, pageSize + 1);
+            List<Order> orders = after == null
+                    ? orderRepository.findFirstPageByUserId(userId, limit)
+                    : orderRepository.findPageBeforeByUserId(userId, after.getOrderDate(), after.getId(), limit);
+            return CursorPage.fromSlice(orders, pageSize, this::convertToDTO, OrderService::cursorOf);
+        } catch (Exception e) {
+            throw new RuntimeException("获取用户订单失败: " + e.getMessage(), e);
+        }
+    }
+
     // 根据ID获取订单
     public OrderDTO getOrderById(Long orderId) {
         try {
@@ -112,8 +163,10 @@ public class OrderService {
             Order order = orderRepository.findById(orderId)
                     .orElseThrow(() -> new RuntimeException("订单不存在"));
 
+            String previousStatus = order.getStatus();
             order.setStatus(status);
             Order updatedOrder = orderRepository.save(order);
+            onStatusChanged(updatedOrder, previousStatus);
 
             return convertToDTO(updatedOrder);
         } catch (Exception e) {
@@ -121,9 +174,46 @@ public class OrderService {
         }
     }
 
+    /**
+     * 订单取消或恢复时，提交后从销量热度、共同购买矩阵和用户画像中扣回或补上该订单，并丢弃该用户的预计算推荐
+     */
+    public void onStatusChanged(Order order, String previousStatus) {
+        boolean cancelled = STATUS_CANCELLED.equals(order.getStatus());
+        if (cancelled == STATUS_CANCELLED.equals(previousStatus)) {
+            return;
+        }
+        final Map<Long, Integer> quantities = new HashMap<>();
+        // 管理端传入的订单可能已脱离会话，明细按订单ID重新读取
+        for (OrderItem item : orderItemRepository.findByOrderId(order.getId())) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        final long orderedAt = orderedAtMillis(order);
+        final Long orderId = order.getId();
+        final Long userId = order.getUser().getId();
+        TransactionCallbacks.afterCommit(() -> {
+            if (cancelled) {
+                quantities.forEach((productId, quantity) -> productSalesTracker.retract(productId, quantity, orderedAt));
+                coPurchaseIndex.retractOrder(orderId, quantities.keySet());
+                userProfileService.retractOrder(userId, orderId, quantities);
+            } else {
+                quantities.forEach((productId, quantity) -> productSalesTracker.record(productId, quantity, orderedAt));
+                coPurchaseIndex.recordOrder(orderId, quantities.keySet());
+                userProfileService.recordOrder(userId, orderId, quantities);
+            }
+            recommendationListStore.evictUser(userId);
+        });
+    }
+
+    // 销量按下单时刻记录，取消时按同一时刻扣回才能正好抵消
+    private static long orderedAtMillis(Order order) {
+        return order.getOrderDate() != null
+                ? order.getOrderDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+    }
+
     // 取消订单
     public OrderDTO cancelOrder(Long orderId) {
-        return updateOrderStatus(orderId, "cancelled");
+        return updateOrderStatus(orderId, STATUS_CANCELLED);
     }
 
     // 获取所有订单（管理员用）
@@ -138,6 +228,21 @@ public class OrderService {
         }
     }
 
+    // 键集分页获取所有订单（管理员用），按下单时间倒序
+    public CursorPage<OrderDTO> getAllOrdersPage(String cursor, Integer size) {
+        int pageSize = CursorPage.normalizeSize(size);
+        PageCursor after = decodeOrderCursor(cursor);
+        try {
+            Pageable limit = PageRequest.of(0, pageSize + 1);
+            List<Order> orders = after == null
+                    ? orderRepository.findFirstPage(limit)
+                    : orderRepository.findPageBefore(after.getOrderDate(), after.getId(), limit);
+            return CursorPage.fromSlice(orders, pageSize, this::convertToDTO, OrderService::cursorOf);
+        } catch (Exception e) {
+            throw new RuntimeException("获取所有订单失败: " + e.getMessage(), e);
+        }
+    }
+
     // 根据状态获取订单
     public List<OrderDTO> getOrdersByStatus(String status) {
         try {
@@ -150,6 +255,20 @@ public class OrderService {
         }
     }
 
+    // 订单分页游标：(orderDate, id)
+    static PageCursor cursorOf(Order order) {
+        return PageCursor.ofOrderDate(order.getOrderDate(), order.getId());
+    }
+
+    // 解析订单游标，必须带下单时间
+    static PageCursor decodeOrderCursor(String cursor) {
+        PageCursor after = PageCursor.decode(cursor);
+        if (after != null && after.getOrderDate() == null) {
+            throw new IllegalArgumentException("无效的订单分页游标: " + cursor);
+        }
+        return after;
+    }
+
     // 转换实体为DTO
     private OrderDTO convertToDTO(Order order) {
         OrderDTO dto = new OrderDTO();
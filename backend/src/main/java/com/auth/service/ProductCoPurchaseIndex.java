@@ -0,0 +1,300 @@
+package com.auth.service;
+
+import com.auth.repository.OrderItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 商品共同购买矩阵
+ *
+ * 每个商品一行，行内用有序的 long[] 商品ID 和 int[] 次数存储稀疏的共现计数（同一订单里同时出现记一次）。
+ * 行不可变，新订单提交后按商品整体替换；读取时按余弦相似度取前 K 个，结果缓存在行上。
+ * 订单取消时扣回它的共现，恢复时重新记上；启动和每天凌晨从订单明细全量重建，修正其余增量偏差。
+ */
+@Component
+public class ProductCoPurchaseIndex {
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    private volatile ConcurrentHashMap<Long, Row> rows = new ConcurrentHashMap<>();
+
+    // 全量重建期间到达的增量订单，重建完成后补上
+    private final Object rebuildLock = new Object();
+    private List<PendingOrder> pendingOrders;
+
+    /**
+     * 启动时从历史订单构建矩阵
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 每天凌晨全量重建
+     */
+    @Scheduled(cron = "${recommendation.co-purchase.rebuild-cron:0 30 3 * * *}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * 记录一个新订单中的商品（订单提交后调用）
+     */
+    public void recordOrder(Long orderId, Collection<Long> productIds) {
+        long[] items = distinctSorted(productIds);
+        if (items.length < 2) {
+            return;
+        }
+        apply(register(orderId, items, false), items);
+    }
+
+    /**
+     * 扣回一个已取消订单中的商品（取消提交后调用）
+     */
+    public void retractOrder(Long orderId, Collection<Long> productIds) {
+        long[] items = distinctSorted(productIds);
+        if (items.length < 2) {
+            return;
+        }
+        retract(register(orderId, items, true), items);
+    }
+
+    // 在锁内决定写入哪张表：重建完成前写旧表并登记，完成后直接写新表，保证只计一次
+    private ConcurrentHashMap<Long, Row> register(Long orderId, long[] items, boolean retract) {
+        synchronized (rebuildLock) {
+            if (pendingOrders != null) {
+                pendingOrders.add(new PendingOrder(orderId, items, retract));
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * 与某商品共同购买最多的商品ID，按相似度降序
+     */
+    public List<Long> getRelatedProductIds(Long productId, int limit) {
+        Row row = rows.get(productId);
+        if (row == null) {
+            return new ArrayList<>();
+        }
+        long[] ranked = row.ranked;
+        if (ranked == null) {
+            ranked = rank(row, rows);
+            row.ranked = ranked;
+        }
+        List<Long> result = new ArrayList<>(Math.min(limit, ranked.length));
+        for (int i = 0; i < ranked.length && result.size() < limit; i++) {
+            result.add(ranked[i]);
+        }
+        return result;
+    }
+
+    /**
+     * 从订单明细全量重建
+     */
+    public void rebuild() {
+        try {
+            synchronized (rebuildLock) {
+                pendingOrders = new ArrayList<>();
+            }
+            Long maxOrderId = orderItemRepository.findMaxOrderId();
+            ConcurrentHashMap<Long, Row> rebuilt = new ConcurrentHashMap<>();
+            int orders = 0;
+            // 查询结果中出现过的订单ID，升序；截止ID之前但查询时尚未提交的订单不在其中
+            long[] seenOrders = new long[0];
+            int seenCount = 0;
+            if (maxOrderId != null) {
+                // 结果按订单ID排序，逐个订单累积商品
+                List<Object[]> pairs = orderItemRepository.findOrderProductPairs(maxOrderId);
+                Long currentOrder = null;
+                List<Long> items = new ArrayList<>();
+                for (Object[] pair : pairs) {
+                    Long orderId = (Long) pair[0];
+                    if (!orderId.equals(currentOrder)) {
+                        orders += applyOrder(rebuilt, items);
+                        items.clear();
+                        currentOrder = orderId;
+                        if (seenCount == seenOrders.length) {
+                            seenOrders = Arrays.copyOf(seenOrders, Math.max(1024, seenCount * 2));
+                        }
+                        seenOrders[seenCount++] = orderId;
+                    }
+                    items.add((Long) pair[1]);
+                }
+                orders += applyOrder(rebuilt, items);
+            }
+
+            synchronized (rebuildLock) {
+                // 按到达顺序补上查询没有包含的增量订单（ID 大于截止点的，以及截止点之前但当时还未提交的），
+                // 并扣回查询读到、随后才取消的订单；订单是否已计入先看查询结果，再看之前的增量
+                Map<Long, Boolean> counted = new HashMap<>();
+                for (PendingOrder pending : pendingOrders) {
+                    Boolean known = counted.get(pending.orderId);
+                    boolean included = known != null ? known
+                            : Arrays.binarySearch(seenOrders, 0, seenCount, pending.orderId) >= 0;
+                    if (pending.retract && included) {
+                        retract(rebuilt, pending.items);
+                    } else if (!pending.retract && !included) {
+                        apply(rebuilt, pending.items);
+                    }
+                    counted.put(pending.orderId, !pending.retract);
+                }
+                pendingOrders = null;
+                rows = rebuilt;
+            }
+            System.out.println("共同购买矩阵已重建，订单 " + orders + " 个，商品 " + rebuilt.size() + " 个");
+        } catch (Exception e) {
+            synchronized (rebuildLock) {
+                pendingOrders = null;
+            }
+            System.err.println("重建共同购买矩阵失败: " + e.getMessage());
+        }
+    }
+
+    private static int applyOrder(ConcurrentHashMap<Long, Row> target, List<Long> productIds) {
+        long[] items = distinctSorted(productIds);
+        if (items.length < 2) {
+            return 0;
+        }
+        apply(target, items);
+        return 1;
+    }
+
+    // 订单里的每个商品与其余商品各记一次共现
+    private static void apply(ConcurrentHashMap<Long, Row> target, long[] items) {
+        for (long item : items) {
+            target.compute(item, (id, row) -> (row != null ? row : Row.EMPTY).plus(item, items));
+        }
+    }
+
+    private static void retract(ConcurrentHashMap<Long, Row> target, long[] items) {
+        for (long item : items) {
+            target.computeIfPresent(item, (id, row) -> row.minus(item, items));
+        }
+    }
+
+    // 余弦相似度：共现次数 / sqrt(两个商品各自的订单数)，避免热门商品霸榜
+    private static long[] rank(Row row, ConcurrentHashMap<Long, Row> all) {
+        int n = row.ids.length;
+        Integer[] order = new Integer[n];
+        double[] scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            Row other = all.get(row.ids[i]);
+            int otherOrders = other != null ? Math.max(1, other.orders) : 1;
+            scores[i] = row.counts[i] / Math.sqrt((double) row.orders * otherOrders);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> scores[a] != scores[b]
+                ? Double.compare(scores[b], scores[a]) : Integer.compare(row.counts[b], row.counts[a]));
+        long[] ranked = new long[n];
+        for (int i = 0; i < n; i++) {
+            ranked[i] = row.ids[order[i]];
+        }
+        return ranked;
+    }
+
+    private static long[] distinctSorted(Collection<Long> productIds) {
+        long[] items = new long[productIds.size()];
+        int size = 0;
+        for (Long id : productIds) {
+            if (id != null) {
+                items[size++] = id;
+            }
+        }
+        items = Arrays.copyOf(items, size);
+        Arrays.sort(items);
+        int distinct = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (i == 0 || items[i] != items[i - 1]) {
+                items[distinct++] = items[i];
+            }
+        }
+        return Arrays.copyOf(items, distinct);
+    }
+
+    /**
+     * 矩阵中的一行，不可变；ranked 是按需计算的排序缓存，
+     * 邻居订单数变化引起的微小偏差在本行下次更新或全量重建时修正
+     */
+    private static final class Row {
+        private static final Row EMPTY = new Row(new long[0], new int[0], 0);
+
+        private final long[] ids;
+        private final int[] counts;
+        private final int orders;
+        private volatile long[] ranked;
+
+        private Row(long[] ids, int[] counts, int orders) {
+            this.ids = ids;
+            this.counts = counts;
+            this.orders = orders;
+        }
+
+        // 合并同一订单中的其他商品（items 已排序去重），两个有序数组归并
+        private Row plus(long self, long[] items) {
+            long[] mergedIds = new long[ids.length + items.length];
+            int[] mergedCounts = new int[ids.length + items.length];
+            int i = 0, j = 0, k = 0;
+            while (i < ids.length || j < items.length) {
+                if (j < items.length && items[j] == self) {
+                    j++;
+                } else if (j >= items.length || (i < ids.length && ids[i] < items[j])) {
+                    mergedIds[k] = ids[i];
+                    mergedCounts[k++] = counts[i++];
+                } else if (i >= ids.length || items[j] < ids[i]) {
+                    mergedIds[k] = items[j++];
+                    mergedCounts[k++] = 1;
+                } else {
+                    mergedIds[k] = ids[i];
+                    mergedCounts[k++] = counts[i++] + 1;
+                    j++;
+                }
+            }
+            return new Row(Arrays.copyOf(mergedIds, k), Arrays.copyOf(mergedCounts, k), orders + 1);
+        }
+
+        // 去掉一个订单的共现，计数归零的商品移出本行；行内不再有订单时返回 null 以删除该行
+        private Row minus(long self, long[] items) {
+            if (orders <= 1) {
+                return null;
+            }
+            long[] remainingIds = new long[ids.length];
+            int[] remainingCounts = new int[ids.length];
+            int k = 0;
+            for (int i = 0; i < ids.length; i++) {
+                int count = counts[i];
+                if (ids[i] != self && Arrays.binarySearch(items, ids[i]) >= 0) {
+                    count--;
+                }
+                if (count > 0) {
+                    remainingIds[k] = ids[i];
+                    remainingCounts[k++] = count;
+                }
+            }
+            return new Row(Arrays.copyOf(remainingIds, k), Arrays.copyOf(remainingCounts, k), orders - 1);
+        }
+    }
+
+    /**
+     * 重建期间到达的增量：新订单或取消订单
+     */
+    private static final class PendingOrder {
+        private final long orderId;
+        private final long[] items;
+        private final boolean retract;
+
+        private PendingOrder(long orderId, long[] items, boolean retract) {
+            this.orderId = orderId;
+            this.items = items;
+            this.retract = retract;
+        }
+    }
+}
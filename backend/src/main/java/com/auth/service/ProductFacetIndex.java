@@ -0,0 +1,203 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 商品分面索引（分类 × 价格区间 × 标签）
+ *
+ * 每个分面取值对应一个 BitSet，位下标是商品在快照可用列表中的位置。
+ * 同一分面内多选取并集，分面之间取交集；每个分面的计数按“其他分面的已选条件”计算，
+ * 切换当前分面的选项时计数不会归零。
+ */
+@Component
+public class ProductFacetIndex {
+
+    // 价格区间：下限含，上限不含；最后一档无上限
+    private static final double[] PRICE_BOUNDS = {0, 15, 20, 25, 30};
+    private static final String[] PRICE_BANDS = {"0-15", "15-20", "20-25", "25-30", "30+"};
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    private volatile CompiledFacets compiled;
+
+    /**
+     * 目录变更后重建分面倒排表
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        compiled = compile(event.getSnapshot());
+    }
+
+    /**
+     * 按分面条件查询，返回匹配商品（最多 limit 个，按快照顺序）和各分面计数
+     */
+    public FacetResult query(Collection<String> categories, Collection<String> priceBands,
+                             Collection<String> tags, int limit) {
+        CompiledFacets facets = current();
+
+        BitSet categoryMask = union(facets.byCategory, categories, facets.size);
+        BitSet priceMask = union(facets.byPriceBand, priceBands, facets.size);
+        BitSet tagMask = union(facets.byTag, tags, facets.size);
+
+        BitSet matched = and(facets.size, categoryMask, priceMask, tagMask);
+        List<Product> products = new ArrayList<>();
+        for (int i = matched.nextSetBit(0); i >= 0 && products.size() < limit; i = matched.nextSetBit(i + 1)) {
+            products.add(facets.products.get(i));
+        }
+
+        return new FacetResult(products, matched.cardinality(),
+                counts(facets.byCategory, and(facets.size, priceMask, tagMask)),
+                counts(facets.byPriceBand, and(facets.size, categoryMask, tagMask)),
+                counts(facets.byTag, and(facets.size, categoryMask, priceMask)));
+    }
+
+    private CompiledFacets current() {
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        CompiledFacets facets = compiled;
+        if (facets == null || facets.version != snapshot.getVersion()) {
+            facets = compile(snapshot);
+            compiled = facets;
+        }
+        return facets;
+    }
+
+    // 未选择任何取值时返回 null，表示该分面不限制
+    private static BitSet union(Map<String, BitSet> postings, Collection<String> values, int size) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        BitSet mask = new BitSet(size);
+        for (String value : values) {
+            BitSet posting = postings.get(value);
+            if (posting != null) {
+                mask.or(posting);
+            }
+        }
+        return mask;
+    }
+
+    // 忽略不限制的分面；全部不限制时返回全集
+    private static BitSet and(int size, BitSet... masks) {
+        BitSet result = null;
+        for (BitSet mask : masks) {
+            if (mask == null) {
+                continue;
+            }
+            if (result == null) {
+                result = (BitSet) mask.clone();
+            } else {
+                result.and(mask);
+            }
+        }
+        if (result == null) {
+            result = new BitSet(size);
+            result.set(0, size);
+        }
+        return result;
+    }
+
+    private static Map<String, Integer> counts(Map<String, BitSet> postings, BitSet filter) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        BitSet hits = new BitSet(filter.size());
+        for (Map.Entry<String, BitSet> entry : postings.entrySet()) {
+            hits.clear();
+            hits.or(entry.getValue());
+            hits.and(filter);
+            counts.put(entry.getKey(), hits.cardinality());
+        }
+        return counts;
+    }
+
+    private static CompiledFacets compile(CatalogSnapshot snapshot) {
+        List<Product> products = snapshot.getAvailableProducts();
+        Map<String, BitSet> byCategory = new LinkedHashMap<>();
+        Map<String, BitSet> byPriceBand = new LinkedHashMap<>();
+        Map<String, BitSet> byTag = new TreeMap<>();
+        for (String band : PRICE_BANDS) {
+            byPriceBand.put(band, new BitSet(products.size()));
+        }
+
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            if (product.getCategory() != null) {
+                byCategory.computeIfAbsent(product.getCategory(), k -> new BitSet(products.size())).set(i);
+            }
+            if (product.getPrice() != null) {
+                byPriceBand.get(priceBandOf(product.getPrice())).set(i);
+            }
+            if (product.getTags() != null) {
+                for (String tag : product.getTags().split("[,，]")) {
+                    String trimmed = tag.trim();
+                    if (!trimmed.isEmpty()) {
+                        byTag.computeIfAbsent(trimmed, k -> new BitSet(products.size())).set(i);
+                    }
+                }
+            }
+        }
+        return new CompiledFacets(snapshot.getVersion(), products, byCategory, byPriceBand, byTag);
+    }
+
+    private static String priceBandOf(double price) {
+        for (int i = PRICE_BOUNDS.length - 1; i > 0; i--) {
+            if (price >= PRICE_BOUNDS[i]) {
+                return PRICE_BANDS[i];
+            }
+        }
+        return PRICE_BANDS[0];
+    }
+
+    /**
+     * 分面查询结果
+     */
+    public static final class FacetResult {
+        private final List<Product> products;
+        private final int total;
+        private final Map<String, Integer> categoryCounts;
+        private final Map<String, Integer> priceBandCounts;
+        private final Map<String, Integer> tagCounts;
+
+        private FacetResult(List<Product> products, int total, Map<String, Integer> categoryCounts,
+                            Map<String, Integer> priceBandCounts, Map<String, Integer> tagCounts) {
+            this.products = products;
+            this.total = total;
+            this.categoryCounts = categoryCounts;
+            this.priceBandCounts = priceBandCounts;
+            this.tagCounts = tagCounts;
+        }
+
+        public List<Product> getProducts() { return products; }
+
+        public int getTotal() { return total; }
+
+        public Map<String, Integer> getCategoryCounts() { return categoryCounts; }
+
+        public Map<String, Integer> getPriceBandCounts() { return priceBandCounts; }
+
+        public Map<String, Integer> getTagCounts() { return tagCounts; }
+    }
+
+    private static final class CompiledFacets {
+        private final long version;
+        private final List<Product> products;
+        private final int size;
+        private final Map<String, BitSet> byCategory;
+        private final Map<String, BitSet> byPriceBand;
+        private final Map<String, BitSet> byTag;
+
+        private CompiledFacets(long version, List<Product> products, Map<String, BitSet> byCategory,
+                               Map<String, BitSet> byPriceBand, Map<String, BitSet> byTag) {
+            this.version = version;
+            this.products = products;
+            this.size = products.size();
+            this.byCategory = byCategory;
+            this.byPriceBand = byPriceBand;
+            this.byTag = byTag;
+        }
+    }
+}
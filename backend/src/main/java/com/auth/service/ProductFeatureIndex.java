@@ -0,0 +1,334 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 商品特征位图索引
+ *
+ * 规则推荐用到的分类、标签、名称、描述关键字在目录加载时编译成每个商品一个 long 位图，
+ * 天气/节日/季节/口味/心情规则预编译为掩码，筛选时只做按位与。
+ */
+@Component
+public class ProductFeatureIndex {
+
+    /**
+     * 不限制条件的规则掩码
+     */
+    public static final long MATCH_ALL = 0L;
+
+    // 多命中一条规则总是优于同一规则里多命中几个特征
+    private static final int RULE_HIT_WEIGHT = Long.SIZE;
+
+    private static final int CATEGORY = 0;
+    private static final int TAGS = 1;
+    private static final int NAME = 2;
+    private static final int DESCRIPTION = 3;
+
+    private static final List<Integer> FEATURE_FIELDS = new ArrayList<>();
+    private static final List<String> FEATURE_KEYWORDS = new ArrayList<>();
+
+    // ============ 天气 ============
+    private static final long WEATHER_SUNNY = category("fruit") | category("weather") | tags("清爽") | tags("冰沙");
+    private static final long WEATHER_RAINY = category("weather") | tags("暖饮") | tags("热饮") | name("姜");
+    private static final long WEATHER_SNOWY = tags("热饮") | tags("巧克力") | name("热");
+    private static final long WEATHER_DEFAULT = category("recommend") | category("classic");
+
+    // DeepSeek 回退逻辑按中文天气描述筛选
+    private static final long FALLBACK_HOT = tags("清爽") | tags("冰沙");
+    private static final long FALLBACK_COLD = tags("暖饮") | tags("热饮");
+    private static final long FALLBACK_RAIN = tags("暖饮");
+
+    // ============ 节日 ============
+    private static final long FESTIVAL_CHRISTMAS = category("festival") | name("圣诞") | tags("圣诞");
+    private static final long FESTIVAL_SPRING = category("festival") | name("春节") | name("福气") | tags("春节");
+    private static final long FESTIVAL_VALENTINE = category("festival") | name("情人") | name("甜蜜") | tags("浪漫");
+    private static final long FESTIVAL_DEFAULT = category("festival");
+
+    // ============ 季节 ============
+    private static final long SEASON_SPRING = tags("清爽") | tags("花香");
+    private static final long SEASON_SUMMER = tags("冰沙") | tags("清爽") | tags("果茶");
+    private static final long SEASON_AUTUMN = tags("温暖") | tags("坚果");
+    private static final long SEASON_WINTER = tags("热饮") | tags("巧克力") | tags("暖饮");
+
+    // ============ 口味偏好 ============
+    private static final long PREFERENCE_SWEET = tags("甜") | name("糖") | name("蜜");
+    private static final long PREFERENCE_FRUIT = tags("水果") | name("果") | description("水果");
+    private static final long PREFERENCE_TEA = tags("茶") | name("茶") | description("茶");
+    private static final long PREFERENCE_MILK = tags("奶") | name("奶") | description("奶");
+
+    // ============ 心情 ============
+    private static final long MOOD_HAPPY = tags("庆祝") | name("欢乐") | tags("甜蜜");
+    private static final long MOOD_TIRED = tags("提神") | name("咖啡") | tags("能量");
+    private static final long MOOD_STRESSED = tags("放松") | tags("舒缓") | name("薰衣草");
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    private volatile CompiledFeatures compiled;
+
+    /**
+     * 目录变更后重新编译位图
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        compiled = compile(event.getSnapshot());
+    }
+
+    /**
+     * 按快照顺序返回位图与规则掩码有交集的可用商品，最多 limit 个
+     */
+    public List<Product> filter(long ruleMask, int limit) {
+        CompiledFeatures features = current();
+        List<Product> result = new ArrayList<>();
+        long[] masks = features.masks;
+        for (int i = 0; i < masks.length && result.size() < limit; i++) {
+            if (matches(masks[i], ruleMask)) {
+                result.add(features.products.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 返回同时满足全部规则掩码的可用商品
+     */
+    public List<Product> filterAll(long... ruleMasks) {
+        CompiledFeatures features = current();
+        List<Product> result = new ArrayList<>();
+        long[] masks = features.masks;
+        for (int i = 0; i < masks.length; i++) {
+            boolean matched = true;
+            for (long ruleMask : ruleMasks) {
+                if (!matches(masks[i], ruleMask)) {
+                    matched = false;
+                    break;
+                }
+            }
+            if (matched) {
+                result.add(features.products.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按相关度返回最多 limit 个可用商品：先比命中的规则数，再比命中的特征数，分数相同保持快照顺序
+     */
+    public List<Product> rank(int limit, long... ruleMasks) {
+        CompiledFeatures features = current();
+        long[] masks = features.masks;
+        int n = masks.length;
+        if (n <= limit) {
+            return new ArrayList<>(features.products);
+        }
+
+        // 高32位放分数，低32位放倒序下标，排序后从尾部取即是分数降序、下标升序
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int score = 0;
+            for (long ruleMask : ruleMasks) {
+                int hits = Long.bitCount(masks[i] & ruleMask);
+                if (hits > 0) {
+                    score += RULE_HIT_WEIGHT + hits;
+                }
+            }
+            keys[i] = ((long) score << 32) | (n - 1 - i);
+        }
+        Arrays.sort(keys);
+
+        List<Product> result = new ArrayList<>(limit);
+        for (int k = n - 1; k >= 0 && result.size() < limit; k--) {
+            int index = n - 1 - (int) (keys[k] & 0xFFFFFFFFL);
+            result.add(features.products.get(index));
+        }
+        return result;
+    }
+
+    private static boolean matches(long productMask, long ruleMask) {
+        return ruleMask == MATCH_ALL || (productMask & ruleMask) != 0;
+    }
+
+    // ============ 规则 -> 掩码 ============
+
+    public static long weatherMask(String weather) {
+        if ("sunny".equalsIgnoreCase(weather) || "晴天".equals(weather)) {
+            return WEATHER_SUNNY;
+        } else if ("rainy".equalsIgnoreCase(weather) || "雨天".equals(weather)) {
+            return WEATHER_RAINY;
+        } else if ("snowy".equalsIgnoreCase(weather) || "雪天".equals(weather)) {
+            return WEATHER_SNOWY;
+        }
+        return WEATHER_DEFAULT;
+    }
+
+    /**
+     * DeepSeek 回退用的天气掩码，按描述中的关键字判断
+     */
+    public static long fallbackWeatherMask(String weather) {
+        if (weather == null || weather.isEmpty()) {
+            return MATCH_ALL;
+        }
+        if (weather.contains("热") || weather.contains("夏") || weather.contains("晴")) {
+            return FALLBACK_HOT;
+        } else if (weather.contains("冷") || weather.contains("冬") || weather.contains("寒")) {
+            return FALLBACK_COLD;
+        } else if (weather.contains("雨")) {
+            return FALLBACK_RAIN;
+        }
+        return MATCH_ALL;
+    }
+
+    public static long festivalMask(String festival) {
+        if ("christmas".equalsIgnoreCase(festival) || "圣诞".equals(festival)) {
+            return FESTIVAL_CHRISTMAS;
+        } else if ("spring festival".equalsIgnoreCase(festival) || "春节".equals(festival)) {
+            return FESTIVAL_SPRING;
+        } else if ("valentine".equalsIgnoreCase(festival) || "情人节".equals(festival)) {
+            return FESTIVAL_VALENTINE;
+        }
+        return FESTIVAL_DEFAULT;
+    }
+
+    public static long seasonMask(String season) {
+        if ("spring".equals(season)) {
+            return SEASON_SPRING;
+        } else if ("summer".equals(season)) {
+            return SEASON_SUMMER;
+        } else if ("autumn".equals(season)) {
+            return SEASON_AUTUMN;
+        } else if ("winter".equals(season)) {
+            return SEASON_WINTER;
+        }
+        return MATCH_ALL;
+    }
+
+    public static long preferenceMask(String preference) {
+        if (preference == null || preference.isEmpty()) {
+            return MATCH_ALL;
+        }
+        if (preference.contains("甜")) {
+            return PREFERENCE_SWEET;
+        } else if (preference.contains("水果")) {
+            return PREFERENCE_FRUIT;
+        } else if (preference.contains("茶")) {
+            return PREFERENCE_TEA;
+        } else if (preference.contains("奶")) {
+            return PREFERENCE_MILK;
+        }
+        return MATCH_ALL;
+    }
+
+    public static long moodMask(String mood) {
+        if (mood == null || mood.isEmpty()) {
+            return MATCH_ALL;
+        }
+        if (mood.contains("开心") || mood.contains("高兴")) {
+            return MOOD_HAPPY;
+        } else if (mood.contains("疲惫") || mood.contains("累")) {
+            return MOOD_TIRED;
+        } else if (mood.contains("压力") || mood.contains("紧张")) {
+            return MOOD_STRESSED;
+        }
+        return MATCH_ALL;
+    }
+
+    // ============ 编译 ============
+
+    private CompiledFeatures current() {
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        CompiledFeatures features = compiled;
+        if (features == null || features.version != snapshot.getVersion()) {
+            features = compile(snapshot);
+            compiled = features;
+        }
+        return features;
+    }
+
+    private static CompiledFeatures compile(CatalogSnapshot snapshot) {
+        List<Product> products = snapshot.getAvailableProducts();
+        long[] masks = new long[products.size()];
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = compileProduct(products.get(i));
+        }
+        return new CompiledFeatures(snapshot.getVersion(), products, masks);
+    }
+
+    private static long compileProduct(Product product) {
+        String[] fields = new String[4];
+        fields[CATEGORY] = product.getCategory();
+        fields[TAGS] = lower(product.getTags());
+        fields[NAME] = lower(product.getName());
+        fields[DESCRIPTION] = lower(product.getDescription());
+
+        long mask = 0L;
+        for (int bit = 0; bit < FEATURE_KEYWORDS.size(); bit++) {
+            int field = FEATURE_FIELDS.get(bit);
+            String value = fields[field];
+            if (value == null) {
+                continue;
+            }
+            String keyword = FEATURE_KEYWORDS.get(bit);
+            boolean hit = field == CATEGORY ? value.equals(keyword) : value.contains(keyword);
+            if (hit) {
+                mask |= 1L << bit;
+            }
+        }
+        return mask;
+    }
+
+    private static String lower(String text) {
+        return text != null ? text.toLowerCase() : "";
+    }
+
+    private static long category(String value) {
+        return feature(CATEGORY, value);
+    }
+
+    private static long tags(String keyword) {
+        return feature(TAGS, keyword);
+    }
+
+    private static long name(String keyword) {
+        return feature(NAME, keyword);
+    }
+
+    private static long description(String keyword) {
+        return feature(DESCRIPTION, keyword);
+    }
+
+    // 同一 (字段, 关键字) 只分配一个位
+    private static long feature(int field, String keyword) {
+        for (int bit = 0; bit < FEATURE_KEYWORDS.size(); bit++) {
+            if (FEATURE_FIELDS.get(bit) == field && FEATURE_KEYWORDS.get(bit).equals(keyword)) {
+                return 1L << bit;
+            }
+        }
+        int bit = FEATURE_KEYWORDS.size();
+        if (bit >= Long.SIZE) {
+            throw new IllegalStateException("商品特征数量超过 " + Long.SIZE);
+        }
+        FEATURE_FIELDS.add(field);
+        FEATURE_KEYWORDS.add(keyword);
+        return 1L << bit;
+    }
+
+    private static final class CompiledFeatures {
+        private final long version;
+        private final List<Product> products;
+        private final long[] masks;
+
+        private CompiledFeatures(long version, List<Product> products, long[] masks) {
+            this.version = version;
+            this.products = Collections.unmodifiableList(products);
+            this.masks = masks;
+        }
+    }
+}
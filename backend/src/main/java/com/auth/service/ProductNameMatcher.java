@@ -0,0 +1,294 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * AI输出商品名称匹配
+ *
+ * 可用商品名称和常见别名（映射表）按字符二元组建倒排索引，先用共有二元组数找候选，
+ * 再结合编辑距离打分，返回最相似的商品和置信度。整个过程只读内存，不查数据库。
+ */
+@Component
+public class ProductNameMatcher {
+
+    // 二元组召回后只对前几名计算编辑距离
+    private static final int RERANK_SIZE = 8;
+
+    // ============ 商品名称映射表 - 解决AI推荐与数据库商品名称不匹配问题 ============
+    private static final Map<String, String> PRODUCT_NAME_MAPPING = createProductNameMapping();
+
+    private static Map<String, String> createProductNameMapping() {
+        Map<String, String> mapping = new HashMap<>();
+        // 添加常见的AI推荐名称到数据库商品名称的映射
+        mapping.put("经典珍珠奶茶", "经典珍珠奶茶");
+        mapping.put("珍珠奶茶", "经典珍珠奶茶");
+        mapping.put("冰爽芒果波波茶", "芒果冰沙");
+        mapping.put("芒果波波茶", "芒果冰沙");
+        mapping.put("暖心红糖姜茶", "雨天暖姜奶茶");
+        mapping.put("红糖姜茶", "雨天暖姜奶茶");
+        mapping.put("芝士奶盖草莓奶茶", "芝士奶盖红茶");
+        mapping.put("芝士草莓奶茶", "芝士奶盖红茶");
+        mapping.put("提神咖啡奶茶", "咖啡奶茶");
+        mapping.put("咖啡奶茶", "咖啡奶茶");
+        mapping.put("薰衣草奶茶", "春风茉莉花茶");
+        mapping.put("黑糖珍珠鲜奶", "黑糖珍珠奶茶");
+        mapping.put("百香果绿茶", "百香果绿茶");
+        mapping.put("四季春茶", "四季春茶");
+        mapping.put("冰爽柠檬茶", "柠檬绿茶");
+        mapping.put("柠檬绿茶", "柠檬绿茶");
+        mapping.put("芝士奶盖绿茶", "芝士奶盖红茶");
+        mapping.put("草莓多多", "草莓果茶");
+        mapping.put("芋圆奶茶", "芋圆奶茶");
+        mapping.put("红豆奶茶", "红豆奶茶");
+        mapping.put("布丁奶茶", "布丁奶茶");
+        mapping.put("椰果奶茶", "椰果奶茶");
+        mapping.put("仙草冻奶茶", "仙草冻奶茶");
+        mapping.put("抹茶拿铁", "抹茶拿铁");
+        mapping.put("巧克力奶茶", "巧克力奶茶");
+        mapping.put("芋泥波波茶", "芋圆奶茶");
+        mapping.put("葡萄多多", "葡萄多多");
+        mapping.put("桃子乌龙茶", "桃子乌龙");
+        return mapping;
+    }
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Value("${ai.recommendation.name-match.min-confidence:0.5}")
+    private double minConfidence;
+
+    private volatile NameIndex index;
+
+    /**
+     * 目录变更后重建名称索引
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        index = compile(event.getSnapshot());
+    }
+
+    /**
+     * 匹配商品名称，置信度低于阈值时返回 null
+     */
+    public Match match(String name) {
+        Match best = bestMatch(name);
+        return best != null && best.getConfidence() >= minConfidence ? best : null;
+    }
+
+    /**
+     * 返回最相似的商品，不做阈值过滤；没有任何共有字符时返回 null
+     */
+    public Match bestMatch(String name) {
+        String query = normalize(name);
+        if (query.isEmpty()) {
+            return null;
+        }
+        NameIndex current = current();
+
+        // 原名或别名完全一致
+        Integer exact = current.exact.get(query);
+        if (exact != null) {
+            Entry entry = current.entries.get(exact);
+            return new Match(entry.product, entry.alias ? 0.95 : 1.0, entry.name);
+        }
+
+        // 按共有二元组数召回候选
+        List<String> grams = grams(query);
+        int[] shared = new int[current.entries.size()];
+        List<Integer> touched = new ArrayList<>();
+        for (String gram : new HashSet<>(grams)) {
+            int[] posting = current.postings.get(gram);
+            if (posting == null) {
+                continue;
+            }
+            for (int id : posting) {
+                if (shared[id]++ == 0) {
+                    touched.add(id);
+                }
+            }
+        }
+        if (touched.isEmpty()) {
+            return null;
+        }
+        int queryGrams = new HashSet<>(grams).size();
+        touched.sort((a, b) -> Double.compare(
+                dice(shared[b], queryGrams, current.entries.get(b).gramCount),
+                dice(shared[a], queryGrams, current.entries.get(a).gramCount)));
+
+        // 二元组相似度与编辑距离相似度各占一半
+        Match best = null;
+        for (int i = 0; i < touched.size() && i < RERANK_SIZE; i++) {
+            Entry entry = current.entries.get(touched.get(i));
+            double score = 0.5 * dice(shared[touched.get(i)], queryGrams, entry.gramCount)
+                    + 0.5 * editSimilarity(query, entry.normalized);
+            if (entry.alias) {
+                score *= 0.95;
+            }
+            if (best == null || score > best.getConfidence()) {
+                best = new Match(entry.product, score, entry.name);
+            }
+        }
+        return best;
+    }
+
+    private NameIndex current() {
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        NameIndex current = index;
+        if (current == null || current.version != snapshot.getVersion()) {
+            current = compile(snapshot);
+            index = current;
+        }
+        return current;
+    }
+
+    private static NameIndex compile(CatalogSnapshot snapshot) {
+        List<Entry> entries = new ArrayList<>();
+        for (Product product : snapshot.getAvailableProducts()) {
+            if (product.getName() != null) {
+                entries.add(new Entry(product, product.getName(), false));
+            }
+        }
+        // 别名只在目标商品可用时生效
+        for (Map.Entry<String, String> alias : PRODUCT_NAME_MAPPING.entrySet()) {
+            Product target = snapshot.getAvailableProductByName(alias.getValue());
+            if (target != null && !alias.getKey().equals(target.getName())) {
+                entries.add(new Entry(target, alias.getKey(), true));
+            }
+        }
+
+        Map<String, Integer> exact = new HashMap<>();
+        Map<String, List<Integer>> postingLists = new HashMap<>();
+        for (int id = 0; id < entries.size(); id++) {
+            Entry entry = entries.get(id);
+            // 商品原名优先于别名
+            exact.putIfAbsent(entry.normalized, id);
+            for (String gram : new HashSet<>(grams(entry.normalized))) {
+                postingLists.computeIfAbsent(gram, k -> new ArrayList<>()).add(id);
+            }
+        }
+        Map<String, int[]> postings = new HashMap<>(postingLists.size() * 2);
+        for (Map.Entry<String, List<Integer>> posting : postingLists.entrySet()) {
+            postings.put(posting.getKey(), posting.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return new NameIndex(snapshot.getVersion(), entries, exact, postings);
+    }
+
+    // 去掉空白、标点和常见括号，统一小写
+    private static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    // 单字名称用单字本身作为唯一的“二元组”
+    private static List<String> grams(String text) {
+        List<String> grams = new ArrayList<>();
+        if (text.length() == 1) {
+            grams.add(text);
+            return grams;
+        }
+        for (int i = 0; i + 1 < text.length(); i++) {
+            grams.add(text.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private static double dice(int shared, int queryGrams, int entryGrams) {
+        return 2.0 * shared / (queryGrams + entryGrams);
+    }
+
+    private static double editSimilarity(String a, String b) {
+        int longest = Math.max(a.length(), b.length());
+        return longest == 0 ? 1.0 : 1.0 - (double) levenshtein(a, b) / longest;
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * 匹配结果
+     */
+    public static final class Match {
+        private final Product product;
+        private final double confidence;
+        private final String matchedName;
+
+        private Match(Product product, double confidence, String matchedName) {
+            this.product = product;
+            this.confidence = confidence;
+            this.matchedName = matchedName;
+        }
+
+        public Product getProduct() { return product; }
+
+        /**
+         * 置信度，0~1；原名完全一致为 1
+         */
+        public double getConfidence() { return confidence; }
+
+        /**
+         * 命中的商品名或别名
+         */
+        public String getMatchedName() { return matchedName; }
+    }
+
+    private static final class Entry {
+        private final Product product;
+        private final String name;
+        private final String normalized;
+        private final int gramCount;
+        private final boolean alias;
+
+        private Entry(Product product, String name, boolean alias) {
+            this.product = product;
+            this.name = name;
+            this.normalized = normalize(name);
+            this.gramCount = new HashSet<>(grams(normalized)).size();
+            this.alias = alias;
+        }
+    }
+
+    private static final class NameIndex {
+        private final long version;
+        private final List<Entry> entries;
+        private final Map<String, Integer> exact;
+        private final Map<String, int[]> postings;
+
+        private NameIndex(long version, List<Entry> entries, Map<String, Integer> exact, Map<String, int[]> postings) {
+            this.version = version;
+            this.entries = entries;
+            this.exact = exact;
+            this.postings = postings;
+        }
+    }
+}
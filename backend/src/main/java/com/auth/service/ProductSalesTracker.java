@@ -0,0 +1,224 @@
+package com.auth.service;
+
+import com.auth.repository.OrderItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 商品销量热度统计
+ *
+ * 每个商品按 1小时/24小时/7天 三个时间常数维护指数衰减的销量，更新用 CAS 无锁完成。
+ * 衰减对所有商品等比例生效，商品间的相对排序只在有新销量时变化，
+ * 因此每个窗口的 Top-K 只需在记录销量时调整，读取时不做任何聚合。
+ * 订单取消时按下单时刻扣回销量，热度下降可能让 Top-K 之外的商品进入，此时按全部计数重排。
+ */
+@Component
+public class ProductSalesTracker {
+
+    public static final int WINDOW_HOUR = 0;
+    public static final int WINDOW_DAY = 1;
+    public static final int WINDOW_WEEK = 2;
+
+    // 各窗口的衰减时间常数（秒）
+    private static final double[] TAU_SECONDS = {3600, 86400, 7 * 86400};
+
+    // 每个窗口保留的候选数量，读取时再过滤下架商品
+    private static final int TOP_K_CAPACITY = 50;
+
+    private static final double MIN_SCORE = 1e-9;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    private final ConcurrentHashMap<Long, AtomicReference<DecayedCounts>> counters = new ConcurrentHashMap<>();
+
+    // 每个窗口的 Top-K 商品ID，按热度降序；整体替换，读取无锁
+    private final AtomicReferenceArray<long[]> topK = new AtomicReferenceArray<>(
+            new long[][]{new long[0], new long[0], new long[0]});
+
+    /**
+     * 启动时用最近7天的订单明细预热计数器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            LocalDateTime since = LocalDateTime.now().minusDays(7);
+            List<Object[]> rows = orderItemRepository.findSalesSince(since);
+            for (Object[] row : rows) {
+                Long productId = (Long) row[0];
+                Integer quantity = (Integer) row[1];
+                LocalDateTime orderDate = (LocalDateTime) row[2];
+                long ageMillis = Math.max(0, Duration.between(orderDate, LocalDateTime.now()).toMillis());
+                record(productId, quantity, System.currentTimeMillis() - ageMillis);
+            }
+            System.out.println("商品销量热度已预热，订单明细 " + rows.size() + " 条");
+        } catch (Exception e) {
+            System.err.println("预热商品销量热度失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 记录一笔销量
+     */
+    public void record(Long productId, int quantity) {
+        record(productId, quantity, System.currentTimeMillis());
+    }
+
+    /**
+     * 按下单时刻记录一笔销量（取消的订单恢复时调用）
+     */
+    public void record(Long productId, int quantity, long orderedAtMillis) {
+        if (productId == null || quantity <= 0) {
+            return;
+        }
+        update(productId, quantity, orderedAtMillis);
+        for (int window = 0; window < TAU_SECONDS.length; window++) {
+            updateTopK(window, productId);
+        }
+    }
+
+    /**
+     * 扣回一笔已取消订单的销量，orderedAtMillis 为下单时刻
+     */
+    public void retract(Long productId, int quantity, long orderedAtMillis) {
+        if (productId == null || quantity <= 0 || !counters.containsKey(productId)) {
+            return;
+        }
+        update(productId, -quantity, orderedAtMillis);
+        for (int window = 0; window < TAU_SECONDS.length; window++) {
+            rebuildTopK(window);
+        }
+    }
+
+    /**
+     * 返回某个窗口内最热的商品ID，按热度降序
+     */
+    public List<Long> getTopProductIds(int window, int limit) {
+        long[] ids = topK.get(window);
+        List<Long> result = new ArrayList<>(Math.min(limit, ids.length));
+        for (int i = 0; i < ids.length && result.size() < limit; i++) {
+            result.add(ids[i]);
+        }
+        return result;
+    }
+
+    /**
+     * 某商品在某窗口内的当前衰减销量
+     */
+    public double getScore(Long productId, int window) {
+        AtomicReference<DecayedCounts> ref = counters.get(productId);
+        return ref == null ? 0.0 : ref.get().valueAt(window, System.currentTimeMillis());
+    }
+
+    private void update(Long productId, int quantity, long atMillis) {
+        AtomicReference<DecayedCounts> ref = counters.computeIfAbsent(productId,
+                id -> new AtomicReference<>(DecayedCounts.EMPTY));
+        DecayedCounts current;
+        DecayedCounts updated;
+        do {
+            current = ref.get();
+            updated = current.add(quantity, atMillis);
+        } while (!ref.compareAndSet(current, updated));
+    }
+
+    // 按全部商品的当前热度重排某个窗口的 Top-K
+    private synchronized void rebuildTopK(int window) {
+        long now = System.currentTimeMillis();
+        Map<Long, Double> scores = new HashMap<>();
+        counters.forEach((id, ref) -> {
+            double score = ref.get().valueAt(window, now);
+            // 全部扣回的商品只剩浮点误差，不算在榜
+            if (score > MIN_SCORE) {
+                scores.put(id, score);
+            }
+        });
+        List<Long> candidates = new ArrayList<>(scores.keySet());
+        candidates.sort((a, b) -> {
+            int byScore = Double.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : Long.compare(a, b);
+        });
+
+        int size = Math.min(TOP_K_CAPACITY, candidates.size());
+        long[] next = new long[size];
+        for (int i = 0; i < size; i++) {
+            next[i] = candidates.get(i);
+        }
+        topK.set(window, next);
+    }
+
+    // 只有被记录的商品热度上升，把它和现有 Top-K 放在同一时刻比较即可
+    private synchronized void updateTopK(int window, long productId) {
+        long now = System.currentTimeMillis();
+        long[] current = topK.get(window);
+        List<Long> candidates = new ArrayList<>(current.length + 1);
+        for (long id : current) {
+            if (id != productId) {
+                candidates.add(id);
+            }
+        }
+        candidates.add(productId);
+
+        Map<Long, Double> scores = new HashMap<>();
+        for (Long id : candidates) {
+            AtomicReference<DecayedCounts> ref = counters.get(id);
+            scores.put(id, ref == null ? 0.0 : ref.get().valueAt(window, now));
+        }
+        candidates.sort((a, b) -> {
+            int byScore = Double.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : Long.compare(a, b);
+        });
+
+        int size = Math.min(TOP_K_CAPACITY, candidates.size());
+        long[] next = new long[size];
+        for (int i = 0; i < size; i++) {
+            next[i] = candidates.get(i);
+        }
+        topK.set(window, next);
+    }
+
+    /**
+     * 某一时刻各窗口的衰减销量，不可变，整体 CAS 替换
+     */
+    private static final class DecayedCounts {
+        private static final DecayedCounts EMPTY = new DecayedCounts(new double[TAU_SECONDS.length], 0L);
+
+        private final double[] values;
+        private final long updatedAt;
+
+        private DecayedCounts(double[] values, long updatedAt) {
+            this.values = values;
+            this.updatedAt = updatedAt;
+        }
+
+        private DecayedCounts add(int quantity, long atMillis) {
+            // 预热时可能出现早于上次更新的记录，统一折算到较晚的时刻
+            long base = Math.max(updatedAt, atMillis);
+            double[] next = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                // 扣回取消订单时浮点误差可能略低于 0
+                next[i] = Math.max(0.0, decay(values[i], base - updatedAt, i) + decay(quantity, base - atMillis, i));
+            }
+            return new DecayedCounts(next, base);
+        }
+
+        private double valueAt(int window, long nowMillis) {
+            return decay(values[window], Math.max(0, nowMillis - updatedAt), window);
+        }
+
+        private static double decay(double value, long elapsedMillis, int window) {
+            if (value == 0.0 || elapsedMillis <= 0) {
+                return value;
+            }
+            return value * Math.exp(-elapsedMillis / 1000.0 / TAU_SECONDS[window]);
+        }
+    }
+}
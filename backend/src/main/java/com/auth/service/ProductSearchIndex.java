@@ -0,0 +1,220 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 商品搜索倒排索引
+ *
+ * 对名称、描述、标签做中文二元组+ASCII词切分，随目录变更事件增量维护，
+ * 替代 LIKE %kw% 全表扫描。ASCII 查询词同时按前缀匹配（如 lat 匹配 latte），
+ * 前缀命中的权重打折；词中间的片段（如 atte）不再能匹配。
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float TAGS_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    // 名称包含完整关键字时的加分
+    private static final float NAME_CONTAINS_BOOST = 10.0f;
+    private static final float NAME_PREFIX_BOOST = 5.0f;
+
+    // ASCII 查询词只按前缀命中时的权重折扣
+    private static final float TERM_PREFIX_FACTOR = 0.5f;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 词项 -> (商品ID -> 字段权重和)
+    private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+
+    // 正排：商品ID -> 已索引词项，用于增量删除
+    private final Map<Long, Set<String>> termsByProduct = new HashMap<>();
+
+    private final Map<Long, String> lowerNames = new HashMap<>();
+
+    // 有序的 ASCII 词典，前缀查询按范围取出
+    private final TreeSet<String> asciiTerms = new TreeSet<>();
+
+    /**
+     * 目录变更时更新索引：全量重建或只处理变更的商品
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        CatalogSnapshot snapshot = event.getSnapshot();
+        lock.writeLock().lock();
+        try {
+            if (event.isFullReload()) {
+                postings.clear();
+                asciiTerms.clear();
+                termsByProduct.clear();
+                lowerNames.clear();
+                for (Product product : snapshot.getAvailableProducts()) {
+                    addProduct(product);
+                }
+                return;
+            }
+
+            for (Long productId : event.getChangedProductIds()) {
+                removeProduct(productId);
+                Product product = snapshot.getProduct(productId);
+                if (product != null && Boolean.TRUE.equals(product.getAvailable())) {
+                    addProduct(product);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索可用商品，按相关度降序返回商品ID
+     *
+     * 优先返回包含全部查询词项的商品；没有时退化为部分匹配排序。
+     */
+    public List<Long> search(String keyword, int limit) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> queryTerms = ProductTextTokenizer.queryTokens(keyword);
+        if (queryTerms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = Math.max(termsByProduct.size(), 1);
+            Map<Long, ScoredProduct> candidates = new HashMap<>();
+
+            for (String term : queryTerms) {
+                // 同一查询词命中多个词项时每个商品只取最高得分
+                Map<Long, Float> termScores = new HashMap<>();
+                for (String matched : matchingTerms(term)) {
+                    Map<Long, Float> posting = postings.get(matched);
+                    float idf = (float) Math.log(1.0 + (double) documentCount / posting.size());
+                    float factor = matched.equals(term) ? 1.0f : TERM_PREFIX_FACTOR;
+                    for (Map.Entry<Long, Float> entry : posting.entrySet()) {
+                        termScores.merge(entry.getKey(), entry.getValue() * idf * factor, Math::max);
+                    }
+                }
+                for (Map.Entry<Long, Float> entry : termScores.entrySet()) {
+                    ScoredProduct scored = candidates.get(entry.getKey());
+                    if (scored == null) {
+                        scored = new ScoredProduct(entry.getKey());
+                        candidates.put(entry.getKey(), scored);
+                    }
+                    scored.score += entry.getValue();
+                    scored.matchedTerms++;
+                }
+            }
+
+            boolean anyFullMatch = false;
+            for (ScoredProduct scored : candidates.values()) {
+                if (scored.matchedTerms == queryTerms.size()) {
+                    anyFullMatch = true;
+                    break;
+                }
+            }
+
+            String lowerKeyword = keyword.trim().toLowerCase();
+            List<ScoredProduct> results = new ArrayList<>();
+            for (ScoredProduct scored : candidates.values()) {
+                if (anyFullMatch && scored.matchedTerms < queryTerms.size()) {
+                    continue;
+                }
+                String name = lowerNames.get(scored.productId);
+                if (name != null && name.contains(lowerKeyword)) {
+                    scored.score += name.startsWith(lowerKeyword) ? NAME_CONTAINS_BOOST + NAME_PREFIX_BOOST
+                            : NAME_CONTAINS_BOOST;
+                }
+                results.add(scored);
+            }
+
+            results.sort((a, b) -> {
+                int byScore = Float.compare(b.score, a.score);
+                return byScore != 0 ? byScore : Long.compare(a.productId, b.productId);
+            });
+
+            List<Long> ids = new ArrayList<>(Math.min(limit, results.size()));
+            for (ScoredProduct scored : results) {
+                if (ids.size() >= limit) {
+                    break;
+                }
+                ids.add(scored.productId);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 中文词项精确匹配；ASCII 词项匹配自身及所有以它为前缀的词项
+    private List<String> matchingTerms(String term) {
+        if (!isAscii(term)) {
+            return postings.containsKey(term) ? Collections.singletonList(term) : Collections.emptyList();
+        }
+        return new ArrayList<>(asciiTerms.subSet(term, true, term + Character.MAX_VALUE, false));
+    }
+
+    private static boolean isAscii(String term) {
+        return term.charAt(0) < 128;
+    }
+
+    private void addProduct(Product product) {
+        Map<String, Float> weights = new HashMap<>();
+        accumulate(weights, product.getName(), NAME_WEIGHT);
+        accumulate(weights, product.getTags(), TAGS_WEIGHT);
+        accumulate(weights, product.getDescription(), DESCRIPTION_WEIGHT);
+
+        for (Map.Entry<String, Float> entry : weights.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(product.getId(), entry.getValue());
+            if (isAscii(entry.getKey())) {
+                asciiTerms.add(entry.getKey());
+            }
+        }
+        termsByProduct.put(product.getId(), weights.keySet());
+        if (product.getName() != null) {
+            lowerNames.put(product.getId(), product.getName().toLowerCase());
+        }
+    }
+
+    private void removeProduct(Long productId) {
+        Set<String> terms = termsByProduct.remove(productId);
+        lowerNames.remove(productId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(productId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                    asciiTerms.remove(term);
+                }
+            }
+        }
+    }
+
+    // 同一字段内的重复词项只计一次
+    private void accumulate(Map<String, Float> weights, String text, float fieldWeight) {
+        for (String token : new HashSet<>(ProductTextTokenizer.indexTokens(text))) {
+            weights.merge(token, fieldWeight, Float::sum);
+        }
+    }
+
+    private static final class ScoredProduct {
+        private final long productId;
+        private float score;
+        private int matchedTerms;
+
+        private ScoredProduct(long productId) {
+            this.productId = productId;
+        }
+    }
+}
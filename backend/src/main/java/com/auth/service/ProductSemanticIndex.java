@@ -0,0 +1,248 @@
+package com.auth.service;
+
+import com.auth.dto.RecommendationRequest;
+import com.auth.entity.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 本地语义检索索引（离线，不依赖外部模型）
+ *
+ * 商品名称、分类、标签、描述按字符一元/二元组做特征哈希，乘以按目录统计的 IDF 权重后归一化，
+ * 所有商品向量存成一个连续的 float 矩阵；查询时把口味、天气、心情的自由文本用同样方式向量化，
+ * 对矩阵逐行做点积（即余弦相似度）取最近的商品。AI不可用时代替关键字规则做回退推荐。
+ */
+@Component
+public class ProductSemanticIndex {
+
+    private static final int DIMENSIONS = 1024;
+
+    // 各字段在商品向量中的权重
+    private static final float NAME_WEIGHT = 2.0f;
+    private static final float TAGS_WEIGHT = 1.5f;
+    private static final float CATEGORY_WEIGHT = 1.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    // 相似度低于最相近商品这个比例的结果多半是哈希冲突或常见字带来的噪声，不返回
+    private static final float RELATIVE_CUTOFF = 0.75f;
+
+    // 口语化描述与商品用词之间的桥接词，只作用于查询
+    private static final Map<String, String> QUERY_EXPANSIONS = createQueryExpansions();
+
+    private static Map<String, String> createQueryExpansions() {
+        Map<String, String> expansions = new LinkedHashMap<>();
+        expansions.put("热", "清爽 冰沙 冰爽");
+        expansions.put("晴", "清爽 果茶");
+        expansions.put("夏", "冰沙 清爽 果茶");
+        expansions.put("冷", "暖饮 热饮 温暖");
+        expansions.put("寒", "暖饮 热饮 姜");
+        expansions.put("冬", "热饮 暖饮 巧克力");
+        expansions.put("雪", "热饮 巧克力");
+        expansions.put("雨", "暖饮 姜");
+        expansions.put("累", "提神 咖啡 能量");
+        expansions.put("困", "提神 咖啡");
+        expansions.put("疲惫", "提神 咖啡 能量");
+        expansions.put("压力", "放松 舒缓 花茶");
+        expansions.put("紧张", "放松 舒缓");
+        expansions.put("开心", "甜蜜 庆祝");
+        expansions.put("高兴", "甜蜜 庆祝");
+        expansions.put("甜", "糖 蜜 甜蜜");
+        expansions.put("清淡", "茶 清香");
+        return expansions;
+    }
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    private volatile VectorMatrix matrix;
+
+    /**
+     * 目录变更后重新计算商品向量
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        matrix = compile(event.getSnapshot());
+    }
+
+    /**
+     * 按口味偏好、天气、心情找最相近的商品；请求里没有任何文本时返回空列表
+     */
+    public List<Product> nearest(RecommendationRequest request, int limit) {
+        VectorMatrix current = current();
+        float[] query = new float[DIMENSIONS];
+        addQuery(query, request.getUserPreference(), 1.0f, current.idf);
+        addQuery(query, request.getWeather(), 0.8f, current.idf);
+        addQuery(query, request.getMood(), 0.8f, current.idf);
+        return search(current, query, limit);
+    }
+
+    /**
+     * 按任意文本找最相近的商品
+     */
+    public List<Product> nearest(String text, int limit) {
+        VectorMatrix current = current();
+        float[] query = new float[DIMENSIONS];
+        addQuery(query, text, 1.0f, current.idf);
+        return search(current, query, limit);
+    }
+
+    private static List<Product> search(VectorMatrix current, float[] query, int limit) {
+        if (!normalize(query) || current.products.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 逐行点积，矩阵按行连续存放
+        int n = current.products.size();
+        float[] scores = new float[n];
+        float[] vectors = current.vectors;
+        for (int row = 0, offset = 0; row < n; row++, offset += DIMENSIONS) {
+            float dot = 0;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                dot += vectors[offset + d] * query[d];
+            }
+            scores[row] = dot;
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        List<Product> result = new ArrayList<>(Math.min(limit, n));
+        float cutoff = scores[order[0]] * RELATIVE_CUTOFF;
+        for (int i = 0; i < n && result.size() < limit && scores[order[i]] > 0 && scores[order[i]] >= cutoff; i++) {
+            result.add(current.products.get(order[i]));
+        }
+        return result;
+    }
+
+    private VectorMatrix current() {
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        VectorMatrix current = matrix;
+        if (current == null || current.version != snapshot.getVersion()) {
+            current = compile(snapshot);
+            matrix = current;
+        }
+        return current;
+    }
+
+    private static VectorMatrix compile(CatalogSnapshot snapshot) {
+        List<Product> products = snapshot.getAvailableProducts();
+        int n = products.size();
+        float[] vectors = new float[n * DIMENSIONS];
+
+        // 先得到原始词频向量，同时统计每个维度出现在多少个商品中
+        int[] documentFrequency = new int[DIMENSIONS];
+        for (int row = 0; row < n; row++) {
+            Product product = products.get(row);
+            float[] raw = new float[DIMENSIONS];
+            addText(raw, product.getName(), NAME_WEIGHT);
+            addText(raw, product.getTags(), TAGS_WEIGHT);
+            addText(raw, product.getCategory(), CATEGORY_WEIGHT);
+            addText(raw, product.getDescription(), DESCRIPTION_WEIGHT);
+            for (int d = 0; d < DIMENSIONS; d++) {
+                if (raw[d] != 0) {
+                    documentFrequency[d]++;
+                }
+            }
+            System.arraycopy(raw, 0, vectors, row * DIMENSIONS, DIMENSIONS);
+        }
+
+        // 所有商品都有的字（如“茶”“奶”）区分度低，按 IDF 降权
+        float[] idf = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            idf[d] = (float) (Math.log((n + 1.0) / (documentFrequency[d] + 1.0)) + 1.0);
+        }
+        float[] row = new float[DIMENSIONS];
+        for (int r = 0, offset = 0; r < n; r++, offset += DIMENSIONS) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                row[d] = vectors[offset + d] * idf[d];
+            }
+            normalize(row);
+            System.arraycopy(row, 0, vectors, offset, DIMENSIONS);
+        }
+        return new VectorMatrix(snapshot.getVersion(), products, vectors, idf);
+    }
+
+    private static void addQuery(float[] query, String text, float weight, float[] idf) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        float[] raw = new float[DIMENSIONS];
+        addText(raw, text, 1.0f);
+        for (Map.Entry<String, String> expansion : QUERY_EXPANSIONS.entrySet()) {
+            if (text.contains(expansion.getKey())) {
+                addText(raw, expansion.getValue(), 0.5f);
+            }
+        }
+        // 每个字段先单独归一化，避免长文本压过其他条件
+        for (int d = 0; d < DIMENSIONS; d++) {
+            raw[d] *= idf[d];
+        }
+        if (normalize(raw)) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                query[d] += raw[d] * weight;
+            }
+        }
+    }
+
+    // 字符一元组和二元组哈希到固定维度，标点和空白作为分隔
+    private static void addText(float[] vector, String text, float weight) {
+        if (text == null) {
+            return;
+        }
+        char previous = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (!Character.isLetterOrDigit(c)) {
+                previous = 0;
+                continue;
+            }
+            addFeature(vector, c, weight);
+            if (previous != 0) {
+                addFeature(vector, previous * 31 + c + 0x10000, weight);
+            }
+            previous = c;
+        }
+    }
+
+    // 符号哈希：冲突的特征有一半概率互相抵消而不是叠加
+    private static void addFeature(float[] vector, int feature, float weight) {
+        int hash = feature * 0x9E3779B1;
+        hash ^= hash >>> 15;
+        int bucket = (hash & 0x7fffffff) % DIMENSIONS;
+        vector[bucket] += (hash & 0x80000000) == 0 ? weight : -weight;
+    }
+
+    private static boolean normalize(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum == 0) {
+            return false;
+        }
+        float scale = (float) (1.0 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return true;
+    }
+
+    private static final class VectorMatrix {
+        private final long version;
+        private final List<Product> products;
+        private final float[] vectors;
+        private final float[] idf;
+
+        private VectorMatrix(long version, List<Product> products, float[] vectors, float[] idf) {
+            this.version = version;
+            this.products = products;
+            this.vectors = vectors;
+            this.idf = idf;
+        }
+    }
+}
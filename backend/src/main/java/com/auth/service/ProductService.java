@@ -1,36 +1,78 @@
 package com.auth.service;
 
+import com.auth.dto.BulkProductResultDTO;
+import com.auth.dto.CursorPage;
+import com.auth.dto.PageCursor;
 import com.auth.dto.ProductDTO;
+import com.auth.dto.ProductFacetResultDTO;
 import com.auth.entity.Product;
 import com.auth.repository.ProductRepository;
 import com.auth.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @Transactional
 public class ProductService {
 
+    // 批量导入单次请求的最大行数，以及每批校验/写入的行数
+    public static final int BULK_MAX_ROWS = 10000;
+    private static final int BULK_CHUNK_SIZE = 500;
+
+    private static final String BULK_INSERT_SQL =
+            "INSERT INTO products (name, description, price, category, emoji, tags, is_available, image_url, " +
+            "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // 只覆盖请求中提供的字段，与 updateProduct 的语义一致
+    private static final String BULK_UPDATE_SQL =
+            "UPDATE products SET description = COALESCE(?, description), price = COALESCE(?, price), " +
+            "category = COALESCE(?, category), emoji = COALESCE(?, emoji), tags = COALESCE(?, tags), " +
+            "is_available = COALESCE(?, is_available), image_url = COALESCE(?, image_url), updated_at = ? " +
+            "WHERE id = ?";
+
     @Autowired
     private ProductRepository productRepository;
 
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductSalesTracker productSalesTracker;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     /**
-     * 获取所有商品
+     * 获取所有商品（读快照，不开启数据库事务）
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<ProductDTO> getAllProducts() {
         try {
-            List<Product> products = productRepository.findByAvailableTrue();
+            List<Product> products = catalogSnapshotService.getSnapshot().getAvailableProducts();
             return products.stream()
                     .map(this::convertToDTO)
                     .collect(Collectors.toList());
@@ -39,12 +81,66 @@ public class ProductService {
         }
     }
 
+    /**
+     * 键集分页获取商品，按ID升序
+     *
+     * 快照中的可用商品已按ID排序，二分定位游标位置，不访问数据库。
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CursorPage<ProductDTO> getProductsPage(String cursor, Integer size) {
+        int pageSize = CursorPage.normalizeSize(size);
+        PageCursor after = PageCursor.decode(cursor);
+        try {
+            List<Product> products = catalogSnapshotService.getSnapshot().getAvailableProducts();
+            int from = after == null ? 0 : firstIndexAfter(products, after.getId());
+            int to = Math.min(products.size(), from + pageSize + 1);
+            return CursorPage.fromSlice(products.subList(from, to), pageSize, this::convertToDTO,
+                    product -> PageCursor.ofId(product.getId()));
+        } catch (Exception e) {
+            throw new RuntimeException("获取商品列表失败: " + e.getMessage(), e);
+        }
+    }
+
+    // 在按ID升序的列表中找到第一个ID大于afterId的位置
+    private int firstIndexAfter(List<Product> products, long afterId) {
+        int low = 0;
+        int high = products.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (products.get(mid).getId() <= afterId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 分面筛选：分类、价格区间、标签组合查询，同时返回各分面计数
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ProductFacetResultDTO filterProducts(List<String> categories, List<String> priceBands,
+                                                List<String> tags, int limit) {
+        try {
+            ProductFacetIndex.FacetResult result = productFacetIndex.query(categories, priceBands, tags, limit);
+            List<ProductDTO> products = result.getProducts().stream()
+                    .map(this::convertToDTO)
+                    .collect(Collectors.toList());
+            return new ProductFacetResultDTO(products, result.getTotal(), result.getCategoryCounts(),
+                    result.getPriceBandCounts(), result.getTagCounts());
+        } catch (Exception e) {
+            throw new RuntimeException("筛选商品失败: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * 根据分类获取商品
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<ProductDTO> getProductsByCategory(String category) {
         try {
-            List<Product> products = productRepository.findByCategoryAndAvailableTrue(category);
+            List<Product> products = catalogSnapshotService.getSnapshot().getAvailableProductsByCategory(category);
             return products.stream()
                     .map(this::convertToDTO)
                     .collect(Collectors.toList());
@@ -56,29 +152,31 @@ public class ProductService {
     /**
      * 根据ID获取商品
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public ProductDTO getProductById(Long id) {
         try {
-            Optional<Product> product = productRepository.findById(id);
-            return product.map(this::convertToDTO).orElse(null);
+            Product product = catalogSnapshotService.getSnapshot().getProduct(id);
+            return product != null ? convertToDTO(product) : null;
         } catch (Exception e) {
             throw new RuntimeException("获取商品失败: " + e.getMessage(), e);
         }
     }
 
     /**
-     * 搜索商品 - 修复：使用Repository中存在的方法
+     * 搜索商品 - 基于内存倒排索引，按相关度排序
      */
-    public List<ProductDTO> searchProducts(String keyword) {
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<ProductDTO> searchProducts(String keyword, int limit) {
         try {
-            // 使用Repository中存在的findByNameContainingIgnoreCase方法
-            List<Product> products = productRepository.findByNameContainingIgnoreCase(keyword);
-            // 过滤可用商品
-            products = products.stream()
-                    .filter(Product::getAvailable)
-                    .collect(Collectors.toList());
-            return products.stream()
-                    .map(this::convertToDTO)
-                    .collect(Collectors.toList());
+            CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+            List<ProductDTO> results = new ArrayList<>();
+            for (Long productId : productSearchIndex.search(keyword, limit)) {
+                Product product = snapshot.getProduct(productId);
+                if (product != null && Boolean.TRUE.equals(product.getAvailable())) {
+                    results.add(convertToDTO(product));
+                }
+            }
+            return results;
         } catch (Exception e) {
             throw new RuntimeException("搜索商品失败: " + e.getMessage(), e);
         }
@@ -105,6 +203,7 @@ public class ProductService {
             product.setAvailable(true);
 
             Product savedProduct = productRepository.save(product);
+            catalogSnapshotService.productsSaved(savedProduct);
             return convertToDTO(savedProduct);
         } catch (RuntimeException e) {
             throw e; // 直接抛出业务异常
@@ -113,6 +212,195 @@ public class ProductService {
         }
     }
 
+    /**
+     * 批量导入/更新商品（管理员）- 按名称匹配，已存在则更新，否则新增
+     *
+     * 每批只用一次查询校验名称、一次查询校验分类，写入走 JDBC 批处理；
+     * 单行校验失败不影响其他行，逐行返回结果。整批被数据库拒绝时逐行重试，只有被拒绝的行标记为失败。
+     */
+    public BulkProductResultDTO bulkUpsertProducts(List<ProductDTO> rows) {
+        try {
+            BulkProductResultDTO.RowResult[] results = new BulkProductResultDTO.RowResult[rows.size()];
+            Set<String> seenNames = new HashSet<>();
+            for (int start = 0; start < rows.size(); start += BULK_CHUNK_SIZE) {
+                upsertChunk(rows, start, Math.min(rows.size(), start + BULK_CHUNK_SIZE), seenNames, results);
+            }
+
+            BulkProductResultDTO summary = new BulkProductResultDTO();
+            summary.setTotal(rows.size());
+            summary.setRows(Arrays.asList(results));
+            for (BulkProductResultDTO.RowResult row : results) {
+                if ("created".equals(row.getStatus())) {
+                    summary.setCreated(summary.getCreated() + 1);
+                } else if ("updated".equals(row.getStatus())) {
+                    summary.setUpdated(summary.getUpdated() + 1);
+                } else {
+                    summary.setFailed(summary.getFailed() + 1);
+                }
+            }
+
+            if (summary.getCreated() + summary.getUpdated() > 0) {
+                catalogSnapshotService.productsBulkChanged();
+            }
+            return summary;
+        } catch (Exception e) {
+            throw new RuntimeException("批量导入商品失败: " + e.getMessage(), e);
+        }
+    }
+
+    private void upsertChunk(List<ProductDTO> rows, int from, int to, Set<String> seenNames,
+                             BulkProductResultDTO.RowResult[] results) {
+        // 先做不需要查库的校验，收集本批名称和分类
+        Set<String> names = new HashSet<>();
+        Set<String> categories = new HashSet<>();
+        for (int i = from; i < to; i++) {
+            ProductDTO row = rows.get(i);
+            String error = validateBulkRow(row);
+            if (error == null && !seenNames.add(row.getName())) {
+                error = "请求中商品名称重复: " + row.getName();
+            }
+            if (error != null) {
+                results[i] = failedRow(i, row, error);
+                continue;
+            }
+            names.add(row.getName());
+            if (row.getCategory() != null) {
+                categories.add(row.getCategory());
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> existingIds = findIdsByNames(names);
+        Set<String> existingCategories = categories.isEmpty()
+                ? new HashSet<>() : new HashSet<>(categoryRepository.findExistingNames(categories));
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> inserts = new ArrayList<>();
+        List<Integer> insertRows = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<Integer> updateRows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            ProductDTO row = rows.get(i);
+            if (row.getCategory() != null && !existingCategories.contains(row.getCategory())) {
+                results[i] = failedRow(i, row, "分类不存在: " + row.getCategory());
+                continue;
+            }
+
+            Long existingId = existingIds.get(row.getName());
+            if (existingId != null) {
+                updates.add(new Object[]{row.getDescription(), row.getPrice(), row.getCategory(), row.getEmoji(),
+                        row.getTags(), row.getAvailable(), row.getImageUrl(), now, existingId});
+                updateRows.add(i);
+                results[i] = new BulkProductResultDTO.RowResult(i, row.getName(), existingId, "updated", null);
+            } else if (row.getPrice() == null || row.getCategory() == null) {
+                results[i] = failedRow(i, row, "新增商品必须提供价格和分类");
+            } else {
+                inserts.add(new Object[]{row.getName(), row.getDescription(), row.getPrice(), row.getCategory(),
+                        row.getEmoji(), row.getTags(), row.getAvailable() != null ? row.getAvailable() : Boolean.TRUE,
+                        row.getImageUrl(), now, now});
+                insertRows.add(i);
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(BULK_UPDATE_SQL, updates);
+            } catch (DataAccessException e) {
+                // 更新可以重复执行，逐行重试找出被拒绝的行
+                for (int k = 0; k < updates.size(); k++) {
+                    int i = updateRows.get(k);
+                    try {
+                        jdbcTemplate.update(BULK_UPDATE_SQL, updates.get(k));
+                    } catch (DataAccessException rowError) {
+                        results[i] = failedRow(i, rows.get(i), "写入失败: " + rowError.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+        }
+        if (!inserts.isEmpty()) {
+            Set<String> insertedNames = new HashSet<>();
+            for (Integer i : insertRows) {
+                insertedNames.add(rows.get(i).getName());
+            }
+            try {
+                jdbcTemplate.batchUpdate(BULK_INSERT_SQL, inserts);
+            } catch (DataAccessException e) {
+                // 驱动可能已写入失败行之外的部分行，按名称回查后只重试尚未写入的行，避免重复插入
+                Map<String, Long> written = findIdsByNames(insertedNames);
+                for (int k = 0; k < inserts.size(); k++) {
+                    int i = insertRows.get(k);
+                    if (written.containsKey(rows.get(i).getName())) {
+                        continue;
+                    }
+                    try {
+                        jdbcTemplate.update(BULK_INSERT_SQL, inserts.get(k));
+                    } catch (DataAccessException rowError) {
+                        results[i] = failedRow(i, rows.get(i), "写入失败: " + rowError.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+
+            // 批处理拿不到逐行自增主键，按名称回查一次
+            Map<String, Long> insertedIds = findIdsByNames(insertedNames);
+            for (Integer i : insertRows) {
+                if (results[i] != null) {
+                    continue;
+                }
+                String name = rows.get(i).getName();
+                results[i] = new BulkProductResultDTO.RowResult(i, name, insertedIds.get(name), "created", null);
+            }
+        }
+    }
+
+    // 名称 -> 最小商品ID（历史数据可能有重名商品）
+    private Map<String, Long> findIdsByNames(Set<String> names) {
+        Map<String, Long> ids = new HashMap<>();
+        for (Object[] row : productRepository.findIdsByNames(names)) {
+            ids.putIfAbsent((String) row[1], (Long) row[0]);
+        }
+        return ids;
+    }
+
+    private String validateBulkRow(ProductDTO row) {
+        if (row == null) {
+            return "商品数据不能为空";
+        }
+        if (row.getName() == null || row.getName().trim().isEmpty()) {
+            return "商品名称不能为空";
+        }
+        if (row.getName().length() > 100) {
+            return "商品名称过长: " + row.getName();
+        }
+        if (row.getPrice() != null && row.getPrice() <= 0) {
+            return "价格必须大于0";
+        }
+        if (row.getPrice() != null && row.getPrice() >= 1e8) {
+            return "价格超出范围";
+        }
+        if (row.getCategory() != null && row.getCategory().length() > 50) {
+            return "分类名称过长: " + row.getCategory();
+        }
+        if (row.getTags() != null && row.getTags().length() > 200) {
+            return "标签过长";
+        }
+        if (row.getEmoji() != null && row.getEmoji().length() > 10) {
+            return "图标过长";
+        }
+        if (row.getImageUrl() != null && row.getImageUrl().length() > 255) {
+            return "图片地址过长";
+        }
+        return null;
+    }
+
+    private BulkProductResultDTO.RowResult failedRow(int index, ProductDTO row, String message) {
+        return new BulkProductResultDTO.RowResult(index, row != null ? row.getName() : null, null, "failed", message);
+    }
+
     /**
      * 更新商品（管理员）
      */
@@ -158,6 +446,7 @@ public class ProductService {
             existingProduct.setUpdatedAt(LocalDateTime.now());
 
             Product updatedProduct = productRepository.save(existingProduct);
+            catalogSnapshotService.productsSaved(updatedProduct);
             return convertToDTO(updatedProduct);
         } catch (RuntimeException e) {
             throw e; // 直接抛出业务异常
@@ -178,7 +467,7 @@ public class ProductService {
             // 软删除：设置为不可用
             product.setAvailable(false);
             product.setUpdatedAt(LocalDateTime.now());
-            productRepository.save(product);
+            catalogSnapshotService.productsSaved(productRepository.save(product));
 
         } catch (RuntimeException e) {
             throw e; // 直接抛出业务异常
@@ -198,6 +487,7 @@ public class ProductService {
 
             // TODO: 检查是否有订单关联该商品
             productRepository.deleteById(id);
+            catalogSnapshotService.productDeleted(id);
         } catch (Exception e) {
             throw new RuntimeException("删除商品失败: " + e.getMessage(), e);
         }
@@ -215,6 +505,7 @@ public class ProductService {
             product.setUpdatedAt(LocalDateTime.now());
 
             Product updatedProduct = productRepository.save(product);
+            catalogSnapshotService.productsSaved(updatedProduct);
             return convertToDTO(updatedProduct);
         } catch (Exception e) {
             throw new RuntimeException("更新商品状态失败: " + e.getMessage(), e);
@@ -222,14 +513,32 @@ public class ProductService {
     }
 
     /**
-     * 获取热门商品 - 修复：使用Repository中存在的方法
+     * 获取热门商品
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<ProductDTO> getHotProducts(int limit) {
         try {
-            // 使用Repository中存在的findAvailableProductsOrderByIdDesc方法，然后取前limit个
-            List<Product> products = productRepository.findAvailableProductsOrderByIdDesc();
-            if (products.size() > limit) {
-                products = products.subList(0, limit);
+            CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+            List<Product> products = new ArrayList<>();
+            Set<Long> seenIds = new HashSet<>();
+
+            // 按24小时衰减销量取热门商品，跳过已下架的
+            for (Long productId : productSalesTracker.getTopProductIds(ProductSalesTracker.WINDOW_DAY, Integer.MAX_VALUE)) {
+                if (products.size() >= limit) {
+                    break;
+                }
+                Product product = snapshot.getProduct(productId);
+                if (product != null && Boolean.TRUE.equals(product.getAvailable()) && seenIds.add(productId)) {
+                    products.add(product);
+                }
+            }
+
+            // 销量数据不足时用最新商品补齐
+            List<Product> available = snapshot.getAvailableProducts();
+            for (int i = available.size() - 1; i >= 0 && products.size() < limit; i--) {
+                if (seenIds.add(available.get(i).getId())) {
+                    products.add(available.get(i));
+                }
             }
             return products.stream()
                     .map(this::convertToDTO)
@@ -242,11 +551,13 @@ public class ProductService {
     /**
      * 获取商品数量统计
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Map<String, Object> getProductStats() {
         try {
             Map<String, Object> stats = new HashMap<>();
-            long totalProducts = productRepository.count();
-            long availableProducts = productRepository.countByAvailableTrue();
+            CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+            long totalProducts = snapshot.getTotalCount();
+            long availableProducts = snapshot.getAvailableCount();
 
             stats.put("totalProducts", totalProducts);
             stats.put("availableProducts", availableProducts);
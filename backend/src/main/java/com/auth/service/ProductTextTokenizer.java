@@ -0,0 +1,81 @@
+package com.auth.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 商品文本分词 - 中文按单字+二元组切分，ASCII按连续字母数字切分并转小写
+ */
+public final class ProductTextTokenizer {
+
+    private ProductTextTokenizer() {}
+
+    /**
+     * 建索引用：中文片段输出全部单字和二元组
+     */
+    public static List<String> indexTokens(String text) {
+        return tokenize(text, true);
+    }
+
+    /**
+     * 查询用：中文片段长度大于1时只输出二元组，单字片段输出单字
+     */
+    public static Set<String> queryTokens(String text) {
+        return new LinkedHashSet<>(tokenize(text, false));
+    }
+
+    private static List<String> tokenize(String text, boolean withUnigrams) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        StringBuilder ascii = new StringBuilder();
+        List<String> hanRun = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (isHan(codePoint)) {
+                flushAscii(ascii, tokens);
+                hanRun.add(new String(Character.toChars(codePoint)));
+            } else if (codePoint < 128 && Character.isLetterOrDigit(codePoint)) {
+                flushHan(hanRun, tokens, withUnigrams);
+                ascii.append(Character.toLowerCase((char) codePoint));
+            } else {
+                flushAscii(ascii, tokens);
+                flushHan(hanRun, tokens, withUnigrams);
+            }
+        }
+        flushAscii(ascii, tokens);
+        flushHan(hanRun, tokens, withUnigrams);
+        return tokens;
+    }
+
+    private static void flushAscii(StringBuilder ascii, List<String> tokens) {
+        if (ascii.length() > 0) {
+            tokens.add(ascii.toString());
+            ascii.setLength(0);
+        }
+    }
+
+    private static void flushHan(List<String> run, List<String> tokens, boolean withUnigrams) {
+        if (run.isEmpty()) {
+            return;
+        }
+        if (withUnigrams || run.size() == 1) {
+            tokens.addAll(run);
+        }
+        for (int i = 0; i + 1 < run.size(); i++) {
+            tokens.add(run.get(i) + run.get(i + 1));
+        }
+        run.clear();
+    }
+
+    static boolean isHan(int codePoint) {
+        return Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN;
+    }
+}
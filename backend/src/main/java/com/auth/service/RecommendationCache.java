@@ -0,0 +1,137 @@
+package com.auth.service;
+
+import com.auth.dto.RecommendationRequest;
+import com.auth.dto.RecommendationResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AI推荐结果缓存
+ *
+ * 键为规范化后的 (口味偏好, 天气, 心情) 加目录版本号，带 TTL 和容量上限的 LRU，
+ * 只缓存真正来自 AI 的结果，回退结果不入缓存。
+ */
+@Component
+public class RecommendationCache {
+
+    @Value("${ai.recommendation.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.recommendation.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${ai.recommendation.cache.max-size:1000}")
+    private int maxSize;
+
+    // 按访问顺序排列，最久未用的在前
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * 生成缓存键：去掉首尾空白、压缩空白、统一小写
+     */
+    public String keyOf(RecommendationRequest request, long catalogVersion) {
+        return normalize(request.getUserPreference()) + "|" +
+                normalize(request.getWeather()) + "|" +
+                normalize(request.getMood()) + "|" + catalogVersion;
+    }
+
+    /**
+     * 命中时返回副本，未命中或已过期返回 null
+     */
+    public RecommendationResponse get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.increment();
+                RecommendationResponse copy = entry.response.copy();
+                copy.setSource("cache");
+                return copy;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String key, RecommendationResponse response) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(response.copy(), System.currentTimeMillis() + ttlSeconds * 1000);
+        synchronized (entries) {
+            entries.put(key, entry);
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxSize && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 目录变更后旧版本的键不会再被命中，直接清空释放内存
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        return stats;
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    private static final class Entry {
+        private final RecommendationResponse response;
+        private final long expiresAt;
+
+        private Entry(RecommendationResponse response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
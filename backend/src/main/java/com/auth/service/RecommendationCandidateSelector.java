@@ -0,0 +1,116 @@
+package com.auth.service;
+
+import com.auth.dto.RecommendationRequest;
+import com.auth.entity.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AI推荐候选商品筛选
+ *
+ * 先用规则特征把可用商品缩小到最相关的前 N 个，再交给AI选择；
+ * 每个商品在提示词中的描述行按目录版本缓存，不在每次请求时重新拼接。
+ */
+@Component
+public class RecommendationCandidateSelector {
+
+    private static final String LIST_HEADER = "请从以下商品中选择推荐（只能选择这些商品）：\n";
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private ProductFeatureIndex productFeatureIndex;
+
+    @Value("${ai.recommendation.candidates.max:12}")
+    private int maxCandidates;
+
+    private volatile PromptLines lines;
+
+    /**
+     * 目录变更后重建商品描述行
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        lines = compile(event.getSnapshot());
+    }
+
+    /**
+     * 按口味偏好、天气、心情选出最相关的候选商品
+     */
+    public List<Product> select(RecommendationRequest request) {
+        long weatherMask = request.getWeather() == null || request.getWeather().isEmpty()
+                ? ProductFeatureIndex.MATCH_ALL : ProductFeatureIndex.weatherMask(request.getWeather());
+        return productFeatureIndex.rank(maxCandidates,
+                ProductFeatureIndex.preferenceMask(request.getUserPreference()),
+                weatherMask,
+                ProductFeatureIndex.moodMask(request.getMood()));
+    }
+
+    /**
+     * 拼接候选商品列表；候选即全部可用商品时直接返回缓存的完整列表
+     */
+    public String buildProductList(List<Product> candidates) {
+        PromptLines current = current();
+        if (candidates.size() == current.productCount) {
+            return current.fullList;
+        }
+        StringBuilder sb = new StringBuilder(LIST_HEADER.length() + candidates.size() * 64);
+        sb.append(LIST_HEADER);
+        for (Product product : candidates) {
+            String line = current.byId.get(product.getId());
+            sb.append(line != null ? line : lineOf(product));
+        }
+        return sb.toString();
+    }
+
+    private PromptLines current() {
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        PromptLines current = lines;
+        if (current == null || current.version != snapshot.getVersion()) {
+            current = compile(snapshot);
+            lines = current;
+        }
+        return current;
+    }
+
+    private static PromptLines compile(CatalogSnapshot snapshot) {
+        List<Product> products = snapshot.getAvailableProducts();
+        Map<Long, String> byId = new HashMap<>(products.size() * 2);
+        StringBuilder full = new StringBuilder(LIST_HEADER);
+        for (Product product : products) {
+            String line = lineOf(product);
+            byId.put(product.getId(), line);
+            full.append(line);
+        }
+        return new PromptLines(snapshot.getVersion(), products.size(), byId, full.toString());
+    }
+
+    private static String lineOf(Product product) {
+        return "- " + product.getName() +
+                "（分类：" + product.getCategory() +
+                "，标签：" + (product.getTags() != null ? product.getTags() : "无") +
+                "，描述：" + product.getDescription() +
+                "）\n";
+    }
+
+    private static final class PromptLines {
+        private final long version;
+        private final int productCount;
+        private final Map<Long, String> byId;
+        private final String fullList;
+
+        private PromptLines(long version, int productCount, Map<Long, String> byId, String fullList) {
+            this.version = version;
+            this.productCount = productCount;
+            this.byId = byId;
+            this.fullList = fullList;
+        }
+    }
+}
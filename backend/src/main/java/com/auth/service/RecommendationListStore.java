@@ -0,0 +1,160 @@
+package com.auth.service;
+
+import com.auth.dto.ProductDTO;
+import com.auth.dto.RegionProductDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预计算的推荐列表
+ *
+ * 定时任务按天气/节日/季节、地域和活跃用户整批算好列表后一次性发布，请求时只做一次哈希查找。
+ * 每批列表记录生成时的目录版本和地域版本，版本变化后整批视为过期，调用方改为实时计算，
+ * 直到下一次预计算。查不到（返回 null）时同样由调用方实时计算。
+ * 用户下单后丢弃其个性化列表；计算开始后才被丢弃的用户，发布时不带上这次算出的旧列表。
+ */
+@Component
+public class RecommendationListStore {
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private ResourceVersionService resourceVersionService;
+
+    private volatile Batch batch;
+
+    // 用户列表丢弃序号，发布与丢弃在 userEvictions 锁内进行
+    private final AtomicLong evictionSequence = new AtomicLong();
+
+    // 用户ID -> 最近一次丢弃时的序号，发布时清理不再需要的记录
+    private final Map<Long, Long> userEvictions = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 开始计算一批列表前取得的丢弃序号，发布时传回
+     */
+    public long currentEvictionSequence() {
+        return evictionSequence.get();
+    }
+
+    /**
+     * 发布一批新的列表，替换上一批；丢弃序号之后被丢弃过的用户列表不发布
+     */
+    public void publish(long catalogVersion, long regionVersion, long evictionSequence,
+                        Map<String, List<ProductDTO>> lists,
+                        Map<String, List<RegionProductDTO>> regionLists,
+                        Map<Long, List<ProductDTO>> userLists) {
+        ConcurrentHashMap<Long, List<ProductDTO>> frozenUserLists = new ConcurrentHashMap<>(freeze(userLists));
+        synchronized (userEvictions) {
+            Iterator<Map.Entry<Long, Long>> it = userEvictions.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Long> eviction = it.next();
+                if (eviction.getValue() > evictionSequence) {
+                    frozenUserLists.remove(eviction.getKey());
+                } else {
+                    // 计算开始前的丢弃，这批列表已经是之后算的
+                    it.remove();
+                }
+            }
+            batch = new Batch(catalogVersion, regionVersion, freeze(lists), freeze(regionLists), frozenUserLists);
+        }
+    }
+
+    /**
+     * 天气/节日/季节等场景列表
+     */
+    public List<ProductDTO> getList(String key) {
+        Batch current = batch;
+        return count(current != null && catalogCurrent(current) ? current.lists.get(key) : null);
+    }
+
+    /**
+     * 地域商品列表
+     */
+    public List<RegionProductDTO> getRegionList(String key) {
+        Batch current = batch;
+        return count(current != null && catalogCurrent(current)
+                && current.regionVersion == resourceVersionService.getRegionVersion()
+                ? current.regionLists.get(key) : null);
+    }
+
+    /**
+     * 活跃用户的个性化列表
+     */
+    public List<ProductDTO> getUserList(Long userId) {
+        Batch current = batch;
+        return count(current != null && catalogCurrent(current) ? current.userLists.get(userId) : null);
+    }
+
+    /**
+     * 用户下单后口味画像变化，丢弃该用户的预计算列表
+     */
+    public void evictUser(Long userId) {
+        synchronized (userEvictions) {
+            userEvictions.put(userId, evictionSequence.incrementAndGet());
+            Batch current = batch;
+            if (current != null) {
+                current.userLists.remove(userId);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Batch current = batch;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("catalogVersion", current != null ? current.catalogVersion : null);
+        stats.put("stale", current == null || !catalogCurrent(current));
+        stats.put("lists", current != null ? current.lists.size() : 0);
+        stats.put("regionLists", current != null ? current.regionLists.size() : 0);
+        stats.put("userLists", current != null ? current.userLists.size() : 0);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+
+    private boolean catalogCurrent(Batch current) {
+        return current.catalogVersion == catalogSnapshotService.getVersion();
+    }
+
+    private <T> T count(T value) {
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    private static <K, T> Map<K, List<T>> freeze(Map<K, List<T>> lists) {
+        Map<K, List<T>> frozen = new HashMap<>(lists.size() * 2);
+        lists.forEach((key, list) -> frozen.put(key, Collections.unmodifiableList(new ArrayList<>(list))));
+        return frozen;
+    }
+
+    private static final class Batch {
+        private final long catalogVersion;
+        private final long regionVersion;
+        private final Map<String, List<ProductDTO>> lists;
+        private final Map<String, List<RegionProductDTO>> regionLists;
+        private final ConcurrentHashMap<Long, List<ProductDTO>> userLists;
+
+        private Batch(long catalogVersion, long regionVersion,
+                      Map<String, List<ProductDTO>> lists,
+                      Map<String, List<RegionProductDTO>> regionLists,
+                      ConcurrentHashMap<Long, List<ProductDTO>> userLists) {
+            this.catalogVersion = catalogVersion;
+            this.regionVersion = regionVersion;
+            this.lists = lists;
+            this.regionLists = regionLists;
+            this.userLists = userLists;
+        }
+    }
+}
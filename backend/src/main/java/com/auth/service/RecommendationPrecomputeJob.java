@@ -0,0 +1,112 @@
+package com.auth.service;
+
+import com.auth.dto.ProductDTO;
+import com.auth.dto.RegionProductDTO;
+import com.auth.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 推荐列表预计算任务
+ *
+ * 启动后和每隔一段时间，把所有天气/节日/季节场景、每个活跃地域和最近下过单的用户的
+ * 推荐列表整批算好，发布到 RecommendationListStore。
+ */
+@Component
+public class RecommendationPrecomputeJob {
+
+    // 每种写法代表一个掩码，空串对应默认规则
+    private static final String[] WEATHERS = {"sunny", "rainy", "snowy", ""};
+    private static final String[] FESTIVALS = {"christmas", "spring festival", "valentine", ""};
+    private static final String[] SEASONS = {"spring", "summer", "autumn", "winter"};
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private RegionService regionService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private ResourceVersionService resourceVersionService;
+
+    @Autowired
+    private RecommendationListStore recommendationListStore;
+
+    @Value("${recommendation.precompute.active-days:30}")
+    private int activeDays;
+
+    @Value("${recommendation.precompute.max-users:1000}")
+    private int maxUsers;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        precompute();
+    }
+
+    @Scheduled(fixedDelayString = "${recommendation.precompute.interval-ms:600000}",
+            initialDelayString = "${recommendation.precompute.interval-ms:600000}")
+    public void scheduledPrecompute() {
+        precompute();
+    }
+
+    /**
+     * 重新计算并发布全部列表
+     */
+    public void precompute() {
+        try {
+            long start = System.currentTimeMillis();
+            // 先取版本号：计算期间数据发生变化时，这批列表会被判定为过期
+            long catalogVersion = catalogSnapshotService.getVersion();
+            long regionVersion = resourceVersionService.getRegionVersion();
+            long evictionSequence = recommendationListStore.currentEvictionSequence();
+
+            Map<String, List<ProductDTO>> lists = new HashMap<>();
+            for (String weather : WEATHERS) {
+                lists.put(RecommendationService.weatherKey(weather),
+                        recommendationService.computeWeatherBasedRecommendations(weather));
+            }
+            for (String festival : FESTIVALS) {
+                lists.put(RecommendationService.festivalKey(festival),
+                        recommendationService.computeFestivalRecommendations(festival));
+            }
+            for (String season : SEASONS) {
+                lists.put(RecommendationService.seasonKey(season),
+                        recommendationService.computeSeasonalRecommendations(season));
+            }
+
+            Map<String, List<RegionProductDTO>> regionLists = new HashMap<>();
+            for (String code : regionService.getActiveRegionCodes()) {
+                regionLists.put("products:" + code, regionService.loadRegionProducts(code));
+                regionLists.put("featured:" + code, regionService.loadFeaturedProducts(code));
+            }
+
+            Map<Long, List<ProductDTO>> userLists = new HashMap<>();
+            List<Long> userIds = orderRepository.findActiveUserIds(
+                    LocalDateTime.now().minusDays(activeDays), PageRequest.of(0, maxUsers));
+            for (Long userId : userIds) {
+                userLists.put(userId, recommendationService.computePersonalizedRecommendations(userId));
+            }
+
+            recommendationListStore.publish(catalogVersion, regionVersion, evictionSequence,
+                    lists, regionLists, userLists);
+            System.out.println("推荐列表预计算完成：场景 " + lists.size() + " 个，地域 " + regionLists.size() +
+                    " 个，用户 " + userLists.size() + " 个，耗时 " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            System.err.println("推荐列表预计算失败: " + e.getMessage());
+        }
+    }
+}
@@ -4,76 +4,129 @@ import com.auth.dto.ProductDTO;
 import com.auth.dto.RecommendationRequest;
 import com.auth.dto.RecommendationResponse;
 import com.auth.entity.Product;
-import com.auth.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 @Service
 public class RecommendationService {
 
     @Autowired
-    private ProductRepository productRepository;
+    private CatalogSnapshotService catalogSnapshotService;
 
     @Autowired
     private DeepSeekService deepSeekService;
 
-    // ============ 商品名称映射表 - 解决AI推荐与数据库商品名称不匹配问题 ============
-    private final Map<String, String> productNameMapping = createProductNameMapping();
-
-    private Map<String, String> createProductNameMapping() {
-        Map<String, String> mapping = new HashMap<>();
-        // 添加常见的AI推荐名称到数据库商品名称的映射
-        mapping.put("经典珍珠奶茶", "经典珍珠奶茶");
-        mapping.put("珍珠奶茶", "经典珍珠奶茶");
-        mapping.put("冰爽芒果波波茶", "芒果冰沙");
-        mapping.put("芒果波波茶", "芒果冰沙");
-        mapping.put("暖心红糖姜茶", "雨天暖姜奶茶");
-        mapping.put("红糖姜茶", "雨天暖姜奶茶");
-        mapping.put("芝士奶盖草莓奶茶", "芝士奶盖红茶");
-        mapping.put("芝士草莓奶茶", "芝士奶盖红茶");
-        mapping.put("提神咖啡奶茶", "咖啡奶茶");
-        mapping.put("咖啡奶茶", "咖啡奶茶");
-        mapping.put("薰衣草奶茶", "春风茉莉花茶");
-        mapping.put("黑糖珍珠鲜奶", "黑糖珍珠奶茶");
-        mapping.put("百香果绿茶", "百香果绿茶");
-        mapping.put("四季春茶", "四季春茶");
-        mapping.put("冰爽柠檬茶", "柠檬绿茶");
-        mapping.put("柠檬绿茶", "柠檬绿茶");
-        mapping.put("芝士奶盖绿茶", "芝士奶盖红茶");
-        mapping.put("草莓多多", "草莓果茶");
-        mapping.put("芋圆奶茶", "芋圆奶茶");
-        mapping.put("红豆奶茶", "红豆奶茶");
-        mapping.put("布丁奶茶", "布丁奶茶");
-        mapping.put("椰果奶茶", "椰果奶茶");
-        mapping.put("仙草冻奶茶", "仙草冻奶茶");
-        mapping.put("抹茶拿铁", "抹茶拿铁");
-        mapping.put("巧克力奶茶", "巧克力奶茶");
-        mapping.put("芋泥波波茶", "芋圆奶茶");
-        mapping.put("葡萄多多", "葡萄多多");
-        mapping.put("桃子乌龙茶", "桃子乌龙");
-        return mapping;
-    }
-
-    // ============ 以下是你的原有代码，完全保持不变 ============
-
-    // 获取个性推荐商品
+    @Autowired
+    private ProductFeatureIndex productFeatureIndex;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private RecommendationCache recommendationCache;
+
+    @Autowired
+    private RecommendationCandidateSelector candidateSelector;
+
+    @Autowired
+    private ProductNameMatcher productNameMatcher;
+
+    @Autowired
+    private ProductCoPurchaseIndex coPurchaseIndex;
+
+    @Autowired
+    private UserProfileService userProfileService;
+
+    @Autowired
+    private RecommendationListStore recommendationListStore;
+
+    @Autowired
+    private ProductSemanticIndex semanticIndex;
+
+    @Value("${ai.recommendation.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Value("${ai.recommendation.latency-budget-ms:800}")
+    private long latencyBudgetMillis;
+
+    @Value("${ai.recommendation.circuit.failure-threshold:5}")
+    private int circuitFailureThreshold;
+
+    @Value("${ai.recommendation.circuit.open-seconds:30}")
+    private long circuitOpenSeconds;
+
+    // 流式推荐的推送线程数，与上游并发上限一致
+    @Value("${ai.recommendation.max-concurrency:20}")
+    private int streamPushThreads;
+
+    // 正在调用AI的请求，键与推荐缓存相同
+    private final SingleFlight<String, RecommendationResponse> inFlightRecommendations = new SingleFlight<>();
+
+    private CircuitBreaker circuitBreaker;
+
+    // 延迟预算计时器，只负责到期时补上规则推荐
+    private ScheduledExecutorService budgetTimer;
+
+    private final LongAdder budgetExceeded = new LongAdder();
+
+    // 流式推荐回调的推送线程，写 SSE 不占用上游 I/O 线程
+    private ThreadPoolExecutor streamPushExecutor;
+
+    @PostConstruct
+    public void init() {
+        circuitBreaker = new CircuitBreaker(circuitFailureThreshold, circuitOpenSeconds * 1000);
+        budgetTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recommendation-budget-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        streamPushExecutor = new ThreadPoolExecutor(streamPushThreads, streamPushThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "recommendation-stream-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        streamPushExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        budgetTimer.shutdownNow();
+        streamPushExecutor.shutdownNow();
+    }
+
+    // ============ 规则推荐：个性化、天气、节日、季节与关联商品 ============
+
+    // 获取个性推荐商品（活跃用户读预计算列表）
     public List<ProductDTO> getPersonalizedRecommendations(Long userId) {
-        // 这里可以根据用户的历史订单、偏好等实现个性化推荐
-        // 目前先实现一个基础版本：混合推荐
+        List<ProductDTO> precomputed = recommendationListStore.getUserList(userId);
+        return precomputed != null ? precomputed : computePersonalizedRecommendations(userId);
+    }
 
+    List<ProductDTO> computePersonalizedRecommendations(Long userId) {
         List<ProductDTO> recommendations = new ArrayList<>();
 
-        // 1. 热门推荐（销量高的商品）
+        // 1. 按用户历史订单的分类、标签偏好打分（没有订单时为空）
+        for (Product product : userProfileService.recommend(userId, 8)) {
+            recommendations.add(convertToDTO(product));
+        }
+
+        // 2. 热门推荐（销量高的商品）
         recommendations.addAll(getPopularProducts());
 
-        // 2. 新品推荐
+        // 3. 新品推荐
         recommendations.addAll(getNewProducts());
 
-        // 3. 根据季节推荐
+        // 4. 根据季节推荐
         recommendations.addAll(getSeasonalProducts());
 
         // 去重并限制数量
@@ -82,42 +135,62 @@ public class RecommendationService {
 
     // 根据天气推荐
     public List<ProductDTO> getWeatherBasedRecommendations(String weather) {
-        List<Product> products = productRepository.findByAvailableTrue();
+        List<ProductDTO> precomputed = recommendationListStore.getList(weatherKey(weather));
+        return precomputed != null ? precomputed : computeWeatherBasedRecommendations(weather);
+    }
 
-        return products.stream()
-                .filter(product -> isSuitableForWeather(product, weather))
+    List<ProductDTO> computeWeatherBasedRecommendations(String weather) {
+        return productFeatureIndex.filter(ProductFeatureIndex.weatherMask(weather), 6).stream()
                 .map(this::convertToDTO)
-                .limit(6)
                 .collect(Collectors.toList());
     }
 
     // 获取节日推荐
     public List<ProductDTO> getFestivalRecommendations(String festival) {
-        List<Product> products = productRepository.findByAvailableTrue();
+        List<ProductDTO> precomputed = recommendationListStore.getList(festivalKey(festival));
+        return precomputed != null ? precomputed : computeFestivalRecommendations(festival);
+    }
 
-        return products.stream()
-                .filter(product -> isSuitableForFestival(product, festival))
+    List<ProductDTO> computeFestivalRecommendations(String festival) {
+        return productFeatureIndex.filter(ProductFeatureIndex.festivalMask(festival), 6).stream()
                 .map(this::convertToDTO)
-                .limit(6)
                 .collect(Collectors.toList());
     }
 
-    // 获取热门商品（模拟实现）
-    private List<ProductDTO> getPopularProducts() {
-        // 在实际应用中，这里应该查询订单数据计算销量
-        // 目前随机选择一些商品作为热门商品
-        List<Product> allProducts = productRepository.findByAvailableTrue();
-        Collections.shuffle(allProducts);
+    // 获取当季推荐
+    public List<ProductDTO> getSeasonalRecommendations() {
+        String season = getCurrentSeason(LocalDateTime.now().getMonthValue());
+        List<ProductDTO> precomputed = recommendationListStore.getList(seasonKey(season));
+        return precomputed != null ? precomputed : computeSeasonalRecommendations(season);
+    }
 
-        return allProducts.stream()
-                .limit(4)
+    List<ProductDTO> computeSeasonalRecommendations(String season) {
+        return productFeatureIndex.filter(ProductFeatureIndex.seasonMask(season), 3).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    // 预计算列表的键：同义的天气/节日写法落到同一个掩码上
+    static String weatherKey(String weather) {
+        return "weather:" + Long.toHexString(ProductFeatureIndex.weatherMask(weather));
+    }
+
+    static String festivalKey(String festival) {
+        return "festival:" + Long.toHexString(ProductFeatureIndex.festivalMask(festival));
+    }
+
+    static String seasonKey(String season) {
+        return "season:" + season;
+    }
+
+    // 获取热门商品（按24小时衰减销量）
+    private List<ProductDTO> getPopularProducts() {
+        return productService.getHotProducts(4);
+    }
+
     // 获取新品
     private List<ProductDTO> getNewProducts() {
-        List<Product> allProducts = productRepository.findByAvailableTrue();
+        List<Product> allProducts = new ArrayList<>(catalogSnapshotService.getSnapshot().getAvailableProducts());
 
         // 使用传统的比较器写法
         Collections.sort(allProducts, new Comparator<Product>() {
@@ -135,83 +208,7 @@ public class RecommendationService {
 
     // 获取季节性商品
     private List<ProductDTO> getSeasonalProducts() {
-        int month = LocalDateTime.now().getMonthValue();
-        String season = getCurrentSeason(month);
-
-        List<Product> products = productRepository.findByAvailableTrue();
-
-        return products.stream()
-                .filter(product -> isSuitableForSeason(product, season))
-                .map(this::convertToDTO)
-                .limit(3)
-                .collect(Collectors.toList());
-    }
-
-    // 判断商品是否适合当前天气
-    private boolean isSuitableForWeather(Product product, String weather) {
-        String category = product.getCategory();
-        String tags = product.getTags() != null ? product.getTags().toLowerCase() : "";
-        String name = product.getName().toLowerCase();
-
-        if ("sunny".equalsIgnoreCase(weather) || "晴天".equals(weather)) {
-            return "fruit".equals(category) ||
-                    "weather".equals(category) ||
-                    tags.contains("清爽") ||
-                    tags.contains("冰沙");
-        } else if ("rainy".equalsIgnoreCase(weather) || "雨天".equals(weather)) {
-            return "weather".equals(category) ||
-                    tags.contains("暖饮") ||
-                    tags.contains("热饮") ||
-                    name.contains("姜");
-        } else if ("snowy".equalsIgnoreCase(weather) || "雪天".equals(weather)) {
-            return tags.contains("热饮") ||
-                    tags.contains("巧克力") ||
-                    name.contains("热");
-        } else {
-            return "recommend".equals(category) || "classic".equals(category);
-        }
-    }
-
-    // 判断商品是否适合节日
-    private boolean isSuitableForFestival(Product product, String festival) {
-        String category = product.getCategory();
-        String name = product.getName().toLowerCase();
-        String tags = product.getTags() != null ? product.getTags().toLowerCase() : "";
-
-        if ("christmas".equalsIgnoreCase(festival) || "圣诞".equals(festival)) {
-            return "festival".equals(category) ||
-                    name.contains("圣诞") ||
-                    tags.contains("圣诞");
-        } else if ("spring festival".equalsIgnoreCase(festival) || "春节".equals(festival)) {
-            return "festival".equals(category) ||
-                    name.contains("春节") ||
-                    name.contains("福气") ||
-                    tags.contains("春节");
-        } else if ("valentine".equalsIgnoreCase(festival) || "情人节".equals(festival)) {
-            return "festival".equals(category) ||
-                    name.contains("情人") ||
-                    name.contains("甜蜜") ||
-                    tags.contains("浪漫");
-        } else {
-            return "festival".equals(category);
-        }
-    }
-
-    // 判断商品是否适合季节
-    private boolean isSuitableForSeason(Product product, String season) {
-        String tags = product.getTags() != null ? product.getTags().toLowerCase() : "";
-
-        if ("spring".equals(season)) { // 春季
-            return tags.contains("清爽") || tags.contains("花香");
-        } else if ("summer".equals(season)) { // 夏季
-            return tags.contains("冰沙") || tags.contains("清爽") || tags.contains("果茶");
-        } else if ("autumn".equals(season)) { // 秋季
-            return tags.contains("温暖") || tags.contains("坚果");
-        } else if ("winter".equals(season)) { // 冬季
-            return tags.contains("热饮") || tags.contains("巧克力") || tags.contains("暖饮");
-        } else {
-            return true;
-        }
+        return getSeasonalRecommendations();
     }
 
     // 获取当前季节
@@ -258,37 +255,45 @@ public class RecommendationService {
 
     // 获取相关推荐（基于当前商品）
     public List<ProductDTO> getRelatedProducts(Long productId) {
-        Optional<Product> currentProduct = productRepository.findById(productId);
-        if (!currentProduct.isPresent()) {
+        return getRelatedProducts(productId, 4);
+    }
+
+    /**
+     * 相关推荐：优先取共同购买最多的商品，不足时用同分类商品和热门商品补齐
+     */
+    public List<ProductDTO> getRelatedProducts(Long productId, int limit) {
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        Product product = snapshot.getProduct(productId);
+        if (product == null) {
             return new ArrayList<>();
         }
 
-        Product product = currentProduct.get();
-        String category = product.getCategory();
+        Set<Long> seen = new HashSet<>();
+        seen.add(productId);
+        List<ProductDTO> related = new ArrayList<>();
+
+        // 多取一些候选，下架商品会被跳过
+        for (Long relatedId : coPurchaseIndex.getRelatedProductIds(productId, limit * 2)) {
+            Product candidate = snapshot.getProduct(relatedId);
+            if (related.size() < limit && candidate != null && Boolean.TRUE.equals(candidate.getAvailable())
+                    && seen.add(relatedId)) {
+                related.add(convertToDTO(candidate));
+            }
+        }
 
         // 推荐同分类的其他商品
-        List<ProductDTO> related = productRepository.findByCategoryAndAvailableTrue(category)
-                .stream()
-                .filter(p -> !p.getId().equals(productId))
-                .map(this::convertToDTO)
-                .limit(4)
-                .collect(Collectors.toList());
+        for (Product candidate : snapshot.getAvailableProductsByCategory(product.getCategory())) {
+            if (related.size() >= limit) break;
+            if (seen.add(candidate.getId())) {
+                related.add(convertToDTO(candidate));
+            }
+        }
 
         // 如果同分类商品不足，补充其他推荐
-        if (related.size() < 4) {
-            List<ProductDTO> additional = getPopularProducts();
-            for (ProductDTO dto : additional) {
-                if (related.size() >= 4) break;
-
-                boolean exists = false;
-                for (ProductDTO existing : related) {
-                    if (existing.getId().equals(dto.getId())) {
-                        exists = true;
-                        break;
-                    }
-                }
-
-                if (!exists) {
+        if (related.size() < limit) {
+            for (ProductDTO dto : getPopularProducts()) {
+                if (related.size() >= limit) break;
+                if (seen.add(dto.getId())) {
                     related.add(dto);
                 }
             }
@@ -303,49 +308,254 @@ public class RecommendationService {
      * AI智能奶茶推荐 - 只在数据库商品中推荐
      */
     public RecommendationResponse getAIRecommendation(RecommendationRequest request) {
-        try {
-            // 首先从数据库获取所有可用商品
-            List<Product> availableProducts = productRepository.findByAvailableTrue();
-            if (availableProducts.isEmpty()) {
-                return getDefaultRecommendation();
+        return getAIRecommendationAsync(request).join();
+    }
+
+    /**
+     * AI智能奶茶推荐（异步）- 返回的 future 不会以异常结束
+     *
+     * 规则推荐与AI调用同时进行，延迟预算到期时AI还没返回就先给出规则推荐；
+     * AI结果晚到时仍会写入缓存，供后续相同请求使用。
+     */
+    public CompletableFuture<RecommendationResponse> getAIRecommendationAsync(RecommendationRequest request) {
+        // 首先从目录快照获取所有可用商品
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        String cacheKey = recommendationCache.keyOf(request, snapshot.getVersion());
+        RecommendationResponse cached = recommendationCache.get(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<RecommendationResponse> aiFuture;
+        if (coalescingEnabled) {
+            // 相同条件的并发请求只调用一次AI，其余请求共享结果；上游调用有总时限，等待者同样受限
+            aiFuture = inFlightRecommendations.execute(cacheKey, () -> loadAIRecommendation(request, snapshot, cacheKey))
+                    .thenApply(RecommendationResponse::copy);
+        } else {
+            aiFuture = loadAIRecommendation(request, snapshot, cacheKey);
+        }
+        if (aiFuture.isDone() || latencyBudgetMillis <= 0) {
+            return aiFuture;
+        }
+
+        RecommendationResponse ruleBased = getRuleBasedRecommendation(request, snapshot);
+        CompletableFuture<RecommendationResponse> result = new CompletableFuture<>();
+        aiFuture.thenAccept(result::complete);
+        ScheduledFuture<?> deadline = budgetTimer.schedule(() -> {
+            if (result.complete(ruleBased)) {
+                budgetExceeded.increment();
             }
+        }, latencyBudgetMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((response, error) -> deadline.cancel(false));
+        return result;
+    }
 
-            // 构建商品列表供AI选择
-            String productList = buildProductListForAI(availableProducts);
+    /**
+     * AI推荐并发合并、熔断与延迟预算统计
+     */
+    public Map<String, Object> getAIRecommendationStats() {
+        Map<String, Object> stats = inFlightRecommendations.getStats();
+        stats.put("coalescingEnabled", coalescingEnabled);
+        stats.put("latencyBudgetMs", latencyBudgetMillis);
+        stats.put("budgetExceeded", budgetExceeded.sum());
+        stats.put("circuit", circuitBreaker.getStats());
+        return stats;
+    }
 
-            // 调用AI服务，但限制它只能从现有商品中选择
-            String recommendation = deepSeekService.getRecommendationFromExistingProducts(
-                    request.getUserPreference(),
-                    request.getWeather(),
-                    request.getMood(),
-                    productList
-            );
+    /**
+     * 流式AI推荐 - 边生成边回调，推荐产品一行完成时立即给出匹配的商品
+     */
+    public void streamAIRecommendation(RecommendationRequest request, RecommendationStreamListener target) {
+        RecommendationStreamListener listener = new SerialStreamListener(target, streamPushExecutor);
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        String cacheKey = recommendationCache.keyOf(request, snapshot.getVersion());
+        RecommendationResponse cached = recommendationCache.get(cacheKey);
+        if (cached != null) {
+            completeStream(cached, listener, false);
+            return;
+        }
+        if (snapshot.getAvailableProducts().isEmpty()) {
+            RecommendationResponse response = getDefaultRecommendation();
+            response.setSource("default");
+            completeStream(response, listener, false);
+            return;
+        }
+        // 熔断期间不调用上游，直接给出规则推荐
+        if (!circuitBreaker.tryAcquire()) {
+            completeStream(getRuleBasedRecommendation(request, snapshot), listener, false);
+            return;
+        }
 
-            return parseAndMatchRecommendation(recommendation);
+        String productList = candidateSelector.buildProductList(candidateSelector.select(request));
+        StreamingRecommendationParser parser = new StreamingRecommendationParser(listener, snapshot);
+        deepSeekService.streamRecommendationFromExistingProducts(
+                        request.getUserPreference(),
+                        request.getWeather(),
+                        request.getMood(),
+                        productList,
+                        parser::accept)
+                .whenComplete((content, e) -> {
+                    if (e == null) {
+                        circuitBreaker.onSuccess();
+                    } else if (unwrap(e) instanceof RejectedExecutionException) {
+                        circuitBreaker.onRejected();
+                    } else {
+                        circuitBreaker.onFailure();
+                    }
+                })
+                .thenApply(this::parseAndMatchRecommendation)
+                .exceptionally(e -> {
+                    System.err.println("AI流式推荐异常: " + unwrap(e).getMessage());
+                    RecommendationResponse fallback = getDatabaseFallbackRecommendation(request);
+                    fallback.setSource("fallback");
+                    return fallback;
+                })
+                .thenAccept(response -> {
+                    fillProductPrice(response, snapshot);
+                    if ("ai".equals(response.getSource())) {
+                        recommendationCache.put(cacheKey, response);
+                    }
+                    // 已推送的商品与最终结果不同（如推荐产品一行之后AI失败改用回退推荐）时重新推送
+                    boolean productSent = parser.productSent
+                            && Objects.equals(parser.sentProductId, response.getProductId());
+                    completeStream(response, listener, productSent);
+                });
+    }
 
-        } catch (Exception e) {
-            System.err.println("AI推荐服务异常: " + e.getMessage());
-            // 如果AI服务失败，返回基于数据库的回退推荐
-            return getDatabaseFallbackRecommendation(request);
+    private void completeStream(RecommendationResponse response, RecommendationStreamListener listener,
+                                boolean productSent) {
+        if (!productSent) {
+            listener.onProduct(productOnly(response));
         }
+        listener.onComplete(response);
+    }
+
+    private static RecommendationResponse productOnly(RecommendationResponse response) {
+        RecommendationResponse product = new RecommendationResponse();
+        product.setRecommendedProduct(response.getRecommendedProduct());
+        product.setProductId(response.getProductId());
+        product.setProductPrice(response.getProductPrice());
+        product.setSource(response.getSource());
+        return product;
     }
 
     /**
-     * 构建供AI选择的商品列表
+     * 按行解析AI的增量输出
      */
-    private String buildProductListForAI(List<Product> products) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("请从以下商品中选择推荐（只能选择这些商品）：\n");
+    private final class StreamingRecommendationParser {
+        private final RecommendationStreamListener listener;
+        private final CatalogSnapshot snapshot;
+        private final StringBuilder pending = new StringBuilder();
+        private volatile Long sentProductId;
+        private volatile boolean productSent;
+
+        private StreamingRecommendationParser(RecommendationStreamListener listener, CatalogSnapshot snapshot) {
+            this.listener = listener;
+            this.snapshot = snapshot;
+        }
 
-        for (Product product : products) {
-            sb.append("- ").append(product.getName())
-                    .append("（分类：").append(product.getCategory())
-                    .append("，标签：").append(product.getTags() != null ? product.getTags() : "无")
-                    .append("，描述：").append(product.getDescription())
-                    .append("）\n");
+        private void accept(String delta) {
+            listener.onDelta(delta);
+            pending.append(delta);
+            int newline;
+            while ((newline = pending.indexOf("\n")) >= 0) {
+                String line = pending.substring(0, newline).trim();
+                pending.delete(0, newline + 1);
+                onLine(line);
+            }
         }
 
-        return sb.toString();
+        private void onLine(String line) {
+            if (line.startsWith("推荐产品：") && !productSent) {
+                String productName = line.substring(5).trim();
+                Long productId = findProductIdByNamePrivate(productName);
+                Product product = productId != null ? snapshot.getProduct(productId) : getDefaultProduct();
+
+                RecommendationResponse matched = new RecommendationResponse();
+                matched.setRecommendedProduct(product != null ? product.getName() : productName);
+                matched.setProductId(product != null ? product.getId() : null);
+                matched.setProductPrice(product != null ? product.getPrice() : null);
+                matched.setSource("ai");
+                sentProductId = matched.getProductId();
+                productSent = true;
+                listener.onProduct(matched);
+            } else if (line.startsWith("推荐理由：")) {
+                listener.onField("reasoning", line.substring(5).trim());
+            } else if (line.startsWith("产品描述：")) {
+                listener.onField("description", line.substring(5).trim());
+            }
+        }
+    }
+
+    private RecommendationResponse getRuleBasedRecommendation(RecommendationRequest request, CatalogSnapshot snapshot) {
+        RecommendationResponse response = getDatabaseFallbackRecommendation(request);
+        response.setSource("fallback");
+        fillProductPrice(response, snapshot);
+        return response;
+    }
+
+    private CompletableFuture<RecommendationResponse> loadAIRecommendation(RecommendationRequest request,
+                                                                           CatalogSnapshot snapshot, String cacheKey) {
+        List<Product> availableProducts = snapshot.getAvailableProducts();
+        if (availableProducts.isEmpty()) {
+            RecommendationResponse response = getDefaultRecommendation();
+            response.setSource("default");
+            return CompletableFuture.completedFuture(response);
+        }
+        // 熔断期间不调用上游，直接给出规则推荐
+        if (!circuitBreaker.tryAcquire()) {
+            return CompletableFuture.completedFuture(getRuleBasedRecommendation(request, snapshot));
+        }
+
+        // 只把最相关的候选商品交给AI选择，控制提示词长度
+        String productList = candidateSelector.buildProductList(candidateSelector.select(request));
+
+        // 调用AI服务，但限制它只能从现有商品中选择
+        return deepSeekService.requestRecommendationFromExistingProductsAsync(
+                        request.getUserPreference(),
+                        request.getWeather(),
+                        request.getMood(),
+                        productList)
+                .whenComplete((content, e) -> {
+                    // 并发已满是本地限流，不算上游故障
+                    if (e == null) {
+                        circuitBreaker.onSuccess();
+                    } else if (unwrap(e) instanceof RejectedExecutionException) {
+                        circuitBreaker.onRejected();
+                    } else {
+                        circuitBreaker.onFailure();
+                    }
+                })
+                .thenApply(this::parseAndMatchRecommendation)
+                .exceptionally(e -> {
+                    System.err.println("AI推荐服务异常: " + unwrap(e).getMessage());
+                    // 如果AI服务失败，返回基于数据库的回退推荐
+                    RecommendationResponse fallback = getDatabaseFallbackRecommendation(request);
+                    fallback.setSource("fallback");
+                    return fallback;
+                })
+                .thenApply(response -> {
+                    fillProductPrice(response, snapshot);
+                    // 只缓存AI给出的结果，回退结果等AI恢复后重新请求
+                    if ("ai".equals(response.getSource())) {
+                        recommendationCache.put(cacheKey, response);
+                    }
+                    return response;
+                });
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private void fillProductPrice(RecommendationResponse response, CatalogSnapshot snapshot) {
+        if (response.getProductId() == null || response.getProductPrice() != null) {
+            return;
+        }
+        Product product = snapshot.getProduct(response.getProductId());
+        if (product != null) {
+            response.setProductPrice(product.getPrice());
+        }
     }
 
     /**
@@ -387,12 +597,15 @@ public class RecommendationService {
         } catch (Exception e) {
             System.err.println("解析AI推荐响应失败: " + e.getMessage());
             // 解析失败时返回默认推荐
-            return getDefaultRecommendation();
+            RecommendationResponse fallback = getDefaultRecommendation();
+            fallback.setSource("default");
+            return fallback;
         }
 
         // 使用新的构造函数
         RecommendationResponse response = new RecommendationResponse(productName, reasoning, description);
         response.setProductId(matchedProductId);
+        response.setSource("ai");
         return response;
     }
 
@@ -401,12 +614,35 @@ public class RecommendationService {
      */
     private RecommendationResponse getDatabaseFallbackRecommendation(RecommendationRequest request) {
         try {
-            List<Product> availableProducts = productRepository.findByAvailableTrue();
+            // 先按语义相似度取最接近的几个商品，在其中随机选一个
+            List<Product> nearest = semanticIndex.nearest(request, 3);
+            if (!nearest.isEmpty()) {
+                Product selectedProduct = nearest.get(ThreadLocalRandom.current().nextInt(nearest.size()));
+                return createRecommendationFromProduct(selectedProduct, request);
+            }
+
+            // 请求中没有可用的文本时按规则筛选
+            long preferenceMask = ProductFeatureIndex.preferenceMask(request.getUserPreference());
+            long weatherMask = request.getWeather() == null || request.getWeather().isEmpty()
+                    ? ProductFeatureIndex.MATCH_ALL : ProductFeatureIndex.weatherMask(request.getWeather());
+            long moodMask = ProductFeatureIndex.moodMask(request.getMood());
+
+            // 依次放宽心情、天气条件，直到有商品满足
+            List<Product> availableProducts = productFeatureIndex.filterAll(preferenceMask, weatherMask, moodMask);
+            if (availableProducts.isEmpty()) {
+                availableProducts = productFeatureIndex.filterAll(preferenceMask, weatherMask);
+            }
+            if (availableProducts.isEmpty()) {
+                availableProducts = productFeatureIndex.filterAll(preferenceMask);
+            }
+            if (availableProducts.isEmpty()) {
+                availableProducts = new ArrayList<>(catalogSnapshotService.getSnapshot().getAvailableProducts());
+            }
             if (availableProducts.isEmpty()) {
                 return getDefaultRecommendation();
             }
 
-            // 简单逻辑：随机选择一个可用商品
+            // 在满足条件的商品中随机选择一个
             Collections.shuffle(availableProducts);
             Product selectedProduct = availableProducts.get(0);
             return createRecommendationFromProduct(selectedProduct, request);
@@ -420,29 +656,15 @@ public class RecommendationService {
      * 根据商品名称查找商品ID - 私有方法
      */
     private Long findProductIdByNamePrivate(String productName) {
-        // 首先尝试直接匹配
-        Optional<Product> product = productRepository.findByNameAndAvailableTrue(productName);
-        if (product.isPresent()) {
-            return product.get().getId();
-        }
-
-        // 尝试使用映射表匹配
-        String mappedName = productNameMapping.get(productName);
-        if (mappedName != null) {
-            Optional<Product> mappedProduct = productRepository.findByNameAndAvailableTrue(mappedName);
-            if (mappedProduct.isPresent()) {
-                return mappedProduct.get().getId();
-            }
+        ProductNameMatcher.Match match = productNameMatcher.match(productName);
+        if (match == null) {
+            return null;
         }
-
-        // 尝试模糊匹配 - 使用现有的方法
-        List<Product> similarProducts = productRepository.findByNameContainingIgnoreCase(
-                productName.length() > 2 ? productName.substring(0, 2) : productName);
-        if (!similarProducts.isEmpty()) {
-            return similarProducts.get(0).getId();
+        if (match.getConfidence() < 1.0) {
+            System.out.println("商品名称模糊匹配: " + productName + " -> " + match.getProduct().getName() +
+                    "（置信度 " + String.format("%.2f", match.getConfidence()) + "）");
         }
-
-        return null;
+        return match.getProduct().getId();
     }
 
     /**
@@ -490,7 +712,7 @@ public class RecommendationService {
      * 获取默认商品
      */
     private Product getDefaultProduct() {
-        List<Product> availableProducts = productRepository.findByAvailableTrue();
+        List<Product> availableProducts = catalogSnapshotService.getSnapshot().getAvailableProducts();
         if (!availableProducts.isEmpty()) {
             return availableProducts.get(0);
         }
@@ -520,61 +742,6 @@ public class RecommendationService {
         return response;
     }
 
-    // ============ 匹配辅助方法 ============
-
-    private boolean matchesPreference(Product product, String preference) {
-        if (preference == null || preference.isEmpty()) return true;
-
-        String tags = product.getTags() != null ? product.getTags().toLowerCase() : "";
-        String name = product.getName().toLowerCase();
-        String description = product.getDescription() != null ? product.getDescription().toLowerCase() : "";
-
-        if (preference.contains("甜")) {
-            return tags.contains("甜") || name.contains("糖") || name.contains("蜜");
-        } else if (preference.contains("水果")) {
-            return tags.contains("水果") || name.contains("果") || description.contains("水果");
-        } else if (preference.contains("茶")) {
-            return tags.contains("茶") || name.contains("茶") || description.contains("茶");
-        } else if (preference.contains("奶")) {
-            return tags.contains("奶") || name.contains("奶") || description.contains("奶");
-        }
-        return true;
-    }
-
-    private boolean matchesWeather(Product product, String weather) {
-        if (weather == null || weather.isEmpty()) return true;
-        return isSuitableForWeather(product, weather);
-    }
-
-    private boolean matchesMood(Product product, String mood) {
-        if (mood == null || mood.isEmpty()) return true;
-
-        String tags = product.getTags() != null ? product.getTags().toLowerCase() : "";
-        String name = product.getName().toLowerCase();
-
-        if (mood.contains("开心") || mood.contains("高兴")) {
-            return tags.contains("庆祝") || name.contains("欢乐") || tags.contains("甜蜜");
-        } else if (mood.contains("疲惫") || mood.contains("累")) {
-            return tags.contains("提神") || name.contains("咖啡") || tags.contains("能量");
-        } else if (mood.contains("压力") || mood.contains("紧张")) {
-            return tags.contains("放松") || tags.contains("舒缓") || name.contains("薰衣草");
-        }
-        return true;
-    }
-
-    private boolean matchesPreferenceRelaxed(Product product, String preference) {
-        return matchesPreference(product, preference);
-    }
-
-    private boolean matchesWeatherRelaxed(Product product, String weather) {
-        return matchesWeather(product, weather);
-    }
-
-    private boolean matchesMoodRelaxed(Product product, String mood) {
-        return matchesMood(product, mood);
-    }
-
-
     /**
      * 根据ID查找商品
      */
@@ -582,7 +749,7 @@ public class RecommendationService {
         if (productId == null) {
             return null;
         }
-        return productRepository.findById(productId).orElse(null);
+        return catalogSnapshotService.getSnapshot().getProduct(productId);
     }
 
     // ============ 新增公共方法供Controller调用 ============
@@ -595,25 +762,9 @@ public class RecommendationService {
             return 1L; // 默认ID
         }
 
-        // 首先尝试直接匹配
-        Optional<Product> product = productRepository.findByNameAndAvailableTrue(productName.trim());
-        if (product.isPresent()) {
-            return product.get().getId();
-        }
-
-        // 尝试使用映射表匹配
-        String mappedName = productNameMapping.get(productName.trim());
-        if (mappedName != null) {
-            Optional<Product> mappedProduct = productRepository.findByNameAndAvailableTrue(mappedName);
-            if (mappedProduct.isPresent()) {
-                return mappedProduct.get().getId();
-            }
-        }
-
-        // 尝试模糊匹配 - 更宽松的匹配
-        List<Product> similarProducts = productRepository.findByNameContainingIgnoreCase(productName.trim());
-        if (!similarProducts.isEmpty()) {
-            return similarProducts.get(0).getId();
+        Long productId = findProductIdByNamePrivate(productName);
+        if (productId != null) {
+            return productId;
         }
 
         // 如果还是找不到，返回默认商品ID
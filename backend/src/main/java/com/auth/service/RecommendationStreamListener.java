@@ -0,0 +1,33 @@
+package com.auth.service;
+
+import com.auth.dto.RecommendationResponse;
+
+/**
+ * 流式AI推荐回调
+ *
+ * 同一次推荐的回调按顺序依次触发，在推送线程池上执行（不在上游 HTTP 客户端的 I/O 线程上），
+ * 回调里可以做阻塞写出；不同推荐的回调可能并发执行。
+ */
+public interface RecommendationStreamListener {
+
+    /**
+     * 收到AI输出的一段增量文本
+     */
+    void onDelta(String text);
+
+    /**
+     * “推荐产品”一行输出完毕并已匹配到商品，只包含商品名称、ID和价格；
+     * 之后AI失败改用回退推荐且商品不同时，结束前会以回退商品再触发一次
+     */
+    void onProduct(RecommendationResponse product);
+
+    /**
+     * “推荐理由”或“产品描述”一行输出完毕，field 为 reasoning 或 description
+     */
+    void onField(String field, String value);
+
+    /**
+     * 推荐结束，给出最终结果；AI失败时为回退推荐
+     */
+    void onComplete(RecommendationResponse response);
+}
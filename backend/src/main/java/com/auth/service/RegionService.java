@@ -8,6 +8,7 @@ import com.auth.repository.RegionRepository;
 import com.auth.repository.RegionProductRepository;
 import com.auth.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,6 +27,17 @@ public class RegionService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ResourceVersionService resourceVersionService;
+
+    @Autowired
+    private RecommendationListStore recommendationListStore;
+
+    // 经代理调用自身的事务方法；直接 this 调用会绕过 @Transactional
+    @Autowired
+    @Lazy
+    private RegionService self;
+
     // 省份到地域的映射关系
     private static final Map<String, String> PROVINCE_REGION_MAP = new HashMap<>();
 
@@ -90,6 +102,13 @@ public class RegionService {
                 .collect(Collectors.toList());
     }
 
+    // 活跃地域代码，不统计商品数
+    List<String> getActiveRegionCodes() {
+        return regionRepository.findByIsActiveTrue().stream()
+                .map(Region::getCode)
+                .collect(Collectors.toList());
+    }
+
     /**
      * 根据代码获取地域
      */
@@ -197,17 +216,30 @@ public class RegionService {
     }
 
     /**
-     * 获取地域的所有产品
+     * 获取地域的所有产品（优先读预计算列表）
      */
     public List<RegionProductDTO> getRegionProducts(String regionCode) {
+        List<RegionProductDTO> precomputed = recommendationListStore.getRegionList("products:" + regionCode);
+        return precomputed != null ? precomputed : self.loadRegionProducts(regionCode);
+    }
+
+    // 定时任务中调用时没有请求级会话，懒加载的关联要在事务内读取；类内调用须经 self
+    @Transactional(readOnly = true)
+    public List<RegionProductDTO> loadRegionProducts(String regionCode) {
         List<RegionProduct> products = regionProductRepository.findByRegionCode(regionCode);
         return convertToProductDTOs(products);
     }
 
     /**
-     * 获取地域的特色产品
+     * 获取地域的特色产品（优先读预计算列表）
      */
     public List<RegionProductDTO> getFeaturedProducts(String regionCode) {
+        List<RegionProductDTO> precomputed = recommendationListStore.getRegionList("featured:" + regionCode);
+        return precomputed != null ? precomputed : self.loadFeaturedProducts(regionCode);
+    }
+
+    @Transactional(readOnly = true)
+    public List<RegionProductDTO> loadFeaturedProducts(String regionCode) {
         List<RegionProduct> products = regionProductRepository.findFeaturedByRegionCode(regionCode);
         return convertToProductDTOs(products);
     }
@@ -236,6 +268,7 @@ public class RegionService {
             regionProduct.setRecommendReason(reason);
 
             regionProductRepository.save(regionProduct);
+            resourceVersionService.regionsChanged();
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -252,6 +285,7 @@ public class RegionService {
             Optional<RegionProduct> relation = regionProductRepository.findByRegionIdAndProductId(regionId, productId);
             if (relation.isPresent()) {
                 regionProductRepository.delete(relation.get());
+                resourceVersionService.regionsChanged();
                 return true;
             }
             return false;
@@ -332,6 +366,7 @@ public class RegionService {
         );
 
         regionRepository.saveAll(regions);
+        resourceVersionService.regionsChanged();
     }
 
     /**
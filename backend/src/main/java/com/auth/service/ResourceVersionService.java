@@ -0,0 +1,67 @@
+package com.auth.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读接口资源版本号 - 生成强 ETag
+ *
+ * 商品目录用快照版本号，分类和地域各自维护计数器，写操作提交后递增。
+ * ETag 带上启动标识，重启后计数器归零也不会与旧缓存冲突。
+ */
+@Service
+public class ResourceVersionService {
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong categoryVersion = new AtomicLong(1);
+
+    private final AtomicLong regionVersion = new AtomicLong(1);
+
+    /**
+     * 分类数据变更后调用，事务提交后生效
+     */
+    public void categoriesChanged() {
+        TransactionCallbacks.afterCommit(categoryVersion::incrementAndGet);
+    }
+
+    /**
+     * 地域或地域-商品关联变更后调用，事务提交后生效
+     */
+    public void regionsChanged() {
+        TransactionCallbacks.afterCommit(regionVersion::incrementAndGet);
+    }
+
+    /**
+     * 启动初始化器直接写库，就绪后统一递增一次
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        categoryVersion.incrementAndGet();
+        regionVersion.incrementAndGet();
+    }
+
+    public long getRegionVersion() {
+        return regionVersion.get();
+    }
+
+    public String catalogETag() {
+        return "\"catalog-" + bootId + "-" + catalogSnapshotService.getVersion() + "\"";
+    }
+
+    public String categoryETag() {
+        return "\"category-" + bootId + "-" + categoryVersion.get() + "\"";
+    }
+
+    // 地域商品响应包含商品信息，目录变更也要失效
+    public String regionETag() {
+        return "\"region-" + bootId + "-" + regionVersion.get() + "-" + catalogSnapshotService.getVersion() + "\"";
+    }
+}
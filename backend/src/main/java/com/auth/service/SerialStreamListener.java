@@ -0,0 +1,88 @@
+package com.auth.service;
+
+import com.auth.dto.RecommendationResponse;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 把流式推荐回调转到推送线程池上执行
+ *
+ * 解析器在 HTTP 客户端的 I/O 线程上收到增量，回调里写 SSE 是阻塞的 Servlet 写操作，
+ * 一个慢客户端会卡住所有上游请求共用的 I/O 线程。这里每个推荐流有自己的队列，
+ * 同一时刻最多占用线程池的一个线程，回调按提交顺序依次执行。
+ */
+final class SerialStreamListener implements RecommendationStreamListener {
+
+    private final RecommendationStreamListener delegate;
+    private final Executor executor;
+
+    // 以下字段在自身锁内读写
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private boolean draining;
+
+    SerialStreamListener(RecommendationStreamListener delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onDelta(String text) {
+        submit(() -> delegate.onDelta(text));
+    }
+
+    @Override
+    public void onProduct(RecommendationResponse product) {
+        submit(() -> delegate.onProduct(product));
+    }
+
+    @Override
+    public void onField(String field, String value) {
+        submit(() -> delegate.onField(field, value));
+    }
+
+    @Override
+    public void onComplete(RecommendationResponse response) {
+        submit(() -> delegate.onComplete(response));
+    }
+
+    private void submit(Runnable task) {
+        synchronized (this) {
+            tasks.add(task);
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // 应用关闭中，丢弃未推送的事件
+            synchronized (this) {
+                tasks.clear();
+                draining = false;
+            }
+            System.err.println("推送AI推荐事件失败: " + e.getMessage());
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+                if (task == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("推送AI推荐事件失败: " + e.getMessage());
+            }
+        }
+    }
+}
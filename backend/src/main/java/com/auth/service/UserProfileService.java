@@ -0,0 +1,356 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+import com.auth.repository.OrderItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户口味画像
+ *
+ * 由历史订单明细汇总出分类、标签偏好和购买过的商品，放在有容量上限的 LRU 缓存中；
+ * 用户下单后在已缓存的画像上增量累加，取消订单时扣回，不再重新查询。商品的分类和标签按目录版本预先拆好，
+ * 打分只做内存查找。
+ */
+@Service
+public class UserProfileService {
+
+    // 打分权重：分类偏好、标签偏好、回购
+    private static final double CATEGORY_WEIGHT = 0.5;
+    private static final double TAG_WEIGHT = 0.4;
+    private static final double REPURCHASE_WEIGHT = 0.1;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Value("${recommendation.profile.cache-size:10000}")
+    private int cacheSize;
+
+    // 按访问顺序排列，最久未用的在前
+    private final LinkedHashMap<Long, UserProfile> profiles = new LinkedHashMap<>(256, 0.75f, true);
+
+    // 正在从数据库加载画像的用户，记录加载期间提交的订单；与 profiles 同锁
+    private final Map<Long, Loading> loadingProfiles = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    private volatile ProductFeatures features;
+
+    /**
+     * 目录变更后重新拆分商品分类和标签
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        features = compile(event.getSnapshot());
+    }
+
+    /**
+     * 按画像给可用商品打分，返回得分最高的商品；没有购买记录时返回空列表
+     */
+    public List<Product> recommend(Long userId, int limit) {
+        UserProfile profile = getProfile(userId);
+        ProductFeatures current = current();
+        if (profile.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        double[] scores = new double[current.products.size()];
+        Integer[] order = new Integer[scores.length];
+        synchronized (profile) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = profile.score(current.categories[i], current.tags[i], current.products.get(i).getId());
+                order[i] = i;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        List<Product> result = new ArrayList<>(limit);
+        for (int i = 0; i < order.length && result.size() < limit; i++) {
+            if (scores[order[i]] > 0) {
+                result.add(current.products.get(order[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 用户下单后累加到已缓存的画像（订单提交后调用）；画像正在加载时先登记，加载完成后补上；
+     * 未缓存时下次访问会从数据库加载
+     */
+    public void recordOrder(Long userId, Long orderId, Map<Long, Integer> quantities) {
+        UserProfile profile;
+        synchronized (profiles) {
+            profile = profiles.get(userId);
+            if (profile == null) {
+                Loading loading = loadingProfiles.get(userId);
+                if (loading != null) {
+                    loading.orders.add(new PendingOrder(orderId, new HashMap<>(quantities), false));
+                }
+                return;
+            }
+        }
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        synchronized (profile) {
+            // 加载画像时已包含该订单则跳过，避免重复累加；订单提交顺序与ID顺序可能不同，按ID逐个记录
+            if (!profile.orderIds.add(orderId)) {
+                return;
+            }
+            quantities.forEach((productId, quantity) -> profile.add(snapshot.getProduct(productId), productId, quantity));
+        }
+    }
+
+    /**
+     * 订单取消后从已缓存的画像中扣回（取消提交后调用）；画像正在加载时先登记，加载完成后处理
+     */
+    public void retractOrder(Long userId, Long orderId, Map<Long, Integer> quantities) {
+        UserProfile profile;
+        synchronized (profiles) {
+            profile = profiles.get(userId);
+            if (profile == null) {
+                Loading loading = loadingProfiles.get(userId);
+                if (loading != null) {
+                    loading.orders.add(new PendingOrder(orderId, new HashMap<>(quantities), true));
+                }
+                return;
+            }
+        }
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        synchronized (profile) {
+            // 画像中没有该订单（加载时已是取消状态）则无需扣回
+            if (profile.orderIds.remove(orderId)) {
+                profile.subtract(snapshot, quantities);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (profiles) {
+            stats.put("size", profiles.size());
+        }
+        stats.put("maxSize", cacheSize);
+        stats.put("hits", hits.sum());
+        stats.put("loads", loads.sum());
+        return stats;
+    }
+
+    private UserProfile getProfile(Long userId) {
+        synchronized (profiles) {
+            UserProfile cached = profiles.get(userId);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+
+        // 先登记再查询，查询期间提交的订单由 recordOrder 记到登记项上
+        Loading loading;
+        synchronized (profiles) {
+            loading = loadingProfiles.computeIfAbsent(userId, id -> new Loading());
+            loading.loaders++;
+        }
+
+        loads.increment();
+        UserProfile loaded = new UserProfile();
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        try {
+            for (Object[] row : orderItemRepository.findPurchasesByUserId(userId)) {
+                Long orderId = (Long) row[0];
+                Long productId = (Long) row[1];
+                Integer quantity = (Integer) row[2];
+                loaded.add(snapshot.getProduct(productId), productId, quantity);
+                loaded.orderIds.add(orderId);
+            }
+        } catch (RuntimeException e) {
+            synchronized (profiles) {
+                if (--loading.loaders == 0) {
+                    loadingProfiles.remove(userId, loading);
+                }
+            }
+            throw e;
+        }
+
+        synchronized (profiles) {
+            // 并发加载时保留先放入的画像，它可能已经累加过新订单
+            UserProfile existing = profiles.get(userId);
+            if (existing != null) {
+                return existing;
+            }
+            // 按到达顺序补上查询没有读到的订单（查询时尚未提交），扣回查询读到、随后才取消的订单
+            loadingProfiles.remove(userId, loading);
+            for (PendingOrder pending : loading.orders) {
+                if (pending.retract) {
+                    if (loaded.orderIds.remove(pending.orderId)) {
+                        loaded.subtract(snapshot, pending.quantities);
+                    }
+                } else if (loaded.orderIds.add(pending.orderId)) {
+                    pending.quantities.forEach((productId, quantity) ->
+                            loaded.add(snapshot.getProduct(productId), productId, quantity));
+                }
+            }
+            profiles.put(userId, loaded);
+            Iterator<Map.Entry<Long, UserProfile>> it = profiles.entrySet().iterator();
+            while (profiles.size() > cacheSize && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return loaded;
+    }
+
+    private ProductFeatures current() {
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        ProductFeatures current = features;
+        if (current == null || current.version != snapshot.getVersion()) {
+            current = compile(snapshot);
+            features = current;
+        }
+        return current;
+    }
+
+    private static ProductFeatures compile(CatalogSnapshot snapshot) {
+        List<Product> products = snapshot.getAvailableProducts();
+        String[] categories = new String[products.size()];
+        String[][] tags = new String[products.size()][];
+        for (int i = 0; i < products.size(); i++) {
+            categories[i] = products.get(i).getCategory();
+            tags[i] = splitTags(products.get(i).getTags());
+        }
+        return new ProductFeatures(snapshot.getVersion(), products, categories, tags);
+    }
+
+    private static String[] splitTags(String tags) {
+        if (tags == null) {
+            return new String[0];
+        }
+        List<String> result = new ArrayList<>();
+        for (String tag : tags.split("[,，]")) {
+            String trimmed = tag.trim();
+            if (!trimmed.isEmpty()) {
+                result.add(trimmed);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * 单个用户的画像，读写都在自身锁内进行
+     */
+    private static final class UserProfile {
+        private final Map<String, Double> categoryWeights = new HashMap<>();
+        private final Map<String, Double> tagWeights = new HashMap<>();
+        private final Map<Long, Integer> purchased = new HashMap<>();
+        private double maxCategoryWeight;
+        private double maxTagWeight;
+        // 已累加的订单ID
+        private final Set<Long> orderIds = new HashSet<>();
+
+        private boolean isEmpty() {
+            return purchased.isEmpty();
+        }
+
+        private void add(Product product, Long productId, int quantity) {
+            purchased.merge(productId, quantity, Integer::sum);
+            if (product == null) {
+                return;
+            }
+            if (product.getCategory() != null) {
+                maxCategoryWeight = Math.max(maxCategoryWeight,
+                        categoryWeights.merge(product.getCategory(), (double) quantity, Double::sum));
+            }
+            for (String tag : splitTags(product.getTags())) {
+                maxTagWeight = Math.max(maxTagWeight, tagWeights.merge(tag, (double) quantity, Double::sum));
+            }
+        }
+
+        // 扣回一个订单，归零的偏好移除，最大值按剩余偏好重算
+        private void subtract(CatalogSnapshot snapshot, Map<Long, Integer> quantities) {
+            quantities.forEach((productId, quantity) -> {
+                purchased.computeIfPresent(productId, (id, total) -> total > quantity ? total - quantity : null);
+                Product product = snapshot.getProduct(productId);
+                if (product == null) {
+                    return;
+                }
+                if (product.getCategory() != null) {
+                    categoryWeights.computeIfPresent(product.getCategory(),
+                            (category, weight) -> weight > quantity ? weight - quantity : null);
+                }
+                for (String tag : splitTags(product.getTags())) {
+                    tagWeights.computeIfPresent(tag, (t, weight) -> weight > quantity ? weight - quantity : null);
+                }
+            });
+            maxCategoryWeight = max(categoryWeights);
+            maxTagWeight = max(tagWeights);
+        }
+
+        private static double max(Map<String, Double> weights) {
+            double max = 0;
+            for (double weight : weights.values()) {
+                max = Math.max(max, weight);
+            }
+            return max;
+        }
+
+        // 各项偏好按最大值归一到 0~1，标签取平均避免标签多的商品占便宜
+        private double score(String category, String[] tags, Long productId) {
+            double score = 0;
+            if (category != null && maxCategoryWeight > 0) {
+                score += CATEGORY_WEIGHT * categoryWeights.getOrDefault(category, 0.0) / maxCategoryWeight;
+            }
+            if (tags.length > 0 && maxTagWeight > 0) {
+                double tagScore = 0;
+                for (String tag : tags) {
+                    tagScore += tagWeights.getOrDefault(tag, 0.0);
+                }
+                score += TAG_WEIGHT * tagScore / (tags.length * maxTagWeight);
+            }
+            if (purchased.containsKey(productId)) {
+                score += REPURCHASE_WEIGHT;
+            }
+            return score;
+        }
+    }
+
+    /**
+     * 一次画像加载的登记项：并发加载同一用户的线程数和加载期间提交、取消的订单
+     */
+    private static final class Loading {
+        private int loaders;
+        private final List<PendingOrder> orders = new ArrayList<>();
+    }
+
+    private static final class PendingOrder {
+        private final long orderId;
+        private final Map<Long, Integer> quantities;
+        private final boolean retract;
+
+        private PendingOrder(long orderId, Map<Long, Integer> quantities, boolean retract) {
+            this.orderId = orderId;
+            this.quantities = quantities;
+            this.retract = retract;
+        }
+    }
+
+    private static final class ProductFeatures {
+        private final long version;
+        private final List<Product> products;
+        private final String[] categories;
+        private final String[][] tags;
+
+        private ProductFeatures(long version, List<Product> products, String[] categories, String[][] tags) {
+            this.version = version;
+            this.products = products;
+            this.categories = categories;
+            this.tags = tags;
+        }
+    }
+}
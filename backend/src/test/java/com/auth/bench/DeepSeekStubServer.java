@@ -0,0 +1,229 @@
+package com.auth.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地 DeepSeek 替身服务
+ *
+ * 兼容 /chat/completions 的普通和流式（SSE）响应，可配置延迟分布、错误率和返回的商品，
+ * 压测时把 deepseek.api.url 指向它即可，不会调用付费接口。
+ *
+ * 单独运行：java ... com.auth.bench.DeepSeekStubServer [port]，
+ * 用系统属性 stub.latency-median-ms / stub.latency-p99-ms / stub.error-rate / stub.answers（逗号分隔）调整行为。
+ */
+public class DeepSeekStubServer {
+
+    // 正态分布 99 分位对应的标准差倍数
+    private static final double Z_99 = 2.326;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile double latencyMedianMs = 300;
+    private volatile double latencyP99Ms = 1200;
+    private volatile double errorRate = 0;
+    private volatile List<String> answers = Arrays.asList("经典珍珠奶茶", "芒果冰沙", "咖啡奶茶", "黑糖珍珠奶茶");
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder streamRequests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public DeepSeekStubServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 512);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "deepseek-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/chat/completions", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/chat/completions";
+    }
+
+    /**
+     * 延迟按对数正态分布抽样，由中位数和 99 分位确定；两者相等时为固定延迟
+     */
+    public void setLatency(double medianMs, double p99Ms) {
+        this.latencyMedianMs = medianMs;
+        this.latencyP99Ms = Math.max(medianMs, p99Ms);
+    }
+
+    /**
+     * 返回错误的比例（0~1），错误在 500 和 429 之间随机
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * 随机推荐的商品名称
+     */
+    public void setAnswers(List<String> answers) {
+        this.answers = new ArrayList<>(answers);
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getStreamRequestCount() {
+        return streamRequests.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public void resetCounters() {
+        requests.reset();
+        streamRequests.reset();
+        errors.reset();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.increment();
+            Map<?, ?> body = MAPPER.readValue(readAll(exchange.getRequestBody()), Map.class);
+            boolean stream = Boolean.TRUE.equals(body.get("stream"));
+            if (stream) {
+                streamRequests.increment();
+            }
+
+            long latency = sampleLatency();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < errorRate) {
+                errors.increment();
+                sleep(latency / 2);
+                sendText(exchange, random.nextBoolean() ? 500 : 429, "{\"error\":{\"message\":\"stub error\"}}");
+                return;
+            }
+
+            String content = answer(answers.get(random.nextInt(answers.size())));
+            if (stream) {
+                sendStream(exchange, content, latency);
+            } else {
+                sleep(latency);
+                Map<String, Object> message = new HashMap<>();
+                message.put("role", "assistant");
+                message.put("content", content);
+                Map<String, Object> choice = new HashMap<>();
+                choice.put("index", 0);
+                choice.put("message", message);
+                Map<String, Object> response = new HashMap<>();
+                response.put("model", "deepseek-chat");
+                response.put("choices", Collections.singletonList(choice));
+                sendText(exchange, 200, MAPPER.writeValueAsString(response));
+            }
+        } catch (Exception e) {
+            sendText(exchange, 400, "{\"error\":{\"message\":\"bad request\"}}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // 首个分片前等待一半延迟，剩余延迟平均分摊到后续分片
+    private void sendStream(HttpExchange exchange, String content, long latency) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        sleep(latency / 2);
+        int chunkSize = 4;
+        int chunks = (content.length() + chunkSize - 1) / chunkSize;
+        long perChunk = chunks > 0 ? latency / 2 / chunks : 0;
+        for (int i = 0; i < content.length(); i += chunkSize) {
+            String piece = content.substring(i, Math.min(content.length(), i + chunkSize));
+            Map<String, Object> delta = new HashMap<>();
+            delta.put("content", piece);
+            Map<String, Object> choice = new HashMap<>();
+            choice.put("index", 0);
+            choice.put("delta", delta);
+            String data = MAPPER.writeValueAsString(Collections.singletonMap("choices", Collections.singletonList(choice)));
+            out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            sleep(perChunk);
+        }
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private long sampleLatency() {
+        if (latencyMedianMs <= 0) {
+            return 0;
+        }
+        double sigma = Math.log(latencyP99Ms / latencyMedianMs) / Z_99;
+        return Math.round(latencyMedianMs * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    private static String answer(String product) {
+        return "推荐产品：" + product + "\n推荐理由：压测替身服务返回的推荐\n产品描述：" + product + "，口感顺滑";
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        DeepSeekStubServer stub = new DeepSeekStubServer(args.length > 0 ? Integer.parseInt(args[0]) : 8089);
+        stub.setLatency(Double.parseDouble(System.getProperty("stub.latency-median-ms", "300")),
+                Double.parseDouble(System.getProperty("stub.latency-p99-ms", "1200")));
+        stub.setErrorRate(Double.parseDouble(System.getProperty("stub.error-rate", "0")));
+        String answers = System.getProperty("stub.answers");
+        if (answers != null && !answers.isEmpty()) {
+            stub.setAnswers(Arrays.asList(answers.split(",")));
+        }
+        stub.start();
+        System.out.println("DeepSeek 替身服务已启动: " + stub.getUrl());
+    }
+}
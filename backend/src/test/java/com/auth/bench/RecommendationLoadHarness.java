@@ -0,0 +1,227 @@
+package com.auth.bench;
+
+import com.auth.AuthApplication;
+import com.auth.dto.RecommendationRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI推荐接口压测
+ *
+ * 每个场景启动一个连接内存 H2（MySQL 模式）的应用实例，deepseek.api.url 指向本地替身服务，
+ * 用固定并发的闭环客户端请求 /api/recommendations/ai-recommendation，输出吞吐量、p50/p95/p99、
+ * 响应来源分布和上游调用次数。不是单元测试，mvn test 不会运行它：
+ *
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat cp.txt) com.auth.bench.RecommendationLoadHarness
+ *
+ * 系统属性：bench.requests（每场景请求数，默认 2000）、bench.concurrency（默认 32）、
+ * bench.scenarios（默认 cache,coalescing,uncached,fallback）、stub.latency-median-ms、stub.latency-p99-ms。
+ */
+public class RecommendationLoadHarness {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final PrintStream CONSOLE = System.out;
+
+    public static void main(String[] args) throws Exception {
+        int requests = Integer.getInteger("bench.requests", 2000);
+        int concurrency = Integer.getInteger("bench.concurrency", 32);
+        String[] scenarios = System.getProperty("bench.scenarios", "cache,coalescing,uncached,fallback").split(",");
+        double medianMs = Double.parseDouble(System.getProperty("stub.latency-median-ms", "300"));
+        double p99Ms = Double.parseDouble(System.getProperty("stub.latency-p99-ms", "1200"));
+
+        DeepSeekStubServer stub = new DeepSeekStubServer(0);
+        stub.start();
+        try {
+            for (String scenario : scenarios) {
+                stub.setLatency(medianMs, p99Ms);
+                stub.setErrorRate("fallback".equals(scenario) ? 1.0 : 0);
+                runScenario(scenario.trim(), stub, requests, concurrency);
+            }
+        } finally {
+            stub.stop();
+        }
+        System.exit(0);
+    }
+
+    private static void runScenario(String scenario, DeepSeekStubServer stub, int requests, int concurrency)
+            throws Exception {
+        CONSOLE.println("==== " + scenario + "：请求 " + requests + "，并发 " + concurrency + " ====");
+        ConfigurableApplicationContext context = startApplication(scenario, stub.getUrl());
+        silence();
+        try {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            URL url = new URL("http://127.0.0.1:" + port + "/api/recommendations/ai-recommendation");
+
+            // 预热：JIT、连接池、目录快照和各类索引
+            load(url, scenario, Math.min(200, requests), concurrency, new AtomicInteger(-1_000_000));
+            stub.resetCounters();
+
+            long start = System.nanoTime();
+            Result result = load(url, scenario, requests, concurrency, new AtomicInteger());
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report(result, seconds, stub);
+        } finally {
+            context.close();
+            restoreOutput();
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(String scenario, String stubUrl) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url",
+                "jdbc:h2:mem:bench_" + scenario + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.database-platform", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.auth", "WARN");
+        properties.put("logging.level.org.hibernate.SQL", "WARN");
+        properties.put("logging.level.org.hibernate.type.descriptor.sql.BasicBinder", "WARN");
+        properties.put("deepseek.api.url", stubUrl);
+        properties.put("deepseek.api.key", "bench");
+        // uncached 每个请求都不同，开着缓存也不会命中；coalescing 和 fallback 关闭缓存，直接观察上游路径
+        properties.put("ai.recommendation.cache.enabled", "cache".equals(scenario) || "uncached".equals(scenario));
+        properties.put("ai.recommendation.coalescing.enabled", !"uncached".equals(scenario));
+        // 以命令行参数传入，优先级高于 application.properties
+        List<String> args = new ArrayList<>();
+        properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+        return new SpringApplicationBuilder(AuthApplication.class).run(args.toArray(new String[0]));
+    }
+
+    // cache / coalescing 反复发送相同请求，uncached 每个请求都不同，fallback 上游全部报错
+    private static RecommendationRequest requestFor(String scenario, int sequence) {
+        String[] preferences = {"喜欢甜的", "喜欢水果", "喜欢茶", "喜欢奶香"};
+        String[] weathers = {"sunny", "rainy", "snowy", "cloudy"};
+        if ("cache".equals(scenario) || "coalescing".equals(scenario)) {
+            return new RecommendationRequest(preferences[0], weathers[0], "开心");
+        }
+        int i = Math.abs(sequence);
+        return new RecommendationRequest(preferences[i % 4], weathers[(i / 4) % 4], "心情" + i);
+    }
+
+    private static Result load(URL url, String scenario, int requests, int concurrency, AtomicInteger sequence)
+            throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        Result result = new Result(requests);
+        AtomicInteger remaining = new AtomicInteger(requests);
+        for (int w = 0; w < concurrency; w++) {
+            workers.execute(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    RecommendationRequest body = requestFor(scenario, sequence.getAndIncrement());
+                    long begin = System.nanoTime();
+                    String source = post(url, body);
+                    result.record((System.nanoTime() - begin) / 1_000_000.0, source);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        return result;
+    }
+
+    // 读完响应体且不调用 disconnect，让 HttpURLConnection 复用长连接
+    private static String post(URL url, RecommendationRequest body) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(30000);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(MAPPER.writeValueAsBytes(body));
+            }
+            if (connection.getResponseCode() != 200) {
+                InputStream error = connection.getErrorStream();
+                if (error != null) {
+                    error.close();
+                }
+                return "http-" + connection.getResponseCode();
+            }
+            Map<?, ?> response;
+            try (InputStream in = connection.getInputStream()) {
+                response = MAPPER.readValue(in, Map.class);
+            }
+            Object source = response.get("source");
+            return Boolean.TRUE.equals(response.get("success")) ? String.valueOf(source) : "error";
+        } catch (Exception e) {
+            return "exception";
+        }
+    }
+
+    private static void report(Result result, double seconds, DeepSeekStubServer stub) {
+        double[] latencies = result.sortedLatencies();
+        CONSOLE.println(String.format("吞吐量 %.1f 次/秒，p50 %.1fms，p95 %.1fms，p99 %.1fms，最大 %.1fms",
+                latencies.length / seconds, percentile(latencies, 50), percentile(latencies, 95),
+                percentile(latencies, 99), latencies.length > 0 ? latencies[latencies.length - 1] : 0));
+        CONSOLE.println("响应来源 " + result.sources + "，上游请求 " + stub.getRequestCount() +
+                "（其中报错 " + stub.getErrorCount() + "）");
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    // 应用在请求路径上大量打印日志，测量期间丢弃，避免控制台输出成为瓶颈
+    private static void silence() {
+        PrintStream discard = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        System.setOut(discard);
+        System.setErr(discard);
+    }
+
+    private static void restoreOutput() {
+        System.setOut(CONSOLE);
+        System.setErr(CONSOLE);
+    }
+
+    private static final class Result {
+        private final double[] latencies;
+        private final AtomicInteger count = new AtomicInteger();
+        private final Map<String, Integer> sources = new TreeMap<>();
+
+        private Result(int capacity) {
+            latencies = new double[capacity];
+        }
+
+        private void record(double latencyMs, String source) {
+            latencies[count.getAndIncrement()] = latencyMs;
+            synchronized (sources) {
+                sources.merge(source, 1, Integer::sum);
+            }
+        }
+
+        private double[] sortedLatencies() {
+            double[] sorted = Arrays.copyOf(latencies, count.get());
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.auth.service;
+
+import com.auth.dto.CartDTO;
+import com.auth.entity.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class CartStoreTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private CartService cartService;
+    private CartStore store;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:cart" + DATABASES.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE TABLE carts (id BIGINT PRIMARY KEY, user_id BIGINT, total_price DOUBLE, " +
+                "total_quantity INT, updated_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE cart_items (id BIGINT AUTO_INCREMENT PRIMARY KEY, cart_id BIGINT NOT NULL, " +
+                "product_id BIGINT NOT NULL, quantity INT, created_at TIMESTAMP, updated_at TIMESTAMP, " +
+                "UNIQUE (cart_id, product_id), FOREIGN KEY (cart_id) REFERENCES carts (id))");
+
+        Product tea = product(1L, 10.0);
+        Product coffee = product(2L, 20.0);
+        CatalogSnapshotService catalogSnapshotService = mock(CatalogSnapshotService.class);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(CatalogSnapshot.of(1, Arrays.asList(tea, coffee)));
+
+        // 用户ID即购物车ID
+        cartService = mock(CartService.class);
+        when(cartService.getCartByUserId(anyLong())).thenAnswer(invocation -> {
+            Long userId = invocation.getArgument(0);
+            jdbcTemplate.update("MERGE INTO carts (id, user_id, total_price, total_quantity) KEY (id) VALUES (?, ?, 0, 0)",
+                    userId, userId);
+            CartDTO cart = new CartDTO();
+            cart.setId(userId);
+            cart.setUserId(userId);
+            return cart;
+        });
+
+        store = new CartStore();
+        ReflectionTestUtils.setField(store, "cartService", cartService);
+        ReflectionTestUtils.setField(store, "catalogSnapshotService", catalogSnapshotService);
+        ReflectionTestUtils.setField(store, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(store, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "flushIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(store, "idleEvictSeconds", 1800L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    void flushWritesOnlyFinalState() {
+        store.addToCart(7L, 1L, 2);
+        store.addToCart(7L, 2L, 1);
+        store.updateCartItemQuantity(7L, 1L, 5);
+        store.flushAll();
+
+        assertEquals(items(1L, 5, 2L, 1), persistedItems(7L));
+        assertEquals(70.0, jdbcTemplate.queryForObject("SELECT total_price FROM carts WHERE id = 7", Double.class));
+
+        store.removeFromCart(7L, 2L);
+        store.flushAll();
+        assertEquals(items(1L, 5), persistedItems(7L));
+    }
+
+    @Test
+    void flushesWhileApplicationSchedulerIsBusy() throws Exception {
+        // Spring 默认调度器只有一个线程，模拟推荐预计算等长任务占住它
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.initialize();
+        CountDownLatch jobStarted = new CountDownLatch(1);
+        CountDownLatch releaseJob = new CountDownLatch(1);
+        scheduler.execute(() -> {
+            jobStarted.countDown();
+            await(releaseJob);
+        });
+        try {
+            assertTrue(jobStarted.await(5, TimeUnit.SECONDS));
+            ReflectionTestUtils.setField(store, "flushIntervalMs", 20L);
+            store.start();
+
+            store.addToCart(7L, 1L, 3);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (persistedItems(7L).isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(items(1L, 3), persistedItems(7L));
+            assertEquals(1, releaseJob.getCount(), "长任务仍在运行");
+        } finally {
+            releaseJob.countDown();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void backgroundFlushCannotOverwriteCheckout() throws Exception {
+        store.addToCart(7L, 1L, 2);
+        store.flushAll();
+        store.addToCart(7L, 2L, 1);
+
+        // 下单事务清空并写回购物车后，在提交前停住
+        CountDownLatch flushed = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        Thread checkout = new Thread(() -> transactionTemplate.execute(status -> {
+            store.clearCart(7L);
+            store.flush(7L);
+            flushed.countDown();
+            await(commit);
+            return null;
+        }));
+        checkout.start();
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+
+        // 后台写回跳过正在写回的购物车，不阻塞也不写入旧内容
+        long started = System.currentTimeMillis();
+        store.flushAll();
+        assertTrue(System.currentTimeMillis() - started < 1000);
+
+        commit.countDown();
+        checkout.join(5000);
+        store.flushAll();
+        assertTrue(persistedItems(7L).isEmpty());
+        assertTrue(store.getCart(7L).getCartItems().isEmpty());
+    }
+
+    @Test
+    void rollbackRestoresClearedItems() {
+        store.addToCart(7L, 1L, 2);
+        store.flushAll();
+
+        transactionTemplate.execute(status -> {
+            store.clearCart(7L);
+            store.addToCart(7L, 2L, 1);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        CartDTO cart = store.getCart(7L);
+        assertEquals(2, cart.getCartItems().size());
+        store.flushAll();
+        assertEquals(items(1L, 2, 2L, 1), persistedItems(7L));
+    }
+
+    @Test
+    void deletedCartIsDroppedWithoutBlockingOthers() {
+        store.addToCart(7L, 1L, 1);
+        store.addToCart(8L, 1L, 1);
+        store.flushAll();
+
+        store.addToCart(7L, 2L, 4);
+        store.addToCart(8L, 2L, 4);
+        jdbcTemplate.update("DELETE FROM cart_items WHERE cart_id = 8");
+        jdbcTemplate.update("DELETE FROM carts WHERE id = 8");
+        store.flushAll();
+
+        assertEquals(items(1L, 1, 2L, 4), persistedItems(7L));
+        assertTrue(((Set<?>) ReflectionTestUtils.getField(store, "dirty")).isEmpty());
+        verify(cartService).forgetCart(8L);
+    }
+
+    @Test
+    void failingCartDoesNotBlockItsBatch() {
+        store.addToCart(7L, 1L, 1);
+        store.addToCart(8L, 1L, 1);
+        store.flushAll();
+
+        // 商品3不在目录快照中，直接放进内存状态模拟一条会被数据库拒绝的写入
+        jdbcTemplate.execute("ALTER TABLE cart_items ADD CONSTRAINT known_product CHECK (product_id < 3)");
+        store.addToCart(7L, 2L, 2);
+        store.addToCart(8L, 2L, 2);
+        Map<?, ?> carts = (Map<?, ?>) ReflectionTestUtils.getField(store, "carts");
+        @SuppressWarnings("unchecked")
+        Map<Long, Integer> items = (Map<Long, Integer>) ReflectionTestUtils.getField(carts.get(8L), "items");
+        items.put(3L, 1);
+        store.flushAll();
+
+        assertEquals(items(1L, 1, 2L, 2), persistedItems(7L));
+        assertEquals(items(1L, 1), persistedItems(8L));
+        assertEquals(Collections.singleton(8L), ReflectionTestUtils.getField(store, "dirty"));
+    }
+
+    private Map<Long, Integer> persistedItems(Long cartId) {
+        Map<Long, Integer> items = new TreeMap<>();
+        jdbcTemplate.query("SELECT product_id, quantity FROM cart_items WHERE cart_id = ?",
+                rs -> {
+                    items.put(rs.getLong(1), rs.getInt(2));
+                }, cartId);
+        return items;
+    }
+
+    private static Map<Long, Integer> items(Object... pairs) {
+        Map<Long, Integer> items = new TreeMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            items.put((Long) pairs[i], (Integer) pairs[i + 1]);
+        }
+        return items;
+    }
+
+    private static Product product(Long id, double price) {
+        Product product = new Product("商品" + id, "", price, "classic");
+        product.setId(id);
+        product.setAvailable(true);
+        return product;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.auth.service;
+
+import com.auth.dto.CursorPage;
+import com.auth.dto.OrderDTO;
+import com.auth.dto.PageCursor;
+import com.auth.entity.Order;
+import com.auth.entity.User;
+import com.auth.repository.OrderRepository;
+import com.auth.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class OrderCursorPageTest {
+
+    private static final LocalDateTime SAME_TIME = LocalDateTime.of(2024, 5, 1, 12, 0, 0);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private OrderService orderService;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        orderService = new OrderService();
+        ReflectionTestUtils.setField(orderService, "orderRepository", orderRepository);
+        alice = userRepository.save(new User("alice", "x", "alice@example.com"));
+        bob = userRepository.save(new User("bob", "x", "bob@example.com"));
+    }
+
+    @Test
+    void pagesThroughOrdersWithEqualOrderDate() {
+        // 五个订单中三个同一时刻下单，每页两条，分页边界正好落在同一时刻的订单中间
+        List<Long> expected = new ArrayList<>();
+        expected.add(order(alice, SAME_TIME.plusMinutes(1)));
+        Long a = order(alice, SAME_TIME);
+        Long b = order(bob, SAME_TIME);
+        Long c = order(alice, SAME_TIME);
+        expected.addAll(Arrays.asList(c, b, a));
+        expected.add(order(bob, SAME_TIME.minusMinutes(1)));
+        entityManager.clear();
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<OrderDTO> page = orderService.getAllOrdersPage(cursor, 2);
+            page.getItems().forEach(order -> seen.add(order.getId()));
+            assertEquals(page.getNextCursor() != null, page.isHasMore());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void userPagesStayWithinUserAcrossEqualOrderDate() {
+        Long a = order(alice, SAME_TIME);
+        order(bob, SAME_TIME);
+        Long c = order(alice, SAME_TIME);
+        entityManager.clear();
+
+        CursorPage<OrderDTO> first = orderService.getUserOrdersPage(alice.getId(), null, 1);
+        CursorPage<OrderDTO> second = orderService.getUserOrdersPage(alice.getId(), first.getNextCursor(), 1);
+
+        assertEquals(Collections.singletonList(c), ids(first));
+        assertEquals(Collections.singletonList(a), ids(second));
+        assertFalse(second.isHasMore());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void cursorRoundTripKeepsFractionalSeconds() {
+        LocalDateTime orderDate = SAME_TIME.withNano(123456789);
+        PageCursor decoded = PageCursor.decode(PageCursor.ofOrderDate(orderDate, 42L).encode());
+
+        assertEquals(orderDate, decoded.getOrderDate());
+        assertEquals(Long.valueOf(42L), decoded.getId());
+    }
+
+    @Test
+    void rejectsIdCursorAndGarbage() {
+        String idCursor = PageCursor.ofId(5L).encode();
+        assertThrows(IllegalArgumentException.class, () -> orderService.getAllOrdersPage(idCursor, 2));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not-a-cursor"));
+        assertNull(PageCursor.decode(" "));
+    }
+
+    private Long order(User user, LocalDateTime orderDate) {
+        Order order = new Order(user, null);
+        order.setOrderDate(orderDate);
+        order.setTotalPrice(10.0);
+        return orderRepository.saveAndFlush(order).getId();
+    }
+
+    private static List<Long> ids(CursorPage<OrderDTO> page) {
+        List<Long> ids = new ArrayList<>();
+        page.getItems().forEach(order -> ids.add(order.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,127 @@
+package com.auth.service;
+
+import com.auth.repository.OrderItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ProductCoPurchaseIndexTest {
+
+    private OrderItemRepository orderItemRepository;
+    private ProductCoPurchaseIndex index;
+
+    @BeforeEach
+    void setUp() {
+        orderItemRepository = mock(OrderItemRepository.class);
+        index = new ProductCoPurchaseIndex();
+        ReflectionTestUtils.setField(index, "orderItemRepository", orderItemRepository);
+    }
+
+    @Test
+    void ordersCommittedDuringRebuildAreCountedOnce() {
+        when(orderItemRepository.findMaxOrderId()).thenReturn(11L);
+        when(orderItemRepository.findOrderProductPairs(anyLong())).thenAnswer(invocation -> {
+            // 查询期间：订单10已在结果中、回调晚到；订单11在截止点内但查询时未提交；订单12在截止点之后
+            index.recordOrder(10L, Arrays.asList(1L, 2L));
+            index.recordOrder(11L, Arrays.asList(1L, 2L));
+            index.recordOrder(12L, Arrays.asList(1L, 3L));
+            return pairs(10L, 1L, 10L, 2L);
+        });
+
+        index.rebuild();
+
+        assertEquals(counts(2L, 2, 3L, 1), row(1L));
+        assertEquals(3, orders(1L));
+        assertNull(ReflectionTestUtils.getField(index, "pendingOrders"));
+    }
+
+    @Test
+    void cancelledOrderIsRetracted() {
+        index.recordOrder(10L, Arrays.asList(1L, 2L, 3L));
+        index.recordOrder(11L, Arrays.asList(1L, 2L));
+
+        index.retractOrder(10L, Arrays.asList(1L, 2L, 3L));
+
+        assertEquals(counts(2L, 1), row(1L));
+        assertEquals(1, orders(1L));
+        assertNull(rows().get(3L));
+        assertEquals(Collections.singletonList(2L), index.getRelatedProductIds(1L, 5));
+    }
+
+    @Test
+    void cancellationDuringRebuildIsReplayed() {
+        when(orderItemRepository.findMaxOrderId()).thenReturn(11L);
+        when(orderItemRepository.findOrderProductPairs(anyLong())).thenAnswer(invocation -> {
+            // 查询读到取消前的订单10；订单11查询时已取消，回调晚到；订单12提交后又取消
+            index.retractOrder(10L, Arrays.asList(1L, 2L));
+            index.retractOrder(11L, Arrays.asList(1L, 3L));
+            index.recordOrder(12L, Arrays.asList(1L, 4L));
+            index.retractOrder(12L, Arrays.asList(1L, 4L));
+            return pairs(9L, 1L, 9L, 2L, 10L, 1L, 10L, 2L);
+        });
+
+        index.rebuild();
+
+        assertEquals(counts(2L, 1), row(1L));
+        assertEquals(1, orders(1L));
+        assertNull(rows().get(3L));
+        assertNull(rows().get(4L));
+    }
+
+    @Test
+    void restoredOrderDuringRebuildIsCountedAgain() {
+        when(orderItemRepository.findMaxOrderId()).thenReturn(10L);
+        when(orderItemRepository.findOrderProductPairs(anyLong())).thenAnswer(invocation -> {
+            // 订单10查询时处于取消状态，随后恢复
+            index.recordOrder(10L, Arrays.asList(1L, 2L));
+            return pairs(9L, 1L, 9L, 2L);
+        });
+
+        index.rebuild();
+
+        assertEquals(counts(2L, 2), row(1L));
+    }
+
+    private Map<Long, Integer> row(Long productId) {
+        Object row = rows().get(productId);
+        assertNotNull(row);
+        long[] ids = (long[]) ReflectionTestUtils.getField(row, "ids");
+        int[] counts = (int[]) ReflectionTestUtils.getField(row, "counts");
+        Map<Long, Integer> result = new TreeMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            result.put(ids[i], counts[i]);
+        }
+        return result;
+    }
+
+    private int orders(Long productId) {
+        return (Integer) ReflectionTestUtils.getField(rows().get(productId), "orders");
+    }
+
+    private Map<?, ?> rows() {
+        return (Map<?, ?>) ReflectionTestUtils.getField(index, "rows");
+    }
+
+    // 订单ID、商品ID 交替，按订单ID排序
+    private static List<Object[]> pairs(Long... values) {
+        List<Object[]> pairs = new ArrayList<>();
+        for (int i = 0; i < values.length; i += 2) {
+            pairs.add(new Object[]{values[i], values[i + 1]});
+        }
+        return pairs;
+    }
+
+    private static Map<Long, Integer> counts(Object... pairs) {
+        Map<Long, Integer> counts = new TreeMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            counts.put((Long) pairs[i], (Integer) pairs[i + 1]);
+        }
+        return counts;
+    }
+}
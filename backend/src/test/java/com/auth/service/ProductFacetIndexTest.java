@@ -0,0 +1,126 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProductFacetIndexTest {
+
+    private CatalogSnapshotService catalogSnapshotService;
+    private ProductFacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        catalogSnapshotService = mock(CatalogSnapshotService.class);
+        Product hidden = product(6L, "classic", 12.0, "珍珠");
+        hidden.setAvailable(false);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(CatalogSnapshot.of(1, Arrays.asList(
+                product(1L, "classic", 12.0, "珍珠,热饮"),
+                product(2L, "classic", 18.0, "珍珠"),
+                product(3L, "fruit", 15.0, "清爽，冷饮"),
+                product(4L, "fruit", 30.0, "清爽"),
+                product(5L, "coffee", 22.0, null),
+                hidden)));
+
+        index = new ProductFacetIndex();
+        ReflectionTestUtils.setField(index, "catalogSnapshotService", catalogSnapshotService);
+    }
+
+    @Test
+    void noSelectionReturnsAllAvailableProductsAndCounts() {
+        ProductFacetIndex.FacetResult result = query(null, null, null);
+
+        assertEquals(5, result.getTotal());
+        assertEquals(counts("classic", 2, "fruit", 2, "coffee", 1), result.getCategoryCounts());
+        assertEquals(counts("0-15", 1, "15-20", 2, "20-25", 1, "25-30", 0, "30+", 1), result.getPriceBandCounts());
+        assertEquals(counts("冷饮", 1, "清爽", 2, "热饮", 1, "珍珠", 2), new TreeMap<>(result.getTagCounts()));
+    }
+
+    @Test
+    void valuesWithinFacetAreUnionedAndFacetsIntersected() {
+        ProductFacetIndex.FacetResult result = query(Arrays.asList("classic", "fruit"), Collections.singletonList("15-20"), null);
+
+        assertEquals(Arrays.asList(2L, 3L), ids(result));
+        assertEquals(2, result.getTotal());
+    }
+
+    @Test
+    void facetCountsIgnoreOwnSelection() {
+        ProductFacetIndex.FacetResult result = query(Collections.singletonList("classic"), null, null);
+
+        // 分类计数不受已选分类影响，切换分类时其他选项不会变成 0
+        assertEquals(counts("classic", 2, "fruit", 2, "coffee", 1), result.getCategoryCounts());
+        // 价格和标签计数只统计已选分类
+        assertEquals(counts("0-15", 1, "15-20", 1, "20-25", 0, "25-30", 0, "30+", 0), result.getPriceBandCounts());
+        assertEquals(Integer.valueOf(0), result.getTagCounts().get("清爽"));
+        assertEquals(Integer.valueOf(2), result.getTagCounts().get("珍珠"));
+    }
+
+    @Test
+    void priceBandLowerBoundIsInclusive() {
+        assertEquals(Collections.singletonList(3L), ids(query(null, Collections.singletonList("15-20"), Collections.singletonList("清爽"))));
+        assertEquals(Collections.singletonList(4L), ids(query(null, Collections.singletonList("30+"), null)));
+    }
+
+    @Test
+    void unknownValueMatchesNothing() {
+        ProductFacetIndex.FacetResult result = query(Collections.singletonList("tea"), null, null);
+
+        assertEquals(0, result.getTotal());
+        assertEquals(Integer.valueOf(0), result.getPriceBandCounts().get("0-15"));
+    }
+
+    @Test
+    void limitCapsProductsButNotTotal() {
+        ProductFacetIndex.FacetResult result = index.query(null, null, null, 2);
+
+        assertEquals(Arrays.asList(1L, 2L), ids(result));
+        assertEquals(5, result.getTotal());
+    }
+
+    @Test
+    void catalogVersionChangeRecompiles() {
+        query(null, null, null);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(CatalogSnapshot.of(2,
+                Collections.singletonList(product(7L, "coffee", 25.0, "热饮"))));
+
+        ProductFacetIndex.FacetResult result = query(null, null, null);
+
+        assertEquals(Collections.singletonList(7L), ids(result));
+        assertEquals(counts("coffee", 1), result.getCategoryCounts());
+    }
+
+    private ProductFacetIndex.FacetResult query(List<String> categories, List<String> priceBands, List<String> tags) {
+        return index.query(categories, priceBands, tags, 100);
+    }
+
+    private static List<Long> ids(ProductFacetIndex.FacetResult result) {
+        List<Long> ids = new ArrayList<>();
+        for (Product product : result.getProducts()) {
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+
+    private static Map<String, Integer> counts(Object... pairs) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            counts.put((String) pairs[i], (Integer) pairs[i + 1]);
+        }
+        return counts;
+    }
+
+    private static Product product(Long id, String category, double price, String tags) {
+        Product product = new Product("商品" + id, "", price, category);
+        product.setId(id);
+        product.setTags(tags);
+        product.setAvailable(true);
+        return product;
+    }
+}
@@ -0,0 +1,98 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProductNameMatcherTest {
+
+    private final Product pearlMilkTea = product(1L, "经典珍珠奶茶", true);
+    private final Product lemonTea = product(2L, "柠檬绿茶", true);
+    private final Product mangoSmoothie = product(3L, "芒果冰沙", false);
+
+    private CatalogSnapshotService catalogSnapshotService;
+    private ProductNameMatcher matcher;
+
+    @BeforeEach
+    void setUp() {
+        catalogSnapshotService = mock(CatalogSnapshotService.class);
+        when(catalogSnapshotService.getSnapshot())
+                .thenReturn(CatalogSnapshot.of(1, Arrays.asList(pearlMilkTea, lemonTea, mangoSmoothie)));
+
+        matcher = new ProductNameMatcher();
+        ReflectionTestUtils.setField(matcher, "catalogSnapshotService", catalogSnapshotService);
+        ReflectionTestUtils.setField(matcher, "minConfidence", 0.5);
+    }
+
+    @Test
+    void exactNameHasFullConfidence() {
+        ProductNameMatcher.Match match = matcher.match("经典珍珠奶茶");
+
+        assertEquals(Long.valueOf(1L), match.getProduct().getId());
+        assertEquals(1.0, match.getConfidence());
+    }
+
+    @Test
+    void whitespaceAndPunctuationAreIgnored() {
+        ProductNameMatcher.Match match = matcher.match(" 经典 珍珠奶茶！");
+
+        assertEquals(Long.valueOf(1L), match.getProduct().getId());
+        assertEquals(1.0, match.getConfidence());
+    }
+
+    @Test
+    void aliasMatchesTargetWithDiscount() {
+        ProductNameMatcher.Match match = matcher.match("冰爽柠檬茶");
+
+        assertEquals(Long.valueOf(2L), match.getProduct().getId());
+        assertEquals(0.95, match.getConfidence());
+        assertEquals("冰爽柠檬茶", match.getMatchedName());
+    }
+
+    @Test
+    void aliasOfUnavailableProductIsIgnored() {
+        // 芒果波波茶 映射到已下架的 芒果冰沙
+        assertNull(matcher.match("芒果波波茶"));
+    }
+
+    @Test
+    void nearMissScoresBetweenThresholdAndExact() {
+        ProductNameMatcher.Match match = matcher.match("经典珍珠奶茶（大杯）");
+
+        assertEquals(Long.valueOf(1L), match.getProduct().getId());
+        assertTrue(match.getConfidence() >= 0.5 && match.getConfidence() < 0.95, "置信度 " + match.getConfidence());
+    }
+
+    @Test
+    void weakMatchIsFilteredByThreshold() {
+        ProductNameMatcher.Match best = matcher.bestMatch("珍珠蛋糕");
+
+        assertNotNull(best);
+        assertTrue(best.getConfidence() < 0.5, "置信度 " + best.getConfidence());
+        assertNull(matcher.match("珍珠蛋糕"));
+        assertNull(matcher.bestMatch("美式咖啡"));
+    }
+
+    @Test
+    void closerCandidateWins() {
+        Product blackSugar = product(4L, "黑糖珍珠奶茶", true);
+        when(catalogSnapshotService.getSnapshot())
+                .thenReturn(CatalogSnapshot.of(2, Arrays.asList(pearlMilkTea, lemonTea, blackSugar)));
+
+        assertEquals(Long.valueOf(4L), matcher.match("黑糖珍珠奶茶大杯").getProduct().getId());
+        assertEquals(Long.valueOf(1L), matcher.match("经典珍珠奶茶大杯").getProduct().getId());
+    }
+
+    private static Product product(Long id, String name, boolean available) {
+        Product product = new Product(name, "", 10.0, "classic");
+        product.setId(id);
+        product.setAvailable(available);
+        return product;
+    }
+}
@@ -0,0 +1,59 @@
+package com.auth.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSalesTrackerTest {
+
+    private final ProductSalesTracker tracker = new ProductSalesTracker();
+
+    @Test
+    void cancelledOrderIsRetracted() {
+        long orderedAt = System.currentTimeMillis();
+        tracker.record(1L, 3, orderedAt);
+        tracker.record(2L, 2, orderedAt);
+
+        tracker.retract(1L, 3, orderedAt);
+
+        assertEquals(0.0, tracker.getScore(1L, ProductSalesTracker.WINDOW_DAY), 1e-9);
+        assertEquals(Collections.singletonList(2L), tracker.getTopProductIds(ProductSalesTracker.WINDOW_DAY, 10));
+    }
+
+    @Test
+    void retractionReordersTopK() {
+        long orderedAt = System.currentTimeMillis();
+        tracker.record(1L, 5, orderedAt);
+        tracker.record(2L, 3, orderedAt);
+        tracker.record(3L, 1, orderedAt);
+        assertEquals(Arrays.asList(1L, 2L, 3L), tracker.getTopProductIds(ProductSalesTracker.WINDOW_HOUR, 10));
+
+        tracker.retract(1L, 4, orderedAt);
+
+        assertEquals(Arrays.asList(2L, 1L, 3L), tracker.getTopProductIds(ProductSalesTracker.WINDOW_HOUR, 10));
+        assertEquals(1.0, tracker.getScore(1L, ProductSalesTracker.WINDOW_WEEK), 1e-3);
+    }
+
+    @Test
+    void restoredOrderCountsAgain() {
+        long orderedAt = System.currentTimeMillis() - 3_600_000L;
+        tracker.record(1L, 2, orderedAt);
+        tracker.retract(1L, 2, orderedAt);
+        tracker.record(1L, 2, orderedAt);
+
+        // 按下单时刻折算，一小时前的 2 件在 1 小时窗口内约剩 2/e
+        assertEquals(2 / Math.E, tracker.getScore(1L, ProductSalesTracker.WINDOW_HOUR), 1e-3);
+        assertEquals(Collections.singletonList(1L), tracker.getTopProductIds(ProductSalesTracker.WINDOW_HOUR, 10));
+    }
+
+    @Test
+    void retractingUnknownProductIsIgnored() {
+        tracker.retract(9L, 1, System.currentTimeMillis());
+
+        assertEquals(0.0, tracker.getScore(9L, ProductSalesTracker.WINDOW_DAY));
+        assertTrue(tracker.getTopProductIds(ProductSalesTracker.WINDOW_DAY, 10).isEmpty());
+    }
+}
@@ -0,0 +1,83 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+
+    private final Product pearlMilkTea = product(1L, "珍珠奶茶", "经典口味", null);
+    private final Product milkshake = product(2L, "奶昔绿茶", "清爽", null);
+    private final Product latte = product(3L, "Latte", "咖啡", null);
+    private final Product espresso = product(4L, "Espresso", "lat", null);
+    private final Product lemonTea = product(5L, "柠檬茶", "清爽", "奶茶,夏日");
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        index.onCatalogChanged(CatalogChangedEvent.fullReload(
+                CatalogSnapshot.of(1, Arrays.asList(pearlMilkTea, milkshake, latte, espresso, lemonTea))));
+    }
+
+    @Test
+    void chineseQueryMatchesBigramsOnly() {
+        // 奶昔绿茶 含有“奶”和“茶”，但没有“奶茶”二元组
+        assertEquals(Arrays.asList(1L, 5L), index.search("奶茶", 10));
+    }
+
+    @Test
+    void singleChineseCharacterMatchesUnigram() {
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 5L)), new HashSet<>(index.search("茶", 10)));
+    }
+
+    @Test
+    void nameMatchRanksAboveTagMatch() {
+        assertEquals(Long.valueOf(1L), index.search("奶茶", 10).get(0));
+    }
+
+    @Test
+    void productsMatchingAllTermsComeFirst() {
+        // 珍珠/珠奶/奶茶 全部命中的只有珍珠奶茶，部分命中的柠檬茶不返回
+        assertEquals(Collections.singletonList(1L), index.search("珍珠奶茶", 10));
+    }
+
+    @Test
+    void asciiPrefixMatchesButRanksBelowExactTerm() {
+        ProductSearchIndex plain = new ProductSearchIndex();
+        plain.onCatalogChanged(CatalogChangedEvent.fullReload(CatalogSnapshot.of(1, Arrays.asList(
+                product(1L, "咖啡一号", "latte", null), product(2L, "咖啡二号", "lat", null)))));
+
+        assertEquals(Arrays.asList(2L, 1L), plain.search("LAT", 10));
+    }
+
+    @Test
+    void asciiInfixDoesNotMatch() {
+        assertTrue(index.search("atte", 10).isEmpty());
+        assertEquals(Long.valueOf(3L), index.search("lat", 10).get(0));
+    }
+
+    @Test
+    void incrementalUpdateRemovesUnavailableProduct() {
+        Product hidden = product(1L, "珍珠奶茶", "经典口味", null);
+        hidden.setAvailable(false);
+        CatalogSnapshot snapshot = CatalogSnapshot.of(2, Arrays.asList(hidden, milkshake, latte, espresso, lemonTea));
+        index.onCatalogChanged(CatalogChangedEvent.incremental(snapshot, Collections.singleton(1L)));
+
+        assertEquals(Collections.singletonList(5L), index.search("奶茶", 10));
+        assertTrue(index.search("珍珠", 10).isEmpty());
+    }
+
+    private static Product product(Long id, String name, String description, String tags) {
+        Product product = new Product(name, description, 10.0, "classic");
+        product.setId(id);
+        product.setTags(tags);
+        product.setAvailable(true);
+        return product;
+    }
+}
@@ -0,0 +1,101 @@
+package com.auth.service;
+
+import com.auth.dto.ProductDTO;
+import com.auth.dto.RegionProductDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RecommendationListStoreTest {
+
+    private CatalogSnapshotService catalogSnapshotService;
+    private RecommendationListStore store;
+
+    @BeforeEach
+    void setUp() {
+        catalogSnapshotService = mock(CatalogSnapshotService.class);
+        when(catalogSnapshotService.getVersion()).thenReturn(1L);
+        ResourceVersionService resourceVersionService = mock(ResourceVersionService.class);
+        when(resourceVersionService.getRegionVersion()).thenReturn(1L);
+
+        store = new RecommendationListStore();
+        ReflectionTestUtils.setField(store, "catalogSnapshotService", catalogSnapshotService);
+        ReflectionTestUtils.setField(store, "resourceVersionService", resourceVersionService);
+    }
+
+    @Test
+    void userEvictedDuringPrecomputeIsNotPublished() {
+        long sequence = store.currentEvictionSequence();
+        // 计算期间用户7下单，算出的列表基于旧画像
+        store.evictUser(7L);
+        publish(sequence, userLists(7L, 8L));
+
+        assertNull(store.getUserList(7L));
+        assertNotNull(store.getUserList(8L));
+    }
+
+    @Test
+    void evictionBeforePrecomputeDoesNotSuppressNextBatch() {
+        store.evictUser(7L);
+        long sequence = store.currentEvictionSequence();
+        publish(sequence, userLists(7L));
+
+        assertNotNull(store.getUserList(7L));
+        // 已被这批覆盖的丢弃记录随发布清理
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(store, "userEvictions")).isEmpty());
+    }
+
+    @Test
+    void evictionAfterPublishRemovesList() {
+        publish(store.currentEvictionSequence(), userLists(7L));
+
+        store.evictUser(7L);
+
+        assertNull(store.getUserList(7L));
+    }
+
+    @Test
+    void evictionSpanningTwoBatchesIsKeptUntilCovered() {
+        long first = store.currentEvictionSequence();
+        long second = store.currentEvictionSequence();
+        store.evictUser(7L);
+        publish(first, userLists(7L));
+        assertNull(store.getUserList(7L));
+
+        // 第二批与第一批同时开始，同样早于丢弃
+        publish(second, userLists(7L));
+        assertNull(store.getUserList(7L));
+
+        publish(store.currentEvictionSequence(), userLists(7L));
+        assertNotNull(store.getUserList(7L));
+    }
+
+    @Test
+    void catalogChangeMakesBatchStale() {
+        publish(store.currentEvictionSequence(), userLists(7L));
+
+        when(catalogSnapshotService.getVersion()).thenReturn(2L);
+
+        assertNull(store.getUserList(7L));
+    }
+
+    private void publish(long sequence, Map<Long, List<ProductDTO>> userLists) {
+        store.publish(1L, 1L, sequence, new HashMap<String, List<ProductDTO>>(),
+                new HashMap<String, List<RegionProductDTO>>(), userLists);
+    }
+
+    private static Map<Long, List<ProductDTO>> userLists(Long... userIds) {
+        Map<Long, List<ProductDTO>> lists = new HashMap<>();
+        for (Long userId : userIds) {
+            ProductDTO product = new ProductDTO();
+            product.setId(userId * 10);
+            lists.put(userId, Collections.singletonList(product));
+        }
+        return lists;
+    }
+}
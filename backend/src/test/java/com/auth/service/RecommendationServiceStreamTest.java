@@ -0,0 +1,151 @@
+package com.auth.service;
+
+import com.auth.dto.RecommendationRequest;
+import com.auth.dto.RecommendationResponse;
+import com.auth.entity.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RecommendationServiceStreamTest {
+
+    private final Product milkTea = product(1L, "经典珍珠奶茶", 18.0);
+    private final Product lemonTea = product(2L, "冰爽柠檬茶", 16.0);
+
+    private DeepSeekService deepSeekService;
+    private ProductSemanticIndex semanticIndex;
+    private RecommendationService service;
+
+    @BeforeEach
+    void setUp() {
+        CatalogSnapshotService catalogSnapshotService = mock(CatalogSnapshotService.class);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(CatalogSnapshot.of(1, Arrays.asList(milkTea, lemonTea)));
+        RecommendationCache recommendationCache = mock(RecommendationCache.class);
+        when(recommendationCache.keyOf(any(), anyLong())).thenReturn("key");
+        RecommendationCandidateSelector candidateSelector = mock(RecommendationCandidateSelector.class);
+        when(candidateSelector.buildProductList(any())).thenReturn("");
+        ProductNameMatcher productNameMatcher = mock(ProductNameMatcher.class);
+        deepSeekService = mock(DeepSeekService.class);
+        semanticIndex = mock(ProductSemanticIndex.class);
+
+        service = new RecommendationService();
+        ReflectionTestUtils.setField(service, "catalogSnapshotService", catalogSnapshotService);
+        ReflectionTestUtils.setField(service, "recommendationCache", recommendationCache);
+        ReflectionTestUtils.setField(service, "candidateSelector", candidateSelector);
+        ReflectionTestUtils.setField(service, "productNameMatcher", productNameMatcher);
+        ReflectionTestUtils.setField(service, "deepSeekService", deepSeekService);
+        ReflectionTestUtils.setField(service, "semanticIndex", semanticIndex);
+        ReflectionTestUtils.setField(service, "circuitFailureThreshold", 5);
+        ReflectionTestUtils.setField(service, "circuitOpenSeconds", 30L);
+        ReflectionTestUtils.setField(service, "streamPushThreads", 2);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void fallbackWithDifferentProductResendsProduct() throws Exception {
+        // 推荐产品一行匹配不到时用默认商品（奶茶），随后上游失败，回退推荐给出柠檬茶
+        streamThenFail("推荐产品：不存在的饮品\n");
+        when(semanticIndex.nearest(any(RecommendationRequest.class), anyInt()))
+                .thenReturn(Collections.singletonList(lemonTea));
+
+        RecordingListener listener = stream();
+
+        assertEquals(Arrays.asList(1L, 2L), listener.productIds);
+        assertEquals(Long.valueOf(2L), listener.completed.getProductId());
+        assertEquals("fallback", listener.completed.getSource());
+        assertEquals(Double.valueOf(16.0), listener.products.get(1).getProductPrice());
+    }
+
+    @Test
+    void fallbackWithSameProductDoesNotResend() throws Exception {
+        streamThenFail("推荐产品：不存在的饮品\n");
+        when(semanticIndex.nearest(any(RecommendationRequest.class), anyInt()))
+                .thenReturn(Collections.singletonList(milkTea));
+
+        RecordingListener listener = stream();
+
+        assertEquals(Collections.singletonList(1L), listener.productIds);
+        assertEquals(Long.valueOf(1L), listener.completed.getProductId());
+    }
+
+    @Test
+    void failureBeforeProductLineSendsFallbackProduct() throws Exception {
+        streamThenFail("推荐理由：");
+        when(semanticIndex.nearest(any(RecommendationRequest.class), anyInt()))
+                .thenReturn(Collections.singletonList(lemonTea));
+
+        RecordingListener listener = stream();
+
+        assertEquals(Collections.singletonList(2L), listener.productIds);
+        assertEquals(Long.valueOf(2L), listener.completed.getProductId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void streamThenFail(String delta) {
+        when(deepSeekService.streamRecommendationFromExistingProducts(any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Consumer<String> onDelta = invocation.getArgument(4);
+                    onDelta.accept(delta);
+                    CompletableFuture<String> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(new RuntimeException("上游连接中断"));
+                    return failed;
+                });
+    }
+
+    private RecordingListener stream() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        service.streamAIRecommendation(new RecommendationRequest("清爽", "晴天", "开心"), listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        return listener;
+    }
+
+    private static Product product(Long id, String name, double price) {
+        Product product = new Product(name, name, price, "classic");
+        product.setId(id);
+        product.setAvailable(true);
+        return product;
+    }
+
+    private static final class RecordingListener implements RecommendationStreamListener {
+        private final List<RecommendationResponse> products = new ArrayList<>();
+        private final List<Long> productIds = new ArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private RecommendationResponse completed;
+
+        @Override
+        public void onDelta(String text) {
+        }
+
+        @Override
+        public void onProduct(RecommendationResponse product) {
+            products.add(product);
+            productIds.add(product.getProductId());
+        }
+
+        @Override
+        public void onField(String field, String value) {
+        }
+
+        @Override
+        public void onComplete(RecommendationResponse response) {
+            completed = response;
+            done.countDown();
+        }
+    }
+}
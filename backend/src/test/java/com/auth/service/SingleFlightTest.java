@@ -0,0 +1,101 @@
+package com.auth.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> first = flight.execute("k", () -> {
+            loads.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<String> second = flight.execute("k", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        upstream.complete("v");
+
+        assertEquals("v", first.get(1, TimeUnit.SECONDS));
+        assertEquals("v", second.get(1, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(1L, flight.getStats().get("shared"));
+    }
+
+    @Test
+    void differentKeysLoadIndependently() throws Exception {
+        assertEquals("a", flight.execute("a", () -> CompletableFuture.completedFuture("a")).get());
+        assertEquals("b", flight.execute("b", () -> CompletableFuture.completedFuture("b")).get());
+        assertEquals(2L, flight.getStats().get("executions"));
+    }
+
+    @Test
+    void completedLoadIsNotCached() throws Exception {
+        flight.execute("k", () -> CompletableFuture.completedFuture("old")).get();
+
+        assertEquals("new", flight.execute("k", () -> CompletableFuture.completedFuture("new")).get());
+        assertEquals(0, flight.getStats().get("inFlight"));
+    }
+
+    @Test
+    void failureReachesAllCallersAndNextCallRetries() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.execute("k", () -> upstream);
+        CompletableFuture<String> second = flight.execute("k", () -> upstream);
+        upstream.completeExceptionally(new IllegalStateException("上游超时"));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> second.get(1, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof IllegalStateException);
+        assertTrue(first.isCompletedExceptionally());
+        assertEquals("v", flight.execute("k", () -> CompletableFuture.completedFuture("v")).get());
+    }
+
+    @Test
+    void loaderThrowingSynchronouslyDoesNotLeakEntry() {
+        CompletableFuture<String> result = flight.execute("k", () -> {
+            throw new IllegalArgumentException("参数错误");
+        });
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, flight.getStats().get("inFlight"));
+    }
+
+    @Test
+    void waiterTimeoutDoesNotAffectSharedLoad() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.execute("k", () -> upstream);
+        CompletableFuture<String> second = flight.execute("k", () -> upstream);
+
+        // 等待者按自己的时限放弃，加载继续进行，其他等待者仍拿到结果
+        assertThrows(TimeoutException.class, () -> second.get(50, TimeUnit.MILLISECONDS));
+        assertEquals(1, flight.getStats().get("inFlight"));
+        upstream.complete("late");
+
+        assertEquals("late", first.get(1, TimeUnit.SECONDS));
+        assertEquals(0, flight.getStats().get("inFlight"));
+    }
+
+    @Test
+    void newCallerAfterCompletionStartsFreshLoad() throws Exception {
+        // 结果回调中发起的新请求不能再拿到刚完成的 future
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> reload = new CompletableFuture<>();
+        flight.execute("k", () -> upstream).thenAccept(value ->
+                flight.execute("k", () -> CompletableFuture.completedFuture("fresh"))
+                        .thenAccept(reload::complete));
+        upstream.complete("stale");
+
+        assertEquals("fresh", reload.get(1, TimeUnit.SECONDS));
+        assertEquals(2L, flight.getStats().get("executions"));
+    }
+}
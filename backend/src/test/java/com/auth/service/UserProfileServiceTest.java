@@ -0,0 +1,159 @@
+package com.auth.service;
+
+import com.auth.entity.Product;
+import com.auth.repository.OrderItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserProfileServiceTest {
+
+    private final Product milkTea = product(1L, "classic", "奶茶,珍珠");
+    private final Product lemonTea = product(2L, "fruit", "柠檬,清爽");
+
+    private OrderItemRepository orderItemRepository;
+    private UserProfileService service;
+
+    @BeforeEach
+    void setUp() {
+        CatalogSnapshotService catalogSnapshotService = mock(CatalogSnapshotService.class);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(CatalogSnapshot.of(1, Arrays.asList(milkTea, lemonTea)));
+        orderItemRepository = mock(OrderItemRepository.class);
+
+        service = new UserProfileService();
+        ReflectionTestUtils.setField(service, "orderItemRepository", orderItemRepository);
+        ReflectionTestUtils.setField(service, "catalogSnapshotService", catalogSnapshotService);
+        ReflectionTestUtils.setField(service, "cacheSize", 100);
+    }
+
+    @Test
+    void ordersCommittedOutOfIdOrderAreAllCounted() {
+        when(orderItemRepository.findPurchasesByUserId(7L)).thenReturn(rows(new Object[]{10L, 1L, 1}));
+        service.recommend(7L, 5);
+
+        // 订单12先提交，订单11后提交
+        service.recordOrder(7L, 12L, quantities(1L, 2));
+        service.recordOrder(7L, 11L, quantities(2L, 3));
+
+        assertEquals(quantities(1L, 3, 2L, 3), purchased(7L));
+    }
+
+    @Test
+    void orderRecordedTwiceIsCountedOnce() {
+        when(orderItemRepository.findPurchasesByUserId(7L)).thenReturn(rows(new Object[]{10L, 1L, 1}));
+        service.recommend(7L, 5);
+
+        service.recordOrder(7L, 10L, quantities(1L, 1));
+        service.recordOrder(7L, 11L, quantities(2L, 1));
+        service.recordOrder(7L, 11L, quantities(2L, 1));
+
+        assertEquals(quantities(1L, 1, 2L, 1), purchased(7L));
+    }
+
+    @Test
+    void orderCommittedWhileProfileLoadsIsKept() {
+        // 查询执行期间订单11提交，查询结果没有它；订单10的提交回调晚于查询，两边都有
+        when(orderItemRepository.findPurchasesByUserId(7L)).thenAnswer(invocation -> {
+            service.recordOrder(7L, 11L, quantities(2L, 4));
+            service.recordOrder(7L, 10L, quantities(1L, 1));
+            return rows(new Object[]{10L, 1L, 1});
+        });
+
+        List<Product> recommended = service.recommend(7L, 5);
+
+        assertEquals(quantities(1L, 1, 2L, 4), purchased(7L));
+        assertEquals(lemonTea.getId(), recommended.get(0).getId());
+    }
+
+    @Test
+    void cancelledOrderIsRetracted() {
+        when(orderItemRepository.findPurchasesByUserId(7L)).thenReturn(rows(new Object[]{10L, 1L, 1}));
+        service.recommend(7L, 5);
+        service.recordOrder(7L, 11L, quantities(2L, 3));
+
+        service.retractOrder(7L, 11L, quantities(2L, 3));
+        service.retractOrder(7L, 11L, quantities(2L, 3));
+
+        assertEquals(quantities(1L, 1), purchased(7L));
+        assertEquals(milkTea.getId(), service.recommend(7L, 5).get(0).getId());
+    }
+
+    @Test
+    void cancellationWhileProfileLoadsIsApplied() {
+        // 查询读到取消前的订单10，取消回调在查询期间到达；订单11查询时已取消，回调晚到
+        when(orderItemRepository.findPurchasesByUserId(7L)).thenAnswer(invocation -> {
+            service.retractOrder(7L, 10L, quantities(1L, 1));
+            service.retractOrder(7L, 11L, quantities(2L, 2));
+            return rows(new Object[]{10L, 1L, 1}, new Object[]{12L, 2L, 1});
+        });
+
+        service.recommend(7L, 5);
+
+        assertEquals(quantities(2L, 1), purchased(7L));
+    }
+
+    @Test
+    void failedLoadDoesNotLeaveRegistration() {
+        when(orderItemRepository.findPurchasesByUserId(7L)).thenThrow(new RuntimeException("数据库不可用"));
+        assertThrows(RuntimeException.class, () -> service.recommend(7L, 5));
+
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(service, "loadingProfiles")).isEmpty());
+        // 未缓存也未加载时，订单不做记录，下次访问从数据库读取
+        service.recordOrder(7L, 11L, quantities(2L, 4));
+        assertNull(profile(7L));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedProfile() {
+        ReflectionTestUtils.setField(service, "cacheSize", 2);
+        when(orderItemRepository.findPurchasesByUserId(anyLong())).thenReturn(rows(new Object[]{10L, 1L, 1}));
+
+        service.recommend(1L, 5);
+        service.recommend(2L, 5);
+        service.recommend(1L, 5);
+        service.recommend(3L, 5);
+
+        assertNotNull(profile(1L));
+        assertNull(profile(2L));
+        assertNotNull(profile(3L));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Integer> purchased(Long userId) {
+        Object profile = profile(userId);
+        assertNotNull(profile);
+        return new TreeMap<>((Map<Long, Integer>) ReflectionTestUtils.getField(profile, "purchased"));
+    }
+
+    private Object profile(Long userId) {
+        Map<?, ?> profiles = (Map<?, ?>) ReflectionTestUtils.getField(service, "profiles");
+        synchronized (profiles) {
+            return profiles.get(userId);
+        }
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(Arrays.asList(rows));
+    }
+
+    private static Map<Long, Integer> quantities(Object... pairs) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            quantities.put((Long) pairs[i], (Integer) pairs[i + 1]);
+        }
+        return quantities;
+    }
+
+    private static Product product(Long id, String category, String tags) {
+        Product product = new Product("商品" + id, "", 10.0, category);
+        product.setId(id);
+        product.setTags(tags);
+        product.setAvailable(true);
+        return product;
+    }
+}